@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Prints the throughput of parsing a date-time and calling all lazy getters on it with 1, 2 and 4 threads. The numbers depend entirely on the number of
+ * cores of the machine, so this is not part of the unit tests. Run it with <code>./gradlew benchmark</code>.
+ *
+ * @author Marten Gajda
+ */
+public final class DateTimeThroughputBenchmark
+{
+    private final static int MAX_THREADS = 4;
+    private final static int VALUES = 500;
+    private final static int ITERATIONS = 100;
+
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        final String[] values = new String[VALUES];
+        Random random = new Random(4949);
+        for (int i = 0; i < VALUES; ++i)
+        {
+            values[i] = new DateTime(DateTime.UTC, -2000000000000L + (long) (random.nextDouble() * 6000000000000L)).toString();
+        }
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+
+        for (int threads = 1; threads <= MAX_THREADS; threads <<= 1)
+        {
+            // warm up
+            runConcurrently(threads, parseTask(values, timeZone, ITERATIONS / 10));
+
+            long start = System.nanoTime();
+            runConcurrently(threads, parseTask(values, timeZone, ITERATIONS));
+            long nanos = System.nanoTime() - start;
+            long operations = (long) threads * ITERATIONS * VALUES;
+            System.out.println(String.format("DateTime parse + lazy getters, %d thread(s): %d ops/ms", threads, operations * 1000000L / Math.max(1, nanos)));
+        }
+    }
+
+
+    private static Runnable parseTask(final String[] values, final TimeZone timeZone, final int iterations)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long sum = 0;
+                for (int n = 0; n < iterations; ++n)
+                {
+                    for (String value : values)
+                    {
+                        DateTime dateTime = DateTime.parse(timeZone, value);
+                        sum += dateTime.getTimestamp() + dateTime.getWeekOfYear() + dateTime.getDayOfWeek();
+                    }
+                }
+                if (sum == 0)
+                {
+                    // make sure the loop isn't optimized away
+                    System.out.println(sum);
+                }
+            }
+        };
+    }
+
+
+    /**
+     * Runs the given task in the given number of threads, which are released at the same time.
+     */
+    private static void runConcurrently(int threadCount, final Runnable task) throws InterruptedException
+    {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startSignal.await();
+                        task.run();
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        startSignal.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        if (failure.get() != null)
+        {
+            throw new IllegalStateException("benchmark failed", failure.get());
+        }
+    }
+}
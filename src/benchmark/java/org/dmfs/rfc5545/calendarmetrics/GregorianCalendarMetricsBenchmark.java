@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Weekday;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.IsoFields;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+
+/**
+ * Prints the throughput of {@link GregorianCalendarMetrics} and the equivalent <code>java.time</code> operations. The numbers depend on the machine and are
+ * only meant to show where either implementation is faster. Run it with <code>./gradlew benchmark</code>.
+ *
+ * @author Marten Gajda
+ */
+public final class GregorianCalendarMetricsBenchmark
+{
+    private final static long SEED = 5550;
+    private final static int ITERATIONS = 100000;
+
+    // 1901-01-01 to 2036-12-31, the range java.util.TimeZone knows the transitions of
+    private final static long MIN_TIMESTAMP = -2177452800000L;
+    private final static long MAX_TIMESTAMP = 2114294400000L;
+
+
+    /**
+     * An operation on the i-th test value.
+     */
+    private interface Operation
+    {
+        long run(int i);
+    }
+
+
+    public static void main(String[] args)
+    {
+        TreeSet<String> zones = new TreeSet<String>(ZoneId.getAvailableZoneIds());
+        zones.retainAll(Arrays.asList(TimeZone.getAvailableIDs()));
+        String[] zoneIds = zones.toArray(new String[zones.size()]);
+
+        final CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        Random random = new Random(SEED);
+        final long[] timestamps = new long[ITERATIONS];
+        final long[] instances = new long[ITERATIONS];
+        final LocalDateTime[] localDateTimes = new LocalDateTime[ITERATIONS];
+        final TimeZone[] timeZones = new TimeZone[ITERATIONS];
+        final ZoneId[] zoneIdsByIndex = new ZoneId[ITERATIONS];
+        final int[] distances = new int[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            timestamps[i] = MIN_TIMESTAMP + (long) (random.nextDouble() * (MAX_TIMESTAMP - MIN_TIMESTAMP));
+            String zone = zoneIds[random.nextInt(zoneIds.length)];
+            timeZones[i] = TimeZone.getTimeZone(zone);
+            zoneIdsByIndex[i] = ZoneId.of(zone);
+            localDateTimes[i] = LocalDateTime.ofEpochSecond(Math.floorDiv(timestamps[i], 1000), 0, ZoneOffset.UTC);
+            instances[i] = Instance.make(localDateTimes[i].getYear(), localDateTimes[i].getMonthValue() - 1, localDateTimes[i].getDayOfMonth(),
+                    localDateTimes[i].getHour(), localDateTimes[i].getMinute(), localDateTimes[i].getSecond());
+            distances[i] = random.nextInt(40);
+        }
+
+        report("toInstance", new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return calendarMetrics.toInstance(timestamps[i], timeZones[i]);
+            }
+        }, new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return Instant.ofEpochMilli(timestamps[i]).atZone(zoneIdsByIndex[i]).getDayOfMonth();
+            }
+        });
+
+        report("toMillis", new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return calendarMetrics.toMillis(instances[i], timeZones[i]);
+            }
+        }, new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return ZonedDateTime.ofLocal(localDateTimes[i], zoneIdsByIndex[i], null).withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+            }
+        });
+
+        report("nextDay(n)", new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return calendarMetrics.nextDay(instances[i], distances[i]);
+            }
+        }, new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return localDateTimes[i].plusDays(distances[i]).getDayOfMonth();
+            }
+        });
+
+        report("nextMonth(n)", new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return calendarMetrics.nextMonth(instances[i], distances[i]);
+            }
+        }, new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return localDateTimes[i].plusMonths(distances[i]).getMonthValue();
+            }
+        });
+
+        report("getWeekOfYear", new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                long instance = instances[i];
+                return calendarMetrics.getWeekOfYear(Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance));
+            }
+        }, new Operation()
+        {
+            @Override
+            public long run(int i)
+            {
+                return localDateTimes[i].get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            }
+        });
+    }
+
+
+    private static void report(String name, Operation library, Operation jdk)
+    {
+        long libraryNanos = Long.MAX_VALUE;
+        long jdkNanos = Long.MAX_VALUE;
+        long sum = 0;
+        // take the best of a few rounds, the first ones are warm-up
+        for (int round = 0; round < 5; ++round)
+        {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; ++i)
+            {
+                sum += library.run(i);
+            }
+            libraryNanos = Math.min(libraryNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; ++i)
+            {
+                sum += jdk.run(i);
+            }
+            jdkNanos = Math.min(jdkNanos, System.nanoTime() - start);
+        }
+        System.out.println(
+                String.format("%-14s library %7.1f ns/op, java.time %7.1f ns/op, ratio %.2f (checksum %d)", name, (double) libraryNanos / ITERATIONS,
+                        (double) jdkNanos / ITERATIONS, (double) jdkNanos / Math.max(1, libraryNanos), sum & 0xff));
+    }
+}
@@ -0,0 +1,437 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+
+/**
+ * Parses DATE and DATE-TIME values as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC 5545, Section 3.3.5</a> from ASCII
+ * encoded bytes.
+ * <p>
+ * In contrast to {@link DateTime#parse(CalendarMetrics, TimeZone, String)} this parser doesn't look at the digits one by one. It loads the eight digits of
+ * the date and the six digits of the time into a single <code>long</code> each and validates and converts all digits of a word at once (a technique known as
+ * SWAR, "SIMD within a register"):
+ * <ul>
+ * <li>a word contains only digits if the high nibble of each byte is <code>3</code>, both before and after adding <code>6</code> to each byte,</li>
+ * <li>after subtracting <code>'0'</code> from each byte, multiplying the word by <code>10</code> and adding the word shifted by one byte yields the two digit
+ * numbers in every other byte.</li>
+ * </ul>
+ * The form of the value (all-day, floating or UTC) is determined by its length, just like in {@link DateTime#parse(CalendarMetrics, TimeZone, String)}.
+ *
+ * @author Marten Gajda
+ */
+public final class AsciiDateTimeParser
+{
+    /**
+     * A word of eight ASCII <code>'0'</code> characters.
+     */
+    private final static long ZEROS = 0x3030303030303030L;
+
+    /**
+     * Mask of the high nibble of each byte.
+     */
+    private final static long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+
+    /**
+     * Adding this moves all bytes above <code>'9'</code> out of the digit range.
+     */
+    private final static long SIXES = 0x0606060606060606L;
+
+    /**
+     * The expected result of the digit check, see {@link #isDigits(long)}.
+     */
+    private final static long DIGITS = 0x3333333333333333L;
+
+    /**
+     * Mask of every other byte, which contains the two digit numbers after {@link #pairs(long)}.
+     */
+    private final static long PAIRS = 0x00FF00FF00FF00FFL;
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private AsciiDateTimeParser()
+    {
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a byte array. This method uses the default calendar scale {@link DateTime#GREGORIAN_CALENDAR_SCALE}.
+     *
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param bytes
+     *         The ASCII encoded value.
+     * @param offset
+     *         The position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return A new {@link DateTime} instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't contain a valid date-time value.
+     */
+    public static DateTime parse(TimeZone timeZone, byte[] bytes, int offset, int length)
+    {
+        return parse(DateTime.GREGORIAN_CALENDAR_SCALE, timeZone, bytes, offset, length);
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a byte array.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to use.
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param bytes
+     *         The ASCII encoded value.
+     * @param offset
+     *         The position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return A new {@link DateTime} instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't contain a valid date-time value.
+     */
+    public static DateTime parse(CalendarMetrics calendarMetrics, TimeZone timeZone, byte[] bytes, int offset, int length)
+    {
+        return dateTime(calendarMetrics, timeZone, parseInstance(bytes, offset, length), length);
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a {@link ByteBuffer}. The position of the buffer is not changed.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to use.
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param buffer
+     *         The buffer containing the ASCII encoded value.
+     * @param offset
+     *         The absolute position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return A new {@link DateTime} instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't contain a valid date-time value.
+     */
+    public static DateTime parse(CalendarMetrics calendarMetrics, TimeZone timeZone, ByteBuffer buffer, int offset, int length)
+    {
+        return dateTime(calendarMetrics, timeZone, parseInstance(buffer, offset, length), length);
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a byte array and returns the packed instance. Whether the value is all-day, floating or UTC is
+     * determined by the length: <code>8</code> means all-day, <code>15</code> means floating (or local time) and <code>16</code> means UTC.
+     *
+     * @param bytes
+     *         The ASCII encoded value.
+     * @param offset
+     *         The position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return The packed instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't contain a valid date-time value.
+     */
+    public static long parseInstance(byte[] bytes, int offset, int length)
+    {
+        long instance = tryParseInstance(bytes, offset, length);
+        if (DateTime.isParseError(instance))
+        {
+            throw illegalValue(bytes, offset, length, instance);
+        }
+        return instance;
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a {@link ByteBuffer} and returns the packed instance. The position of the buffer is not changed.
+     * Whether the value is all-day, floating or UTC is determined by the length: <code>8</code> means all-day, <code>15</code> means floating (or local time)
+     * and <code>16</code> means UTC.
+     *
+     * @param buffer
+     *         The buffer containing the ASCII encoded value.
+     * @param offset
+     *         The absolute position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return The packed instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't contain a valid date-time value.
+     */
+    public static long parseInstance(ByteBuffer buffer, int offset, int length)
+    {
+        long instance = tryParseInstance(buffer, offset, length);
+        if (DateTime.isParseError(instance))
+        {
+            byte[] value = copy(buffer, offset, length);
+            throw illegalValue(value, 0, value.length, instance);
+        }
+        return instance;
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a byte array like {@link #parseInstance(byte[], int, int)}, but returns an error value instead of
+     * throwing an exception if the value is malformed. Errors are encoded like the results of {@link DateTime#tryParse(CharSequence)}, use {@link
+     * DateTime#isParseError(long)}, {@link DateTime#parseErrorType(long)} and {@link DateTime#parseErrorPosition(long)} to evaluate them.
+     * <p>
+     * Like {@link DateTime#parse(String)} this method doesn't check the ranges of the fields, except for the month, which must not be <code>00</code>. Months
+     * above <code>12</code> are accepted, since only the calendar scale knows how many months a year has.
+     *
+     * @param bytes
+     *         The ASCII encoded value.
+     * @param offset
+     *         The position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return The packed instance or an error value.
+     */
+    public static long tryParseInstance(byte[] bytes, int offset, int length)
+    {
+        if (length == 8)
+        {
+            long date = load(bytes, offset);
+            if (isDigits(date))
+            {
+                date = pairs(date);
+                if (isMonth(date))
+                {
+                    return dateInstance(date);
+                }
+            }
+        }
+        else if ((length == 15 || length == 16 && bytes[offset + 15] == 'Z') && bytes[offset + 8] == 'T')
+        {
+            long date = load(bytes, offset);
+            long time = timeWord(load(bytes, offset + 7));
+            if (isDigits(date) && isDigits(time))
+            {
+                date = pairs(date);
+                if (isMonth(date))
+                {
+                    return dateTimeInstance(date, pairs(time));
+                }
+            }
+        }
+        return error(bytes, offset, length);
+    }
+
+
+    /**
+     * Parses the date-time value in the given range of a {@link ByteBuffer} like {@link #parseInstance(ByteBuffer, int, int)}, but returns an error value
+     * instead of throwing an exception if the value is malformed. See {@link #tryParseInstance(byte[], int, int)}.
+     *
+     * @param buffer
+     *         The buffer containing the ASCII encoded value.
+     * @param offset
+     *         The absolute position of the first byte of the value.
+     * @param length
+     *         The length of the value.
+     *
+     * @return The packed instance or an error value.
+     */
+    public static long tryParseInstance(ByteBuffer buffer, int offset, int length)
+    {
+        if (length == 8)
+        {
+            long date = load(buffer, offset);
+            if (isDigits(date))
+            {
+                date = pairs(date);
+                if (isMonth(date))
+                {
+                    return dateInstance(date);
+                }
+            }
+        }
+        else if ((length == 15 || length == 16 && buffer.get(offset + 15) == 'Z') && buffer.get(offset + 8) == 'T')
+        {
+            long date = load(buffer, offset);
+            long time = timeWord(load(buffer, offset + 7));
+            if (isDigits(date) && isDigits(time))
+            {
+                date = pairs(date);
+                if (isMonth(date))
+                {
+                    return dateTimeInstance(date, pairs(time));
+                }
+            }
+        }
+        byte[] value = copy(buffer, offset, length);
+        return error(value, 0, value.length);
+    }
+
+
+    private static DateTime dateTime(CalendarMetrics calendarMetrics, TimeZone timeZone, long instance, int length)
+    {
+        if (length == 8)
+        {
+            return new DateTime(calendarMetrics, null, instance, true, Long.MAX_VALUE);
+        }
+        return new DateTime(calendarMetrics, length == 16 ? DateTime.UTC : timeZone, instance, false, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Returns the all-day instance of the given date, which has already been converted by {@link #pairs(long)}.
+     */
+    private static long dateInstance(long date)
+    {
+        return Instance.make((int) (date & 0xff) * 100 + (int) ((date >>> 16) & 0xff), (int) ((date >>> 32) & 0xff) - 1, (int) (date >>> 48), 0, 0, 0);
+    }
+
+
+    /**
+     * Returns the instance of the given date and time, which have already been converted by {@link #pairs(long)}.
+     */
+    private static long dateTimeInstance(long date, long time)
+    {
+        return Instance.make((int) (date & 0xff) * 100 + (int) ((date >>> 16) & 0xff), (int) ((date >>> 32) & 0xff) - 1, (int) (date >>> 48),
+                (int) ((time >>> 16) & 0xff), (int) ((time >>> 32) & 0xff), (int) (time >>> 48));
+    }
+
+
+    /**
+     * Returns whether the month of the given date, which has already been converted by {@link #pairs(long)}, is not <code>0</code>, which would underflow
+     * into the year bits of the instance.
+     */
+    private static boolean isMonth(long date)
+    {
+        return (date & 0xff00000000L) != 0;
+    }
+
+
+    /**
+     * Parses a value that was rejected by the fast path with the same scanner as {@link DateTime#parse(String)}, so the errors are the same.
+     */
+    private static long error(byte[] bytes, int offset, int length)
+    {
+        return DateTime.scan(new String(bytes, offset, Math.max(0, length), StandardCharsets.ISO_8859_1));
+    }
+
+
+    private static IllegalArgumentException illegalValue(byte[] bytes, int offset, int length, long error)
+    {
+        return new IllegalArgumentException(
+                "illegal date-time string: '" + new String(bytes, offset, Math.max(0, length), StandardCharsets.US_ASCII) + "' at position "
+                        + DateTime.parseErrorPosition(error));
+    }
+
+
+    /**
+     * Copies the given range of a {@link ByteBuffer} without changing its position.
+     */
+    private static byte[] copy(ByteBuffer buffer, int offset, int length)
+    {
+        byte[] value = new byte[Math.max(0, length)];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(value);
+        return value;
+    }
+
+
+    /**
+     * Prepares the word that contains the time. To avoid reading beyond the end of the value, the time word is loaded starting at the last digit of the date,
+     * so it contains the last digit of the date, the 'T' and the six digits of the time. This method replaces the first two bytes by <code>'0'</code>.
+     *
+     * @param word
+     *         The eight bytes preceding the end of the time.
+     *
+     * @return A word of the form <code>00HHMMSS</code>.
+     */
+    private static long timeWord(long word)
+    {
+        return (word & ~0xffffL) | 0x3030L;
+    }
+
+
+    /**
+     * Returns whether all eight bytes of the given word are ASCII digits.
+     *
+     * @param word
+     *         Eight ASCII characters.
+     *
+     * @return <code>true</code> if all bytes are in the range <code>'0'</code> to <code>'9'</code>.
+     */
+    private static boolean isDigits(long word)
+    {
+        return ((word & HIGH_NIBBLES) | ((word + SIXES) & HIGH_NIBBLES) >>> 4) == DIGITS;
+    }
+
+
+    /**
+     * Converts a word of eight ASCII digits into four two digit numbers. The first (lowest) byte of the word is the most significant digit of the first
+     * number. The numbers are returned in the bytes 0, 2, 4 and 6 of the result.
+     *
+     * @param word
+     *         A word of eight ASCII digits.
+     *
+     * @return The four numbers.
+     */
+    private static long pairs(long word)
+    {
+        long digits = word - ZEROS;
+        return (digits * 10 + (digits >>> 8)) & PAIRS;
+    }
+
+
+    /**
+     * Loads eight bytes in little endian order, so the first byte ends up in the least significant byte of the result.
+     */
+    private static long load(byte[] bytes, int offset)
+    {
+        return (bytes[offset] & 0xffL) | (bytes[offset + 1] & 0xffL) << 8 | (bytes[offset + 2] & 0xffL) << 16 | (bytes[offset + 3] & 0xffL) << 24
+                | (bytes[offset + 4] & 0xffL) << 32 | (bytes[offset + 5] & 0xffL) << 40 | (bytes[offset + 6] & 0xffL) << 48 | (bytes[offset + 7] & 0xffL) << 56;
+    }
+
+
+    /**
+     * Loads eight bytes in little endian order, so the first byte ends up in the least significant byte of the result.
+     */
+    private static long load(ByteBuffer buffer, int offset)
+    {
+        long word = buffer.getLong(offset);
+        return buffer.order() == ByteOrder.LITTLE_ENDIAN ? word : Long.reverseBytes(word);
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * A histogram of occurrences per local day, week or month in a specific {@link TimeZone} and calendar scale.
+ * <p>
+ * The histogram covers a fixed number of consecutive buckets, starting with the bucket that contains a given timestamp. The boundaries of all buckets are
+ * calculated once when the histogram is created, so adding timestamps doesn't require any calendar calculations or allocations. Each occurrence is counted in
+ * the bucket it starts in. If the ends of the occurrences are given, the busy time of each bucket is recorded as well. Occurrences outside of the histogram
+ * are ignored.
+ * <p>
+ * Use {@link #bucketInstance(int)} together with the methods of {@link CalendarMetrics} (like {@link CalendarMetrics#getWeekOfYear(int, int, int)}) to label
+ * the buckets.
+ * <p>
+ * {@link CalendarHistogram}s are not thread-safe, but {@link #parallelAdd(long[])} and {@link #parallelAdd(long[], long[])} process large arrays in
+ * parallel.
+ *
+ * @author Marten Gajda
+ */
+public final class CalendarHistogram
+{
+    /**
+     * The size of the buckets.
+     */
+    public enum Bucket
+    {
+        DAY, WEEK, MONTH
+    }
+
+
+    /**
+     * The minimum number of elements per task of the parallel operations.
+     */
+    private final static int PARALLEL_THRESHOLD = 1 << 14;
+
+    private final long[] mBucketInstances;
+
+    /**
+     * The timestamps of the bucket boundaries. Bucket i starts at mBoundaries[i] (inclusive) and ends at mBoundaries[i + 1] (exclusive).
+     */
+    private final long[] mBoundaries;
+
+    private final long[] mCounts;
+    private final long[] mBusyMillis;
+
+
+    /**
+     * Creates a new {@link CalendarHistogram}.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} that define days, weeks and months.
+     * @param timeZone
+     *         The {@link TimeZone} of the buckets or <code>null</code> for floating buckets.
+     * @param bucket
+     *         The {@link Bucket} size.
+     * @param start
+     *         A timestamp in the first bucket.
+     * @param bucketCount
+     *         The number of buckets.
+     */
+    public CalendarHistogram(CalendarMetrics calendarMetrics, TimeZone timeZone, Bucket bucket, long start, int bucketCount)
+    {
+        if (bucketCount < 1)
+        {
+            throw new IllegalArgumentException("bucketCount must be >0");
+        }
+
+        long instance = calendarMetrics.toInstance(start, timeZone);
+        instance = Instance.make(Instance.year(instance), Instance.month(instance), bucket == Bucket.MONTH ? 1 : Instance.dayOfMonth(instance), 0, 0, 0);
+        if (bucket == Bucket.WEEK)
+        {
+            instance = calendarMetrics.startOfWeek(instance);
+        }
+
+        long[] instances = new long[bucketCount + 1];
+        long[] boundaries = new long[bucketCount + 1];
+        for (int i = 0; i <= bucketCount; ++i)
+        {
+            instances[i] = instance;
+            boundaries[i] = calendarMetrics.toMillis(instance, timeZone);
+            switch (bucket)
+            {
+                case DAY:
+                    instance = calendarMetrics.nextDay(instance);
+                    break;
+                case WEEK:
+                    instance = calendarMetrics.nextDay(instance, 7);
+                    break;
+                default:
+                    instance = calendarMetrics.nextMonth(instance);
+            }
+        }
+
+        mBucketInstances = Arrays.copyOf(instances, bucketCount);
+        mBoundaries = boundaries;
+        mCounts = new long[bucketCount];
+        mBusyMillis = new long[bucketCount];
+    }
+
+
+    /**
+     * Returns the number of buckets.
+     */
+    public int bucketCount()
+    {
+        return mCounts.length;
+    }
+
+
+    /**
+     * Returns the instance of the first day of the given bucket.
+     *
+     * @param index
+     *         The index of the bucket.
+     *
+     * @return The instance at midnight of the first day of the bucket.
+     */
+    public long bucketInstance(int index)
+    {
+        return mBucketInstances[index];
+    }
+
+
+    /**
+     * Returns the timestamp of the start of the given bucket.
+     *
+     * @param index
+     *         The index of the bucket.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long bucketStart(int index)
+    {
+        return mBoundaries[index];
+    }
+
+
+    /**
+     * Returns the index of the bucket that contains the given timestamp.
+     *
+     * @param timestamp
+     *         The time in milliseconds since the epoch.
+     *
+     * @return The index of the bucket or <code>-1</code> if the timestamp is not covered by this histogram.
+     */
+    public int bucketOf(long timestamp)
+    {
+        return bucketOf(timestamp, 0);
+    }
+
+
+    /**
+     * Adds occurrences without a duration.
+     *
+     * @param timestamps
+     *         The start timestamps of the occurrences.
+     */
+    public void add(long[] timestamps)
+    {
+        accumulate(timestamps, null, 0, timestamps.length, mCounts, mBusyMillis);
+    }
+
+
+    /**
+     * Adds occurrences with a duration.
+     *
+     * @param starts
+     *         The start timestamps of the occurrences.
+     * @param ends
+     *         The end timestamps of the occurrences, the end of an occurrence must not be before its start.
+     */
+    public void add(long[] starts, long[] ends)
+    {
+        checkLength(starts, ends);
+        accumulate(starts, ends, 0, starts.length, mCounts, mBusyMillis);
+    }
+
+
+    /**
+     * Same as {@link #add(long[])}, but processes large arrays in parallel.
+     */
+    public void parallelAdd(long[] timestamps)
+    {
+        merge(ForkJoinPool.commonPool().invoke(new AddTask(timestamps, null, 0, timestamps.length)));
+    }
+
+
+    /**
+     * Same as {@link #add(long[], long[])}, but processes large arrays in parallel.
+     */
+    public void parallelAdd(long[] starts, long[] ends)
+    {
+        checkLength(starts, ends);
+        merge(ForkJoinPool.commonPool().invoke(new AddTask(starts, ends, 0, starts.length)));
+    }
+
+
+    /**
+     * Returns the number of occurrences that start in each bucket.
+     *
+     * @return An array with the count of each bucket.
+     */
+    public long[] counts()
+    {
+        return mCounts.clone();
+    }
+
+
+    /**
+     * Returns the busy time of each bucket, i.e. the sum of the parts of all occurrences that fall into the bucket. Overlapping occurrences are counted
+     * multiple times.
+     *
+     * @return An array with the busy minutes of each bucket, rounded down.
+     */
+    public long[] busyMinutes()
+    {
+        long[] result = new long[mBusyMillis.length];
+        for (int i = 0; i < result.length; ++i)
+        {
+            result[i] = mBusyMillis[i] / 60000;
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the index of the bucket that contains the given timestamp, checking the bucket with the given index first.
+     */
+    private int bucketOf(long timestamp, int hint)
+    {
+        long[] boundaries = mBoundaries;
+        if (timestamp < boundaries[0] || timestamp >= boundaries[boundaries.length - 1])
+        {
+            return -1;
+        }
+        if (timestamp >= boundaries[hint] && timestamp < boundaries[hint + 1])
+        {
+            // sorted input usually hits the same bucket again
+            return hint;
+        }
+        int index = Arrays.binarySearch(boundaries, timestamp);
+        return index >= 0 ? index : -index - 2;
+    }
+
+
+    private void accumulate(long[] starts, long[] ends, int from, int to, long[] counts, long[] busyMillis)
+    {
+        long[] boundaries = mBoundaries;
+        int bucketCount = counts.length;
+        int hint = 0;
+        for (int i = from; i < to; ++i)
+        {
+            long start = starts[i];
+            int bucket = bucketOf(start, hint);
+            if (bucket >= 0)
+            {
+                ++counts[bucket];
+                hint = bucket;
+            }
+
+            if (ends != null)
+            {
+                long end = ends[i];
+                if (end <= boundaries[0] || start >= boundaries[bucketCount])
+                {
+                    // outside of this histogram
+                    continue;
+                }
+
+                // distribute the busy time over all buckets the occurrence overlaps
+                int b = bucket >= 0 ? bucket : 0;
+                long partStart = Math.max(start, boundaries[0]);
+                while (b < bucketCount && partStart < end)
+                {
+                    long partEnd = Math.min(end, boundaries[b + 1]);
+                    busyMillis[b] += partEnd - partStart;
+                    partStart = partEnd;
+                    ++b;
+                }
+            }
+        }
+    }
+
+
+    private void merge(long[][] result)
+    {
+        long[] counts = result[0];
+        long[] busyMillis = result[1];
+        for (int i = 0; i < counts.length; ++i)
+        {
+            mCounts[i] += counts[i];
+            mBusyMillis[i] += busyMillis[i];
+        }
+    }
+
+
+    private static void checkLength(long[] starts, long[] ends)
+    {
+        if (starts.length != ends.length)
+        {
+            throw new IllegalArgumentException("starts and ends must have the same length");
+        }
+    }
+
+
+    /**
+     * Accumulates a range of occurrences into new arrays, splitting it as long as it's larger than {@link #PARALLEL_THRESHOLD}.
+     */
+    private final class AddTask extends RecursiveTask<long[][]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] mStarts;
+        private final long[] mEnds;
+        private final int mFrom;
+        private final int mTo;
+
+
+        AddTask(long[] starts, long[] ends, int from, int to)
+        {
+            mStarts = starts;
+            mEnds = ends;
+            mFrom = from;
+            mTo = to;
+        }
+
+
+        @Override
+        protected long[][] compute()
+        {
+            if (mTo - mFrom > PARALLEL_THRESHOLD)
+            {
+                int middle = (mFrom + mTo) >>> 1;
+                AddTask second = new AddTask(mStarts, mEnds, middle, mTo);
+                second.fork();
+                long[][] result = new AddTask(mStarts, mEnds, mFrom, middle).compute();
+                long[][] secondResult = second.join();
+                for (int i = 0; i < result[0].length; ++i)
+                {
+                    result[0][i] += secondResult[0][i];
+                    result[1][i] += secondResult[1][i];
+                }
+                return result;
+            }
+
+            long[][] result = new long[2][mCounts.length];
+            accumulate(mStarts, mEnds, mFrom, mTo, result[0], result[1]);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.io.Closeable;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A clock that only advances in ticks of a configurable length. A background thread updates the current time at every tick, so reading the time is just a
+ * volatile read and doesn't allocate anything.
+ * <p>
+ * Besides the timestamp the clock keeps the current Gregorian {@link Instance} of every {@link TimeZone} it has been asked for and a pre-rendered UTC
+ * date-time value, as used by <code>DTSTAMP</code> properties. In contrast to {@link DateTime#now(TimeZone)} and {@link DateTime#today()} this doesn't call
+ * {@link System#currentTimeMillis()}, {@link TimeZone#getDefault()} (which clones the default time zone) or {@link
+ * org.dmfs.rfc5545.calendarmetrics.CalendarMetrics#toInstance(long, TimeZone)} on every read.
+ * <p>
+ * Time zones are identified by their ID, so the rules of a zone must not be changed while a clock is using it.
+ * <p>
+ * Call {@link #close()} to stop the background thread once the clock is not needed anymore. Values read from a closed clock don't advance anymore.
+ *
+ * @author Marten Gajda
+ */
+public final class CoarseClock implements Closeable
+{
+    /**
+     * The length of a UTC date-time value, like <code>20150304T203000Z</code>.
+     */
+    public final static int DTSTAMP_LENGTH = 16;
+
+    private final long mTick;
+    private final Thread mThread;
+    private final ConcurrentHashMap<String, ZoneTime> mZoneTimes = new ConcurrentHashMap<String, ZoneTime>();
+
+    private volatile Time mTime;
+    private volatile boolean mClosed;
+
+    /**
+     * The number of the last tick, only accessed by the background thread once it has been started.
+     */
+    private long mSequence;
+
+
+    /**
+     * Creates and starts a {@link CoarseClock} with the given tick.
+     *
+     * @param tick
+     *         The length of a tick in milliseconds.
+     */
+    public CoarseClock(long tick)
+    {
+        if (tick < 1)
+        {
+            throw new IllegalArgumentException("tick must be at least 1 millisecond");
+        }
+        mTick = tick;
+        mTime = new Time(mSequence, System.currentTimeMillis());
+        mThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                advance();
+            }
+        }, "CoarseClock");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+
+    /**
+     * Returns the length of a tick of this clock.
+     *
+     * @return The length of a tick in milliseconds.
+     */
+    public long tick()
+    {
+        return mTick;
+    }
+
+
+    /**
+     * Returns the time of the last tick.
+     *
+     * @return The milliseconds since the epoch.
+     */
+    public long currentTimeMillis()
+    {
+        return mTime.mTimestamp;
+    }
+
+
+    /**
+     * Returns the Gregorian {@link Instance} of the last tick in the given {@link TimeZone}. The first call for a time zone calculates the instance, later
+     * calls just read the instance that has been updated by the background thread.
+     *
+     * @param timeZone
+     *         The {@link TimeZone}, may be <code>null</code> in which case UTC will be used.
+     *
+     * @return The packed instance of the current time.
+     */
+    public long instance(TimeZone timeZone)
+    {
+        return zoneTime(mTime, timeZone == null ? DateTime.UTC : timeZone).mInstance;
+    }
+
+
+    /**
+     * Returns a new {@link DateTime} of the last tick in the given {@link TimeZone}. The timestamp and the instance of the result are already set.
+     *
+     * @param timeZone
+     *         The {@link TimeZone}, may be <code>null</code> in which case UTC will be used.
+     *
+     * @return A new {@link DateTime}.
+     */
+    public DateTime now(TimeZone timeZone)
+    {
+        Time time = mTime;
+        if (timeZone == null)
+        {
+            timeZone = DateTime.UTC;
+        }
+        return new DateTime(DateTime.GREGORIAN_CALENDAR_SCALE, timeZone, zoneTime(time, timeZone).mInstance, false, time.mTimestamp);
+    }
+
+
+    /**
+     * Returns the UTC date-time value of the last tick as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC 5545, Section
+     * 3.3.5</a>, like <code>20150304T203000Z</code>.
+     *
+     * @return The pre-rendered date-time value.
+     */
+    public String dtStamp()
+    {
+        return mTime.mDtStamp;
+    }
+
+
+    /**
+     * Copies the ASCII encoded UTC date-time value of the last tick to the given byte array.
+     *
+     * @param buffer
+     *         The buffer to write to.
+     * @param offset
+     *         The position of the first byte to write.
+     *
+     * @return The position after the value.
+     */
+    public int writeDtStamp(byte[] buffer, int offset)
+    {
+        System.arraycopy(mTime.mDtStampBytes, 0, buffer, offset, DTSTAMP_LENGTH);
+        return offset + DTSTAMP_LENGTH;
+    }
+
+
+    /**
+     * Copies the ASCII encoded UTC date-time value of the last tick to the given {@link ByteBuffer} and advances its position.
+     *
+     * @param buffer
+     *         The buffer to write to.
+     *
+     * @throws BufferOverflowException
+     *         if the buffer doesn't have enough space left.
+     */
+    public void writeDtStamp(ByteBuffer buffer)
+    {
+        buffer.put(mTime.mDtStampBytes);
+    }
+
+
+    /**
+     * Stops the background thread of this clock.
+     */
+    @Override
+    public void close()
+    {
+        mClosed = true;
+        mThread.interrupt();
+    }
+
+
+    private void advance()
+    {
+        while (!mClosed)
+        {
+            try
+            {
+                Thread.sleep(mTick);
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            Time time = new Time(++mSequence, System.currentTimeMillis());
+            mTime = time;
+            for (ZoneTime zoneTime : mZoneTimes.values())
+            {
+                zoneTime(time, zoneTime.mTimeZone);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the {@link ZoneTime} of the given {@link TimeZone} at the given {@link Time}, updating it if it's outdated.
+     * <p>
+     * A reader may still hold the {@link Time} of an earlier tick while the background thread already stored the {@link ZoneTime} of a later one, so the
+     * stored value is only ever replaced by a newer one.
+     */
+    private ZoneTime zoneTime(Time time, TimeZone timeZone)
+    {
+        String id = timeZone.getID();
+        ZoneTime zoneTime = mZoneTimes.get(id);
+        while (zoneTime == null || zoneTime.mTime != time)
+        {
+            // the zone is new or outdated, there is no harm in calculating it concurrently
+            ZoneTime result = new ZoneTime(timeZone, time);
+            if (zoneTime == null)
+            {
+                zoneTime = mZoneTimes.putIfAbsent(id, result);
+                if (zoneTime == null)
+                {
+                    return result;
+                }
+            }
+            else if (zoneTime.mTime.mSequence > time.mSequence || mZoneTimes.replace(id, zoneTime, result))
+            {
+                // the stored value is newer than what the caller asked for or it has been updated successfully
+                return result;
+            }
+            else
+            {
+                zoneTime = mZoneTimes.get(id);
+            }
+        }
+        return zoneTime;
+    }
+
+
+    /**
+     * The time of a tick.
+     */
+    private final static class Time
+    {
+        /**
+         * The number of the tick. Unlike the timestamp it always increases, even if the system clock is set back.
+         */
+        private final long mSequence;
+        private final long mTimestamp;
+        private final String mDtStamp;
+        private final byte[] mDtStampBytes;
+
+
+        private Time(long sequence, long timestamp)
+        {
+            mSequence = sequence;
+            mTimestamp = timestamp;
+            mDtStamp = Instance.toString(DateTime.GREGORIAN_CALENDAR_SCALE.toInstance(timestamp, DateTime.UTC)) + "Z";
+            mDtStampBytes = mDtStamp.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+
+    /**
+     * The instance of a tick in a specific {@link TimeZone}.
+     */
+    private final static class ZoneTime
+    {
+        private final TimeZone mTimeZone;
+        private final Time mTime;
+        private final long mInstance;
+
+
+        private ZoneTime(TimeZone timeZone, Time time)
+        {
+            mTimeZone = timeZone;
+            mTime = time;
+            mInstance = DateTime.GREGORIAN_CALENDAR_SCALE.toInstance(time.mTimestamp, timeZone);
+        }
+    }
+}
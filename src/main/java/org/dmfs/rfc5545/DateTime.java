@@ -19,6 +19,7 @@ package org.dmfs.rfc5545;
 
 import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
 import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.TransitionPolicy;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -30,10 +31,12 @@ import java.util.TimeZone;
  * stores all aspects of a DATE or DATETIME value.
  * <p>
  * Objects of this class are immutable.
+ * <p>
+ * Note: the natural ordering of this class is not consistent with {@link #equals(Object)}, see {@link #compareTo(DateTime)}.
  *
  * @author Marten Gajda
  */
-public final class DateTime
+public final class DateTime implements Comparable<DateTime>
 {
     /**
      * The default calendar scale. By default all {@link DateTime} and Date values use the Gregorian calendar scale if not specified otherwise.
@@ -45,6 +48,23 @@ public final class DateTime
      */
     public final static TimeZone UTC = TimeZone.getTimeZone("UTC");
 
+    /**
+     * The error type of {@link #tryParse(CalendarMetrics, CharSequence)} if the string is not a date-time string at all.
+     */
+    public final static int PARSE_ERROR_SYNTAX = 1;
+
+    /**
+     * The error type of {@link #tryParse(CalendarMetrics, CharSequence)} if a field of the string is out of range for the calendar scale.
+     */
+    public final static int PARSE_ERROR_RANGE = 2;
+
+    /**
+     * The flag of parse errors. Packed instances of parsed strings never have this bit set, because the year has at most four digits.
+     */
+    private final static long PARSE_ERROR_FLAG = Long.MIN_VALUE;
+
+    private final static int PARSE_ERROR_TYPE_POS = 32;
+
     /**
      * The {@link CalendarMetrics} of this {@link DateTime} object.
      */
@@ -58,16 +78,22 @@ public final class DateTime
      * All-day flag.
      */
     private final boolean mAllday;
+    /*
+     * The following fields are calculated lazily using the racy single-check idiom: each getter reads the field exactly once into a local variable and
+     * calculates and stores the value if it's still unset. Since the calculated values only depend on the immutable state, concurrent threads always
+     * compute the same value, so there is no need for synchronization. The long fields are volatile, because the JLS doesn't guarantee atomic writes of
+     * non-volatile longs (see JLS 17.7) and a torn value on a 32-bit runtime would be taken for a valid one. Writes of int fields are always atomic.
+     */
     /**
      * The milliseconds since the epoch of this {@link DateTime}. This will be {@link Long#MAX_VALUE} if it has not been calculated yet.
      */
-    private long mTimestamp = Long.MAX_VALUE;
+    private volatile long mTimestamp = Long.MAX_VALUE;
     /**
      * The packed instance of this {@link DateTime}. This will be {@link Long#MAX_VALUE} if it has not been calculated yet.
      *
      * @see Instance
      */
-    private long mInstance = Long.MAX_VALUE;
+    private volatile long mInstance = Long.MAX_VALUE;
     /**
      * The week of the year or <code>-1</code> if it hasn't been calculated yet.
      */
@@ -395,7 +421,7 @@ public final class DateTime
 
 
     /**
-     * Internal constructor to create a {@link DateTime} providing all values. It's private, because we can't trust external entities to pass correct
+     * Internal constructor to create a {@link DateTime} providing all values. It's not public, because we can't trust external entities to pass correct
      * parameters.
      *
      * @param calendarMetrics
@@ -409,7 +435,7 @@ public final class DateTime
      * @param timeStamp
      *         The time since the epoch in milliseconds.
      */
-    private DateTime(CalendarMetrics calendarMetrics, TimeZone timezone, long instance, boolean allDay, long timeStamp)
+    DateTime(CalendarMetrics calendarMetrics, TimeZone timezone, long instance, boolean allDay, long timeStamp)
     {
         mCalendarMetrics = calendarMetrics;
         mInstance = instance;
@@ -485,6 +511,8 @@ public final class DateTime
     /**
      * Parses a date-time string as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC 5545, Section 3.3.5</a>. This method uses the
      * default calendar scale {@link #GREGORIAN_CALENDAR_SCALE}.
+     * <p>
+     * The time zone is resolved using {@link TimeZoneCache#DEFAULT}, so the {@link TimeZone} of the result is shared and must not be modified.
      *
      * @param timeZone
      *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the event will be floating.
@@ -497,7 +525,7 @@ public final class DateTime
      */
     public static DateTime parse(String timeZone, String string)
     {
-        return parse(GREGORIAN_CALENDAR_SCALE, timeZone == null ? null : TimeZone.getTimeZone(timeZone), string);
+        return parse(GREGORIAN_CALENDAR_SCALE, timeZone == null ? null : TimeZoneCache.DEFAULT.timeZone(timeZone), string);
     }
 
 
@@ -568,39 +596,233 @@ public final class DateTime
      * @return A new {@link DateTime} instance.
      */
     public static DateTime parse(CalendarMetrics calendarMetrics, TimeZone timeZone, String string)
+    {
+        if (Instrumentation.ENABLED)
+        {
+            long start = System.nanoTime();
+            DateTime result = parseDateTime(calendarMetrics, timeZone, string);
+            Instrumentation.record(Instrumentation.Operation.PARSE_DATE_TIME, calendarMetrics, timeZone, start);
+            return result;
+        }
+        return parseDateTime(calendarMetrics, timeZone, string);
+    }
+
+
+    private static DateTime parseDateTime(CalendarMetrics calendarMetrics, TimeZone timeZone, String string)
     {
         if (string == null)
         {
             throw new NullPointerException("a date-time string must not be null");
         }
 
-        try
+        long instance = scan(string);
+        if (isParseError(instance))
         {
-            if (string.length() == 8)
-            {
-                return new DateTime(calendarMetrics, parseFourDigits(string, 0), parseTwoDigits(string, 4) - 1, parseTwoDigits(string, 6));
-            }
-            else if (string.length() == 15 && string.charAt(8) == 'T')
+            throw new IllegalArgumentException("illegal date-time string: '" + string + "' at position " + parseErrorPosition(instance));
+        }
+        if (string.length() == 8)
+        {
+            return new DateTime(calendarMetrics, null, instance, true, Long.MAX_VALUE);
+        }
+        return new DateTime(calendarMetrics, string.length() == 16 ? UTC : timeZone, instance, false, Long.MAX_VALUE);
+    }
+
+
+    /**
+     * Parses a date-time string like {@link #tryParse(CalendarMetrics, CharSequence)} using the default calendar scale {@link #GREGORIAN_CALENDAR_SCALE}.
+     *
+     * @param string
+     *         The date-time string to parse.
+     *
+     * @return The packed instance or an error value if {@link #isParseError(long)} returns <code>true</code>.
+     */
+    public static long tryParse(CharSequence string)
+    {
+        return tryParse(GREGORIAN_CALENDAR_SCALE, string);
+    }
+
+
+    /**
+     * Parses a date-time string as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC 5545, Section 3.3.5</a> without throwing
+     * any exceptions. In contrast to {@link #parse(CalendarMetrics, TimeZone, String)} this method also validates the fields of the value using {@link
+     * CalendarMetrics#validate(long)}.
+     * <p>
+     * The result is either the packed instance of the value or an error value that contains the error type ({@link #PARSE_ERROR_SYNTAX} or {@link
+     * #PARSE_ERROR_RANGE}) and the position of the error. Use {@link #isParseError(long)} to tell them apart. Like in {@link
+     * AsciiDateTimeParser#parseInstance(byte[], int, int)} the form of the value is determined by the length of the string: <code>8</code> means all-day,
+     * <code>15</code> means floating (or local time) and <code>16</code> means UTC.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to validate the value with.
+     * @param string
+     *         The date-time string to parse.
+     *
+     * @return The packed instance or an error value.
+     */
+    public static long tryParse(CalendarMetrics calendarMetrics, CharSequence string)
+    {
+        long instance = scan(string);
+        if (isParseError(instance) || calendarMetrics.validate(instance))
+        {
+            return instance;
+        }
+
+        // find the field that's out of range, this is the slow path, so we don't care about duplicate work
+        int year = Instance.year(instance);
+        int month = Instance.month(instance);
+        int position;
+        if (month >= calendarMetrics.getMonthsPerYear(year))
+        {
+            position = 4;
+        }
+        else if (Instance.dayOfMonth(instance) < 1 || Instance.dayOfMonth(instance) > calendarMetrics.getDaysPerPackedMonth(year, month))
+        {
+            position = 6;
+        }
+        else if (Instance.hour(instance) > 23)
+        {
+            position = 9;
+        }
+        else if (Instance.minute(instance) > 59)
+        {
+            position = 11;
+        }
+        else
+        {
+            position = 13;
+        }
+        return parseError(PARSE_ERROR_RANGE, position);
+    }
+
+
+    /**
+     * Returns whether the given result of {@link #tryParse(CalendarMetrics, CharSequence)} is an error.
+     *
+     * @param result
+     *         The result of {@link #tryParse(CalendarMetrics, CharSequence)}.
+     *
+     * @return <code>true</code> if the string was not a valid date-time value.
+     */
+    public static boolean isParseError(long result)
+    {
+        return (result & PARSE_ERROR_FLAG) != 0;
+    }
+
+
+    /**
+     * Returns the type of the given error result of {@link #tryParse(CalendarMetrics, CharSequence)}.
+     *
+     * @param result
+     *         An error result of {@link #tryParse(CalendarMetrics, CharSequence)}.
+     *
+     * @return Either {@link #PARSE_ERROR_SYNTAX} or {@link #PARSE_ERROR_RANGE}.
+     */
+    public static int parseErrorType(long result)
+    {
+        return (int) ((result & ~PARSE_ERROR_FLAG) >>> PARSE_ERROR_TYPE_POS);
+    }
+
+
+    /**
+     * Returns the position of the error in the string of the given error result of {@link #tryParse(CalendarMetrics, CharSequence)}. For syntax errors that's
+     * the index of the first invalid character or the length of the string if it ended prematurely. For range errors it's the index of the first field that's
+     * out of range.
+     *
+     * @param result
+     *         An error result of {@link #tryParse(CalendarMetrics, CharSequence)}.
+     *
+     * @return The position of the error.
+     */
+    public static int parseErrorPosition(long result)
+    {
+        return (int) result;
+    }
+
+
+    static long parseError(int type, int position)
+    {
+        return PARSE_ERROR_FLAG | ((long) type << PARSE_ERROR_TYPE_POS) | position;
+    }
+
+
+    /**
+     * Scans the given date-time string without validating the ranges of the fields, except for the month, which must not be <code>0</code>.
+     *
+     * @param string
+     *         The date-time string to scan.
+     *
+     * @return The packed instance or a syntax error.
+     */
+    static long scan(CharSequence string)
+    {
+        int length = string.length();
+        for (int i = 0; i < 8; ++i)
+        {
+            if (i == length || !isDigit(string.charAt(i)))
             {
-                return new DateTime(calendarMetrics, timeZone, parseFourDigits(string, 0), parseTwoDigits(string, 4) - 1, parseTwoDigits(string, 6),
-                        parseTwoDigits(string, 9), parseTwoDigits(string, 11), parseTwoDigits(string, 13));
+                return parseError(PARSE_ERROR_SYNTAX, i);
             }
-            else if (string.length() == 16 && string.charAt(8) == 'T' && string.charAt(15) == 'Z')
+        }
+
+        int year = digits(string, 0) * 100 + digits(string, 2);
+        int month = digits(string, 4);
+        int dayOfMonth = digits(string, 6);
+        if (month == 0)
+        {
+            return parseError(PARSE_ERROR_RANGE, 4);
+        }
+
+        if (length == 8)
+        {
+            return Instance.make(year, month - 1, dayOfMonth, 0, 0, 0);
+        }
+
+        if (string.charAt(8) != 'T')
+        {
+            return parseError(PARSE_ERROR_SYNTAX, 8);
+        }
+
+        for (int i = 9; i < 15; ++i)
+        {
+            if (i == length || !isDigit(string.charAt(i)))
             {
-                return new DateTime(calendarMetrics, UTC, parseFourDigits(string, 0), parseTwoDigits(string, 4) - 1, parseTwoDigits(string, 6), parseTwoDigits(
-                        string, 9), parseTwoDigits(string, 11), parseTwoDigits(string, 13));
+                return parseError(PARSE_ERROR_SYNTAX, i);
             }
         }
-        catch (NumberFormatException e)
+
+        if (length > 15 && string.charAt(15) != 'Z')
         {
-            throw new IllegalArgumentException("illegal characters in date-time string: '" + string + "'", e);
+            return parseError(PARSE_ERROR_SYNTAX, 15);
         }
-        throw new IllegalArgumentException("illegal date-time string: '" + string + "'");
+
+        if (length > 16)
+        {
+            return parseError(PARSE_ERROR_SYNTAX, 16);
+        }
+
+        return Instance.make(year, month - 1, dayOfMonth, digits(string, 9), digits(string, 11), digits(string, 13));
+    }
+
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+
+    /**
+     * Returns the value of the two digits at the given position, which must have been checked already.
+     */
+    private static int digits(CharSequence string, int offset)
+    {
+        return (string.charAt(offset) - '0') * 10 + string.charAt(offset + 1) - '0';
     }
 
 
     /**
      * Checks whether the timestamp of an event would change when switching from one {@link TimeZone} to another one.
+     * <p>
+     * This uses the cached equivalence classes of {@link TimeZoneEquivalence}, so in general it's just an int compare.
      *
      * @param first
      *         A {@link TimeZone}.
@@ -611,34 +833,15 @@ public final class DateTime
      */
     private static boolean sameTimestamps(TimeZone first, TimeZone second)
     {
-        if (first == second)
-        {
-            return true;
-        }
-
-        String firstId = first != null ? first.getID() : null;
-        if (second == null && ("UTC".equals(firstId) || UTC.equals(first) || UTC.hasSameRules(first)))
-        {
-            // second time zone is "floating" and first one is UTC, we don't need to change the time stamp
-            return true;
-        }
-
-        String secondId = second != null ? second.getID() : null;
-        if (first == null && ("UTC".equals(secondId) || UTC.equals(second) || UTC.hasSameRules(second)))
-        {
-            // first time zone is "floating" and second one is UTC, we don't need to change the time stamp
-            return true;
-        }
-
-        return first != null && second != null && (firstId.equals(secondId) || first.equals(second) || first.hasSameRules(second));
+        return TimeZoneEquivalence.sameRules(first, second);
     }
 
 
     /**
-     * Parses the next four characters in the given {@link String} at the given offset as an integer.
+     * Parses the next four characters in the given {@link CharSequence} at the given offset as an integer.
      *
      * @param string
-     *         The {@link String} to parse.
+     *         The {@link CharSequence} to parse.
      * @param offset
      *         The offset of the number in the string.
      *
@@ -647,17 +850,17 @@ public final class DateTime
      * @throws NumberFormatException
      *         if the String doesn't contain digits at the given offset.
      */
-    private static int parseFourDigits(String string, int offset)
+    static int parseFourDigits(CharSequence string, int offset)
     {
         return parseTwoDigits(string, offset) * 100 + parseTwoDigits(string, offset + 2);
     }
 
 
     /**
-     * Parses the next two characters in the given {@link String} at the given offset as an integer.
+     * Parses the next two characters in the given {@link CharSequence} at the given offset as an integer.
      *
      * @param string
-     *         The {@link String} to parse.
+     *         The {@link CharSequence} to parse.
      * @param offset
      *         The offset of the number in the string.
      *
@@ -666,14 +869,14 @@ public final class DateTime
      * @throws NumberFormatException
      *         if the String doesn't contain digits at the given offset.
      */
-    private static int parseTwoDigits(String string, int offset)
+    static int parseTwoDigits(CharSequence string, int offset)
     {
         int d1 = string.charAt(offset) - '0';
         int d2 = string.charAt(offset + 1) - '0';
 
         if (d1 < 0 || d2 < 0 || d1 > 9 || d2 > 9)
         {
-            throw new NumberFormatException("illegal digit in number " + string.substring(offset, 2));
+            throw new NumberFormatException("illegal digit in number " + string.subSequence(offset, offset + 2));
         }
 
         return d1 * 10 + d2;
@@ -704,18 +907,53 @@ public final class DateTime
 
     /**
      * Returns the timestamp of this {@link DateTime} instance. For floating dates, this equals the timestamp in UTC.
+     * <p>
+     * Local times that fall into a gap or an overlap of the time zone are resolved using {@link TransitionPolicy#LATER}, see {@link
+     * #getTimestamp(TransitionPolicy)}.
      *
      * @return the time in milliseconds since the epoch.
      */
     public long getTimestamp()
     {
-        if (mTimestamp == Long.MAX_VALUE)
+        long timestamp = mTimestamp;
+        if (timestamp == Long.MAX_VALUE)
         {
+            long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
             long instance = getInstance();
-            return mTimestamp = mCalendarMetrics.toMillis(mTimezone, Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance),
-                    Instance.hour(instance), Instance.minute(instance), Instance.second(instance), 0);
+            mTimestamp = timestamp = mCalendarMetrics.toMillis(mTimezone, Instance.year(instance), Instance.month(instance),
+                    Instance.dayOfMonth(instance), Instance.hour(instance), Instance.minute(instance), Instance.second(instance), 0);
+            if (Instrumentation.ENABLED)
+            {
+                Instrumentation.record(Instrumentation.Operation.TIMESTAMP, mCalendarMetrics, mTimezone, start);
+            }
+        }
+        return timestamp;
+    }
+
+
+    /**
+     * Returns the timestamp of this {@link DateTime} instance, resolving local times that fall into a gap or an overlap of the time zone with the given {@link
+     * TransitionPolicy}. If this {@link DateTime} has been created from a timestamp (or the timestamp is known otherwise) that timestamp is returned, regardless
+     * of the policy.
+     *
+     * @param policy
+     *         The {@link TransitionPolicy}.
+     *
+     * @return the time in milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException
+     *         if the policy is {@link TransitionPolicy#REJECT} and the local time falls into a gap or an overlap.
+     */
+    public long getTimestamp(TransitionPolicy policy)
+    {
+        if (mTimestamp != Long.MAX_VALUE || mTimezone == null || policy == TransitionPolicy.LATER)
+        {
+            return getTimestamp();
         }
-        return mTimestamp;
+
+        long instance = getInstance();
+        return mCalendarMetrics.toMillis(mTimezone, Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance), Instance.hour(instance),
+                Instance.minute(instance), Instance.second(instance), 0, policy);
     }
 
 
@@ -778,7 +1016,7 @@ public final class DateTime
         }
 
         long timestamp = mTimestamp;
-        if (timestamp == Long.MAX_VALUE || oldTimeZone != null && oldTimeZone.hasSameRules(timezone) || sameTimestamps(oldTimeZone, timezone))
+        if (timestamp == Long.MAX_VALUE || sameTimestamps(oldTimeZone, timezone))
         {
             // we don't have a timestamp or we don't need to change it
             return new DateTime(mCalendarMetrics, timezone, getInstance(), false, timestamp);
@@ -792,7 +1030,8 @@ public final class DateTime
      * Replace the current time zone by the given one, keeping the absolute time constant. In effect the local time will change by the difference of the offsets
      * to UTC of both time zones.
      * <p>
-     * FIXME: There is a problem in case the time falls on a DST change. In that case the time might not be calculated as expected.
+     * If the absolute time is not known yet and the local time falls into a gap or an overlap of the current time zone, the absolute time is determined as
+     * described in {@link #getTimestamp()}.
      *
      * @param timezone
      *         The new {@link TimeZone}.
@@ -816,13 +1055,13 @@ public final class DateTime
         }
 
         long instance = mInstance;
-        if (instance == Long.MAX_VALUE || oldTimeZone != null && oldTimeZone.hasSameRules(timezone) || sameTimestamps(oldTimeZone, timezone))
+        if (instance == Long.MAX_VALUE || sameTimestamps(oldTimeZone, timezone))
         {
             // we don't have an instance or we don't need to change it
             return new DateTime(mCalendarMetrics, timezone, instance, false, getTimestamp());
         }
 
-        return new DateTime(timezone, getTimestamp());
+        return new DateTime(mCalendarMetrics, timezone, getTimestamp());
     }
 
 
@@ -1018,7 +1257,12 @@ public final class DateTime
         long instance = mInstance;
         if (instance == Long.MAX_VALUE)
         {
-            return mInstance = mCalendarMetrics.toInstance(mTimestamp, mTimezone);
+            long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
+            instance = mInstance = mCalendarMetrics.toInstance(mTimestamp, mTimezone);
+            if (Instrumentation.ENABLED)
+            {
+                Instrumentation.record(Instrumentation.Operation.INSTANCE, mCalendarMetrics, mTimezone, start);
+            }
         }
         return instance;
     }
@@ -1045,7 +1289,7 @@ public final class DateTime
             if (sameTimestamps(mTimezone, that.mTimezone))
             {
                 // calendarmetrics and timezone are the same, so we can simply compare the instance values
-                return getInstance() > that.mInstance;
+                return getInstance() > that.getInstance();
             }
         }
 
@@ -1074,7 +1318,7 @@ public final class DateTime
             if (sameTimestamps(mTimezone, that.mTimezone))
             {
                 // calendarmetrics and timezone are the same, so we can simply compare the instance values
-                return getInstance() < that.mInstance;
+                return getInstance() < that.getInstance();
             }
         }
 
@@ -1082,6 +1326,33 @@ public final class DateTime
     }
 
 
+    /**
+     * Compares this {@link DateTime} to another one. The timestamp serves as the sort key. It's calculated only once per {@link DateTime}, so sorting and merging
+     * a list of {@link DateTime}s (even of mixed time zones) boils down to comparing primitive values. All-day values are ordered before non-all-day values
+     * with the same timestamp.
+     * <p>
+     * Just like {@link #after(DateTime)} and {@link #before(DateTime)} this treats floating times like UTC times.
+     * <p>
+     * Note: this ordering is not consistent with {@link #equals(Object)}. Two {@link DateTime}s with the same timestamp but different time zones (or calendar
+     * scales) are not equal, yet this method returns <code>0</code>.
+     *
+     * @param that
+     *         The {@link DateTime} to compare to.
+     *
+     * @return A negative integer, zero, or a positive integer if this {@link DateTime} is before, at the same time, or after the given one.
+     */
+    @Override
+    public int compareTo(DateTime that)
+    {
+        int result = Long.compare(getTimestamp(), that.getTimestamp());
+        if (result == 0 && mAllday != that.mAllday)
+        {
+            return mAllday ? -1 : 1;
+        }
+        return result;
+    }
+
+
     @Override
     public int hashCode()
     {
@@ -1102,7 +1373,7 @@ public final class DateTime
         if (mInstance != Long.MAX_VALUE && other.mInstance != Long.MAX_VALUE)
         {
             // compare by instance
-            return mInstance == other.mInstance && mAllday == other.mAllday && mCalendarMetrics.scaleEquals(other.mCalendarMetrics)
+            return getInstance() == other.getInstance() && mAllday == other.mAllday && mCalendarMetrics.scaleEquals(other.mCalendarMetrics)
                     && (mTimezone == other.mTimezone || mTimezone != null && other.mTimezone != null && sameTimestamps(mTimezone, other.mTimezone));
         }
         else
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A bounded, lock-free cache of parsed {@link DateTime}s.
+ * <p>
+ * Calendar data is very repetitive, the same date-time strings show up over and over again. This cache returns the same {@link DateTime} instance for all
+ * calls to {@link #parse(CalendarMetrics, TimeZone, String)} with the same arguments. The timestamp of each cached {@link DateTime} is calculated before the
+ * instance is shared, so it's not calculated again by each user.
+ * <p>
+ * The cache is a fixed size, 4-way set associative hash table. Within each set, entries are evicted using the CLOCK algorithm, i.e. an entry that has been
+ * used since the last time the clock hand passed it gets a second chance.
+ * <p>
+ * {@link TimeZone}s are compared by identity, so use shared instances (like the ones returned by {@link TimeZoneCache}) to get cache hits.
+ * {@link CalendarMetrics} are compared using {@link CalendarMetrics#equals(Object)}.
+ * <p>
+ * <strong>Note:</strong> The {@link TimeZone}s of the returned {@link DateTime}s are shared, so they must not be modified.
+ *
+ * @author Marten Gajda
+ */
+public final class DateTimeParseCache
+{
+    /**
+     * The number of entries per set.
+     */
+    private final static int WAYS = 4;
+
+    private final AtomicReferenceArray<Entry> mEntries;
+    /**
+     * The reference bits of the entries.
+     */
+    private final AtomicIntegerArray mReferenced;
+    /**
+     * The clock hand of each set.
+     */
+    private final AtomicIntegerArray mHands;
+    private final int mSetMask;
+
+    private final LongAdder mHits = new LongAdder();
+    private final LongAdder mMisses = new LongAdder();
+
+
+    /**
+     * Creates a {@link DateTimeParseCache} with space for (at least) the given number of {@link DateTime}s.
+     *
+     * @param capacity
+     *         The capacity of the cache, will be rounded up to the next power of two.
+     */
+    public DateTimeParseCache(int capacity)
+    {
+        if (capacity < WAYS || capacity > 1 << 24)
+        {
+            throw new IllegalArgumentException("capacity must be in the range [4, 16777216]");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mEntries = new AtomicReferenceArray<Entry>(size);
+        mReferenced = new AtomicIntegerArray(size);
+        mHands = new AtomicIntegerArray(size / WAYS);
+        mSetMask = size / WAYS - 1;
+    }
+
+
+    /**
+     * Parses a date-time string using the default calendar scale {@link DateTime#GREGORIAN_CALENDAR_SCALE}.
+     *
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the event will be floating.
+     * @param string
+     *         A valid date-time string.
+     *
+     * @return A shared {@link DateTime} instance.
+     *
+     * @see #parse(CalendarMetrics, TimeZone, String)
+     */
+    public DateTime parse(TimeZone timeZone, String string)
+    {
+        return parse(DateTime.GREGORIAN_CALENDAR_SCALE, timeZone, string);
+    }
+
+
+    /**
+     * Parses a date-time string like {@link DateTime#parse(CalendarMetrics, TimeZone, String)} does, returning a cached {@link DateTime} if the same string
+     * has been parsed with the same calendar scale and {@link TimeZone} before. Invalid strings are not cached.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to use.
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the event will be floating unless it ends with
+     *         'Z'.
+     * @param string
+     *         A valid date-time string.
+     *
+     * @return A shared {@link DateTime} instance.
+     *
+     * @throws IllegalArgumentException
+     *         if the string is not a valid date-time string.
+     */
+    public DateTime parse(CalendarMetrics calendarMetrics, TimeZone timeZone, String string)
+    {
+        int hash = string.hashCode() * 31 + System.identityHashCode(timeZone);
+        int first = (spread(hash) & mSetMask) * WAYS;
+        AtomicReferenceArray<Entry> entries = mEntries;
+        for (int i = first; i < first + WAYS; ++i)
+        {
+            Entry entry = entries.get(i);
+            if (entry != null && entry.matches(hash, calendarMetrics, timeZone, string))
+            {
+                if (mReferenced.get(i) == 0)
+                {
+                    mReferenced.lazySet(i, 1);
+                }
+                mHits.increment();
+                return entry.mDateTime;
+            }
+        }
+
+        mMisses.increment();
+        DateTime result = DateTime.parse(calendarMetrics, timeZone, string);
+        try
+        {
+            // calculate the timestamp before the instance is shared
+            result.getTimestamp();
+        }
+        catch (IllegalArgumentException e)
+        {
+            // the timestamp can't be calculated, don't cache this one, the caller will get the same exception when calling getTimestamp()
+            return result;
+        }
+        // racing threads may parse and insert the same string concurrently, but that does no harm
+        entries.set(victim(first), new Entry(hash, calendarMetrics, timeZone, string, result));
+        return result;
+    }
+
+
+    /**
+     * Returns the number of cache hits since this cache has been created or since the last call to {@link #resetStatistics()}.
+     *
+     * @return The number of hits.
+     */
+    public long hits()
+    {
+        return mHits.sum();
+    }
+
+
+    /**
+     * Returns the number of cache misses since this cache has been created or since the last call to {@link #resetStatistics()}.
+     *
+     * @return The number of misses.
+     */
+    public long misses()
+    {
+        return mMisses.sum();
+    }
+
+
+    /**
+     * Returns the ratio of cache hits to all lookups.
+     *
+     * @return The hit rate in the range [0, 1] or <code>0</code> if there were no lookups yet.
+     */
+    public double hitRate()
+    {
+        long hits = mHits.sum();
+        long total = hits + mMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetStatistics()
+    {
+        mHits.reset();
+        mMisses.reset();
+    }
+
+
+    /**
+     * Removes all entries from this cache.
+     */
+    public void clear()
+    {
+        for (int i = 0, length = mEntries.length(); i < length; ++i)
+        {
+            mEntries.set(i, null);
+            mReferenced.set(i, 0);
+        }
+    }
+
+
+    /**
+     * Returns the index of the entry to replace in the set starting at the given index. Empty slots are used first, otherwise the clock hand of the set moves
+     * forward until it finds an entry that hasn't been referenced since the last time it passed it.
+     */
+    private int victim(int first)
+    {
+        AtomicReferenceArray<Entry> entries = mEntries;
+        for (int i = first; i < first + WAYS; ++i)
+        {
+            if (entries.get(i) == null)
+            {
+                return i;
+            }
+        }
+
+        AtomicIntegerArray referenced = mReferenced;
+        int set = first / WAYS;
+        int hand = mHands.get(set);
+        for (int step = 0; step < WAYS; ++step)
+        {
+            int index = first + hand;
+            hand = (hand + 1) & (WAYS - 1);
+            if (referenced.get(index) == 0)
+            {
+                mHands.lazySet(set, hand);
+                return index;
+            }
+            referenced.lazySet(index, 0);
+        }
+        // all entries have been referenced, after one round the hand is back at its start, which is replaced now
+        mHands.lazySet(set, (hand + 1) & (WAYS - 1));
+        return first + hand;
+    }
+
+
+    private static int spread(int hash)
+    {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        return hash ^ (hash >>> 13);
+    }
+
+
+    /**
+     * An immutable cache entry.
+     */
+    private final static class Entry
+    {
+        private final int mHash;
+        private final CalendarMetrics mCalendarMetrics;
+        private final TimeZone mTimeZone;
+        private final String mString;
+        private final DateTime mDateTime;
+
+
+        private Entry(int hash, CalendarMetrics calendarMetrics, TimeZone timeZone, String string, DateTime dateTime)
+        {
+            mHash = hash;
+            mCalendarMetrics = calendarMetrics;
+            mTimeZone = timeZone;
+            mString = string;
+            mDateTime = dateTime;
+        }
+
+
+        private boolean matches(int hash, CalendarMetrics calendarMetrics, TimeZone timeZone, String string)
+        {
+            return mHash == hash && mTimeZone == timeZone && mString.equals(string) && (mCalendarMetrics == calendarMetrics || mCalendarMetrics.equals(
+                    calendarMetrics));
+        }
+    }
+}
@@ -31,15 +31,6 @@ import java.util.TimeZone;
  */
 public final class Duration
 {
-    private final static int PARSER_STATE_SIGN = 0;
-    private final static int PARSER_STATE_P = 1;
-    private final static int PARSER_STATE_D = 3;
-    private final static int PARSER_STATE_T = 4;
-    private final static int PARSER_STATE_H = 5;
-    private final static int PARSER_STATE_M = 6;
-    private final static int PARSER_STATE_S = 7;
-    private final static int PARSER_STATE_W = 8;
-
     /**
      * A factor that sets the sign of the Duration value. Either <code>1</code> or <code>-1</code>.
      */
@@ -131,125 +122,35 @@ public final class Duration
      */
     public static Duration parse(String durationString)
     {
-        if (durationString == null || durationString.length() < 3)
+        if (Instrumentation.ENABLED)
         {
-            throw new IllegalArgumentException("Invalid Duration string: " + durationString);
+            long start = System.nanoTime();
+            Duration result = parseDuration(durationString);
+            Instrumentation.record(Instrumentation.Operation.PARSE_DURATION, start);
+            return result;
         }
+        return parseDuration(durationString);
+    }
 
-        int sign = 1;
-        int weeks = 0;
-        int days = 0;
-        int hours = 0;
-        int minutes = 0;
-        int seconds = 0;
-
-        int currentValue = 0;
-        int parserState = -1;
-        int nextState = -1;
-        boolean hadD = false;
-        boolean hadT = false;
 
-        for (int i = 0, count = durationString.length(); i < count; ++i)
+    private static Duration parseDuration(String durationString)
+    {
+        if (durationString == null)
         {
-            char c = durationString.charAt(i);
-            boolean wasDigit = false;
-            switch (c)
-            {
-                case '-':
-                {
-                    sign = -1;
-                }
-                case '+':
-                {
-                    nextState = PARSER_STATE_SIGN;
-                    break;
-                }
-                case 'P':
-                case 'p':
-                {
-                    nextState = PARSER_STATE_P;
-                    break;
-                }
-                case 'D':
-                case 'd':
-                {
-                    days = currentValue;
-                    currentValue = 0;
-                    nextState = PARSER_STATE_D;
-                    hadD = true;
-                    break;
-                }
-                case 'T':
-                case 't':
-                {
-                    nextState = PARSER_STATE_T;
-                    hadT = true;
-                    break;
-                }
-                case 'H':
-                case 'h':
-                {
-                    hours = currentValue;
-                    currentValue = 0;
-                    nextState = PARSER_STATE_H;
-                    break;
-                }
-                case 'M':
-                case 'm':
-                {
-                    minutes = currentValue;
-                    currentValue = 0;
-                    nextState = PARSER_STATE_M;
-                    break;
-                }
-                case 'S':
-                case 's':
-                {
-                    seconds = currentValue;
-                    currentValue = 0;
-                    nextState = PARSER_STATE_S;
-                    break;
-                }
-                case 'W':
-                case 'w':
-                {
-                    weeks = currentValue;
-                    currentValue = 0;
-                    nextState = PARSER_STATE_W;
-                    break;
-                }
-                default:
-                {
-                    if (c < '0' || c > '9')
-                    {
-                        throw new IllegalArgumentException("Unexpected char '" + c + "' at position " + i);
-                    }
-                    currentValue = currentValue * 10 + (c - '0');
-                    wasDigit = true;
-                }
-            }
-
-            if (parserState > nextState || !wasDigit && parserState == nextState)
-            {
-                throw new IllegalArgumentException("Unexpected char '" + c + "' at position " + i);
-            }
-
-            parserState = nextState;
+            throw new IllegalArgumentException("Invalid Duration string: null");
         }
 
-        if (parserState <= PARSER_STATE_P || !hadD && parserState == PARSER_STATE_T || !hadT && parserState > PARSER_STATE_T && parserState < PARSER_STATE_W)
+        long duration = Durations.parse(durationString);
+        if (Durations.isError(duration))
         {
+            int position = Durations.errorPosition(duration);
+            if (position < durationString.length())
+            {
+                throw new IllegalArgumentException("Unexpected char '" + durationString.charAt(position) + "' at position " + position);
+            }
             throw new IllegalArgumentException("Invalid duration string: " + durationString);
         }
-
-        if (weeks != 0)
-        {
-            return new Duration(sign, weeks);
-        }
-        else
-        {
-            return new Duration(sign, days, hours, minutes, seconds);
-        }
+        return Durations.toDuration(duration);
     }
 
 
@@ -473,9 +374,7 @@ public final class Duration
     @Override
     public String toString()
     {
-        StringBuilder sb = new StringBuilder(15);
-        writeTo(sb);
-        return sb.toString();
+        return Durations.toString(Durations.make(mSign, mDays, mTime));
     }
 
 
@@ -487,55 +386,7 @@ public final class Duration
      */
     public void writeTo(StringBuilder builder)
     {
-        if (mSign < 0 && (mDays > 0 || mTime > 0))
-        {
-            builder.append('-');
-        }
-
-        builder.append('P');
-
-        int weeks = getWeeks();
-        if (weeks > 0)
-        {
-            builder.append(weeks);
-            builder.append('W');
-        }
-        else
-        {
-            if (mDays > 0)
-            {
-                builder.append(mDays);
-                builder.append('D');
-            }
-
-            if (mTime != 0)
-            {
-                int hours = getHours();
-                int minutes = getMinutes();
-                int seconds = getSeconds();
-
-                builder.append('T');
-                if (hours > 0)
-                {
-                    builder.append(hours);
-                    builder.append('H');
-                }
-                if (minutes > 0)
-                {
-                    builder.append(minutes);
-                    builder.append('M');
-                }
-                if (seconds > 0)
-                {
-                    builder.append(seconds);
-                    builder.append('S');
-                }
-            }
-            else if (mDays == 0)
-            {
-                builder.append("0D");
-            }
-        }
+        Durations.writeTo(builder, Durations.make(mSign, mDays, mTime));
     }
 
 
@@ -549,55 +400,7 @@ public final class Duration
      */
     public void writeTo(Writer writer) throws IOException
     {
-        if (mSign < 0 && (mDays > 0 || mTime > 0))
-        {
-            writer.append('-');
-        }
-
-        writer.append('P');
-
-        int weeks = getWeeks();
-        if (weeks > 0)
-        {
-            writer.write(Integer.toString(weeks));
-            writer.write('W');
-        }
-        else
-        {
-            if (mDays > 0)
-            {
-                writer.write(Integer.toString(mDays));
-                writer.write('D');
-            }
-
-            if (mTime != 0)
-            {
-                int hours = getHours();
-                int minutes = getMinutes();
-                int seconds = getSeconds();
-
-                writer.write('T');
-                if (hours > 0)
-                {
-                    writer.write(Integer.toString(hours));
-                    writer.write('H');
-                }
-                if (minutes > 0)
-                {
-                    writer.write(Integer.toString(minutes));
-                    writer.write('M');
-                }
-                if (seconds > 0)
-                {
-                    writer.write(Integer.toString(seconds));
-                    writer.write('S');
-                }
-            }
-            else if (mDays == 0)
-            {
-                writer.write("0D");
-            }
-        }
+        Durations.writeTo(writer, Durations.make(mSign, mDays, mTime));
     }
 
 
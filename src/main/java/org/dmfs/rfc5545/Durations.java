@@ -0,0 +1,1270 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * Provides a set of static methods to manipulate duration values stored in a single packed long value, just like {@link Instance} does it for date and time
+ * values.
+ * <p>
+ * A packed duration contains the sign, the number of days and the time in seconds, just like a {@link Duration}. All arithmetic operations are free of
+ * allocations.
+ * <p>
+ * The writers render durations using digit lookup tables, writing to a byte array or a {@link ByteBuffer} with a backing array doesn't allocate anything.
+ * The most common durations (times in steps of 5 minutes up to one day and up to 31 days) are rendered only once and copied from a cache.
+ * <p>
+ * The parsers don't throw on invalid input. Instead they return an error value that contains the position of the first invalid character. Use {@link
+ * #isError(long)} to check the result of a parser.
+ * <p>
+ * Also note: never persist packed duration values. The implementation and the format of the packed long may change.
+ *
+ * @author Marten Gajda
+ */
+public final class Durations
+{
+    private final static int SECONDS_BITS = 32;
+    private final static int DAYS_BITS = 31;
+
+    private final static int SECONDS_POS = 0;
+    private final static int DAYS_POS = SECONDS_BITS + SECONDS_POS;
+    private final static int SIGN_POS = DAYS_BITS + DAYS_POS;
+
+    private final static long SECONDS_MASK = ((1L << SECONDS_BITS) - 1) << SECONDS_POS;
+    private final static long DAYS_MASK = ((1L << DAYS_BITS) - 1) << DAYS_POS;
+    private final static long SIGN_MASK = 1L << SIGN_POS;
+
+    private final static long SECONDS_PER_DAY = 24 * 3600;
+
+    /**
+     * A packed duration of zero length.
+     */
+    public final static long ZERO = 0;
+
+    /**
+     * The maximum length of a duration string, i.e. the length of <code>-P2147483647DT596523H59M59S</code>.
+     */
+    public final static int MAX_LENGTH = 27;
+
+    /**
+     * The ASCII digits of all numbers from 00 to 99.
+     */
+    private final static byte[] DIGITS = new byte[200];
+
+    static
+    {
+        for (int i = 0; i < 100; ++i)
+        {
+            DIGITS[i * 2] = (byte) ('0' + i / 10);
+            DIGITS[i * 2 + 1] = (byte) ('0' + i % 10);
+        }
+    }
+
+    /**
+     * The flag of parser errors. Valid durations never have this bit set, because the seconds are always less than 2^31.
+     */
+    private final static long ERROR_FLAG = 1L << 31;
+
+    /*
+     * The character classes of the parser.
+     */
+    private final static int CLASS_DIGIT = 0;
+    private final static int CLASS_PLUS = 1;
+    private final static int CLASS_MINUS = 2;
+    private final static int CLASS_P = 3;
+    private final static int CLASS_T = 4;
+    private final static int CLASS_W = 5;
+    private final static int CLASS_D = 6;
+    private final static int CLASS_H = 7;
+    private final static int CLASS_M = 8;
+    private final static int CLASS_S = 9;
+    private final static int CLASS_OTHER = 10;
+    private final static int CLASS_COUNT = 11;
+
+    /*
+     * The states of the parser. The states after a unit are the ones a duration may end in.
+     */
+    private final static int STATE_START = 0;
+    private final static int STATE_SIGN = 1;
+    private final static int STATE_P = 2;
+    private final static int STATE_DATE_DIGITS = 3;
+    private final static int STATE_WEEKS = 4;
+    private final static int STATE_DAYS = 5;
+    private final static int STATE_T = 6;
+    private final static int STATE_TIME_DIGITS = 7;
+    private final static int STATE_HOURS = 8;
+    private final static int STATE_MINUTE_OR_SECOND_DIGITS = 9;
+    private final static int STATE_MINUTES = 10;
+    private final static int STATE_SECOND_DIGITS = 11;
+    private final static int STATE_SECONDS = 12;
+    private final static int STATE_COUNT = 13;
+
+    private final static int FINAL_STATES = (1 << STATE_WEEKS) | (1 << STATE_DAYS) | (1 << STATE_HOURS) | (1 << STATE_MINUTES) | (1 << STATE_SECONDS);
+
+    /**
+     * The character class of each ASCII character.
+     */
+    private final static byte[] CHAR_CLASSES = new byte[128];
+
+    /**
+     * The next state by current state and character class, <code>-1</code> means the character is not allowed in that state.
+     */
+    private final static byte[] TRANSITIONS = new byte[STATE_COUNT * CLASS_COUNT];
+
+    static
+    {
+        Arrays.fill(CHAR_CLASSES, (byte) CLASS_OTHER);
+        for (char c = '0'; c <= '9'; ++c)
+        {
+            CHAR_CLASSES[c] = CLASS_DIGIT;
+        }
+        CHAR_CLASSES['+'] = CLASS_PLUS;
+        CHAR_CLASSES['-'] = CLASS_MINUS;
+        String units = "PTWDHMS";
+        for (int i = 0; i < units.length(); ++i)
+        {
+            CHAR_CLASSES[units.charAt(i)] = (byte) (CLASS_P + i);
+            CHAR_CLASSES[Character.toLowerCase(units.charAt(i))] = (byte) (CLASS_P + i);
+        }
+
+        Arrays.fill(TRANSITIONS, (byte) -1);
+        transition(STATE_START, CLASS_PLUS, STATE_SIGN);
+        transition(STATE_START, CLASS_MINUS, STATE_SIGN);
+        transition(STATE_START, CLASS_P, STATE_P);
+        transition(STATE_SIGN, CLASS_P, STATE_P);
+        transition(STATE_P, CLASS_DIGIT, STATE_DATE_DIGITS);
+        transition(STATE_P, CLASS_T, STATE_T);
+        transition(STATE_DATE_DIGITS, CLASS_DIGIT, STATE_DATE_DIGITS);
+        transition(STATE_DATE_DIGITS, CLASS_W, STATE_WEEKS);
+        transition(STATE_DATE_DIGITS, CLASS_D, STATE_DAYS);
+        transition(STATE_DAYS, CLASS_T, STATE_T);
+        transition(STATE_T, CLASS_DIGIT, STATE_TIME_DIGITS);
+        transition(STATE_TIME_DIGITS, CLASS_DIGIT, STATE_TIME_DIGITS);
+        transition(STATE_TIME_DIGITS, CLASS_H, STATE_HOURS);
+        transition(STATE_TIME_DIGITS, CLASS_M, STATE_MINUTES);
+        transition(STATE_TIME_DIGITS, CLASS_S, STATE_SECONDS);
+        transition(STATE_HOURS, CLASS_DIGIT, STATE_MINUTE_OR_SECOND_DIGITS);
+        transition(STATE_MINUTE_OR_SECOND_DIGITS, CLASS_DIGIT, STATE_MINUTE_OR_SECOND_DIGITS);
+        transition(STATE_MINUTE_OR_SECOND_DIGITS, CLASS_M, STATE_MINUTES);
+        transition(STATE_MINUTE_OR_SECOND_DIGITS, CLASS_S, STATE_SECONDS);
+        transition(STATE_MINUTES, CLASS_DIGIT, STATE_SECOND_DIGITS);
+        transition(STATE_SECOND_DIGITS, CLASS_DIGIT, STATE_SECOND_DIGITS);
+        transition(STATE_SECOND_DIGITS, CLASS_S, STATE_SECONDS);
+    }
+
+    private final static int CACHED_TIMES = 24 * 12 + 1;
+    private final static int CACHED_DAYS = 31;
+    private final static int CACHED_PER_SIGN = CACHED_TIMES + CACHED_DAYS;
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private Durations()
+    {
+    }
+
+
+    /**
+     * Return a packed duration of the given day and time values.
+     *
+     * @param sign
+     *         The factor that determines the sign. Must be either <code>1</code> or <code>-1</code>.
+     * @param days
+     *         The number of days of the duration.
+     * @param secondsOfDay
+     *         The time of the duration in seconds.
+     *
+     * @return The packed duration value.
+     */
+    public static long make(int sign, int days, int secondsOfDay)
+    {
+        if (sign != 1 && sign != -1)
+        {
+            throw new IllegalArgumentException("sign must be 1 or -1");
+        }
+
+        if (days < 0 || secondsOfDay < 0)
+        {
+            throw new IllegalArgumentException("Duration values must be >=0");
+        }
+
+        return (sign < 0 ? SIGN_MASK : 0) | ((long) days << DAYS_POS) | ((long) secondsOfDay << SECONDS_POS);
+    }
+
+
+    /**
+     * Return a packed duration of the given {@link Duration}.
+     *
+     * @param duration
+     *         A {@link Duration}.
+     *
+     * @return The packed duration value.
+     */
+    public static long of(Duration duration)
+    {
+        return make(duration.getSign(), duration.getRawDays(), duration.getSecondsOfDay());
+    }
+
+
+    /**
+     * Return a {@link Duration} of the given packed duration.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return A new {@link Duration}.
+     */
+    public static Duration toDuration(long duration)
+    {
+        return new Duration(sign(duration), days(duration), secondsOfDay(duration));
+    }
+
+
+    /**
+     * Return the sign of the given duration.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return Either <code>1</code> or <code>-1</code>.
+     */
+    public static int sign(long duration)
+    {
+        return duration < 0 ? -1 : 1;
+    }
+
+
+    /**
+     * Return the number of days of the given duration.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The number of days.
+     */
+    public static int days(long duration)
+    {
+        return (int) ((duration & DAYS_MASK) >>> DAYS_POS);
+    }
+
+
+    /**
+     * Return the time part of the given duration in seconds.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The number of seconds.
+     */
+    public static int secondsOfDay(long duration)
+    {
+        return (int) ((duration & SECONDS_MASK) >>> SECONDS_POS);
+    }
+
+
+    /**
+     * Returns whether the given duration represents zero time.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return <code>true</code> if days and time equal <code>0</code>, <code>false</code> otherwise.
+     */
+    public static boolean isZero(long duration)
+    {
+        return (duration & ~SIGN_MASK) == 0;
+    }
+
+
+    /**
+     * Return the given duration with the opposite sign.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The negated packed duration value.
+     */
+    public static long negate(long duration)
+    {
+        return duration ^ SIGN_MASK;
+    }
+
+
+    /**
+     * Returns the value of the given duration in milliseconds, assuming days of 24 hours. This is not always correct. The actual number of milliseconds may be
+     * less if a daylight savings transition occurs in a specific interval.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The duration in milliseconds.
+     */
+    public static long toMillis(long duration)
+    {
+        return sign(duration) * (days(duration) * SECONDS_PER_DAY + secondsOfDay(duration)) * 1000L;
+    }
+
+
+    /**
+     * Compares two durations by their length in milliseconds (see {@link #toMillis(long)}). Durations of the same length are ordered by their number of days,
+     * i.e. <code>PT24H</code> is less than <code>P1D</code> and <code>-P1D</code> is less than <code>-PT24H</code>. Zero durations equal each other
+     * regardless of their sign.
+     *
+     * @param duration
+     *         A packed duration value.
+     * @param other
+     *         Another packed duration value.
+     *
+     * @return A negative value, zero or a positive value if the first duration is less than, equal to or greater than the other one.
+     */
+    public static int compare(long duration, long other)
+    {
+        int result = Long.compare(toMillis(duration), toMillis(other));
+        return result != 0 ? result : Long.compare(sign(duration) * (long) days(duration), sign(other) * (long) days(other));
+    }
+
+
+    /**
+     * Add two durations. This works like {@link Duration#addDuration(Duration)}, if the resulting days and time would have different signs the days are
+     * converted into time assuming days of 24 hours.
+     *
+     * @param duration
+     *         A packed duration value.
+     * @param other
+     *         The packed duration value to add.
+     *
+     * @return The packed sum of both durations.
+     */
+    public static long add(long duration, long other)
+    {
+        if (isZero(other))
+        {
+            return duration;
+        }
+
+        if (isZero(duration))
+        {
+            return other;
+        }
+
+        if ((duration & SIGN_MASK) == (other & SIGN_MASK))
+        {
+            // both durations have the same sign, we can just add the values
+            return pack(duration & SIGN_MASK, (long) days(duration) + days(other), (long) secondsOfDay(duration) + secondsOfDay(other));
+        }
+
+        long newDays = sign(duration) * (long) days(duration) + sign(other) * (long) days(other);
+        long newTime = sign(duration) * (long) secondsOfDay(duration) + sign(other) * (long) secondsOfDay(other);
+
+        if (newDays >= 0 && newTime >= 0)
+        {
+            return pack(0, newDays, newTime);
+        }
+
+        if (newDays < 0 && newTime < 0)
+        {
+            return pack(SIGN_MASK, -newDays, -newTime);
+        }
+
+        // days and time have opposite signs, bring both to the same sign assuming 24 hour days
+        long totalSeconds = newDays * SECONDS_PER_DAY + newTime;
+        if (totalSeconds >= 0)
+        {
+            return pack(0, totalSeconds / SECONDS_PER_DAY, totalSeconds % SECONDS_PER_DAY);
+        }
+        else
+        {
+            return pack(SIGN_MASK, -totalSeconds / SECONDS_PER_DAY, -totalSeconds % SECONDS_PER_DAY);
+        }
+    }
+
+
+    /**
+     * Add the given duration to the given timestamp, taking daylight savings in the given time zone into account. The result equals the result of {@link
+     * Duration#addTo(TimeZone, long)}.
+     *
+     * @param timeZone
+     *         The {@link TimeZone} of the event or <code>null</code> in case of a floating event.
+     * @param timestamp
+     *         The timestamp in milliseconds since the epoch.
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The new timestamp.
+     */
+    public static long addTo(TimeZone timeZone, long timestamp, long duration)
+    {
+        if (isZero(duration))
+        {
+            return timestamp;
+        }
+        if (timeZone == null || !timeZone.useDaylightTime())
+        {
+            // if the time zone doesn't have daylight time we can simply add the duration in milliseconds to the timestamp
+            return timestamp + toMillis(duration);
+        }
+
+        int days = days(duration);
+        int sign = sign(duration);
+        if (days > 0)
+        {
+            // same as DateTime.addDuration, the days are added to the local date
+            CalendarMetrics calendarMetrics = DateTime.GREGORIAN_CALENDAR_SCALE;
+            long instance = calendarMetrics.toInstance(timestamp, timeZone);
+            instance = sign > 0 ? calendarMetrics.nextDay(instance, days) : calendarMetrics.prevDay(instance, days);
+            timestamp = calendarMetrics.toMillis(instance, timeZone);
+        }
+        return timestamp + sign * secondsOfDay(duration) * 1000L;
+    }
+
+
+    /**
+     * Parses a duration string as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.6">RFC 5545, Section 3.3.6</a>.
+     * <p>
+     * The parser follows the grammar of RFC 5545 strictly, with two exceptions: letters may be lower case and hours may be followed by seconds without
+     * minutes (like <code>PT1H1S</code>), which {@link #writeTo(StringBuilder, long)} writes as well. Durations that don't fit into a packed duration are
+     * rejected.
+     *
+     * @param string
+     *         The duration string.
+     *
+     * @return The packed duration value or an error value if {@link #isError(long)} returns <code>true</code>.
+     */
+    public static long parse(CharSequence string)
+    {
+        return parse(string, 0, string.length());
+    }
+
+
+    /**
+     * Parses the duration string in the given range of a {@link CharSequence}. See {@link #parse(CharSequence)} for details.
+     *
+     * @param string
+     *         A {@link CharSequence} that contains a duration string.
+     * @param start
+     *         The index of the first character of the duration string.
+     * @param end
+     *         The index after the last character of the duration string.
+     *
+     * @return The packed duration value or an error value if {@link #isError(long)} returns <code>true</code>.
+     */
+    public static long parse(CharSequence string, int start, int end)
+    {
+        return scan(string, start, end);
+    }
+
+
+    /**
+     * Parses the ASCII duration string in the given range of a byte array. See {@link #parse(CharSequence)} for details.
+     *
+     * @param buffer
+     *         A byte array that contains a duration string.
+     * @param start
+     *         The index of the first byte of the duration string.
+     * @param end
+     *         The index after the last byte of the duration string.
+     *
+     * @return The packed duration value or an error value if {@link #isError(long)} returns <code>true</code>.
+     */
+    public static long parse(byte[] buffer, int start, int end)
+    {
+        return scan(buffer, start, end);
+    }
+
+
+    /**
+     * Scans the duration string in the given range of a {@link CharSequence}.
+     */
+    private static long scan(CharSequence string, int start, int end)
+    {
+        int state = STATE_START;
+        long value = 0;
+        long duration = ZERO;
+        for (int i = start; i < end; ++i)
+        {
+            char c = string.charAt(i);
+            int charClass = c < 128 ? CHAR_CLASSES[c] : CLASS_OTHER;
+            state = TRANSITIONS[state * CLASS_COUNT + charClass];
+            if (state < 0)
+            {
+                return ERROR_FLAG | i;
+            }
+            if (charClass == CLASS_DIGIT)
+            {
+                value = value * 10 + c - '0';
+                if (value > Integer.MAX_VALUE)
+                {
+                    return ERROR_FLAG | i;
+                }
+                continue;
+            }
+            duration = accumulate(duration, charClass, value);
+            if (isError(duration))
+            {
+                return ERROR_FLAG | i;
+            }
+            value = 0;
+        }
+        return result(state, duration, end);
+    }
+
+
+    /**
+     * Scans the ASCII duration string in the given range of a byte array.
+     */
+    private static long scan(byte[] buffer, int start, int end)
+    {
+        int state = STATE_START;
+        long value = 0;
+        long duration = ZERO;
+        for (int i = start; i < end; ++i)
+        {
+            int c = buffer[i];
+            int charClass = c >= 0 ? CHAR_CLASSES[c] : CLASS_OTHER;
+            state = TRANSITIONS[state * CLASS_COUNT + charClass];
+            if (state < 0)
+            {
+                return ERROR_FLAG | i;
+            }
+            if (charClass == CLASS_DIGIT)
+            {
+                value = value * 10 + c - '0';
+                if (value > Integer.MAX_VALUE)
+                {
+                    return ERROR_FLAG | i;
+                }
+                continue;
+            }
+            duration = accumulate(duration, charClass, value);
+            if (isError(duration))
+            {
+                return ERROR_FLAG | i;
+            }
+            value = 0;
+        }
+        return result(state, duration, end);
+    }
+
+
+    /**
+     * Applies a non-digit character to the duration that has been parsed so far. The transition tables make sure that a value is always followed by its
+     * designator, so the given value belongs to the given designator or it's <code>0</code>.
+     *
+     * @param duration
+     *         The packed duration parsed so far.
+     * @param charClass
+     *         The class of the character.
+     * @param value
+     *         The value in front of the character.
+     *
+     * @return The new packed duration or {@link #ERROR_FLAG} if the duration doesn't fit anymore.
+     */
+    private static long accumulate(long duration, int charClass, long value)
+    {
+        long days = (duration & DAYS_MASK) >>> DAYS_POS;
+        long time = (duration & SECONDS_MASK) >>> SECONDS_POS;
+        switch (charClass)
+        {
+            case CLASS_MINUS:
+                return duration | SIGN_MASK;
+            case CLASS_W:
+                days = value * 7;
+                break;
+            case CLASS_D:
+                days = value;
+                break;
+            case CLASS_H:
+                time = value * 3600;
+                break;
+            case CLASS_M:
+                time += value * 60;
+                break;
+            case CLASS_S:
+                time += value;
+                break;
+            default:
+                return duration;
+        }
+        if (days > Integer.MAX_VALUE || time > Integer.MAX_VALUE)
+        {
+            return ERROR_FLAG;
+        }
+        return (duration & SIGN_MASK) | (days << DAYS_POS) | (time << SECONDS_POS);
+    }
+
+
+    /**
+     * Returns whether the given result of a parser is an error.
+     *
+     * @param result
+     *         The result of one of the <code>parse</code> methods.
+     *
+     * @return <code>true</code> if the input was not a valid duration.
+     */
+    public static boolean isError(long result)
+    {
+        return (result & ERROR_FLAG) != 0;
+    }
+
+
+    /**
+     * Returns the position of the error in the input of a parser. That's the index of the first character that's not valid at its position or the end of the
+     * input if it ended prematurely.
+     *
+     * @param result
+     *         An error result of one of the <code>parse</code> methods.
+     *
+     * @return The index of the error in the input.
+     */
+    public static int errorPosition(long result)
+    {
+        return (int) (result & ~ERROR_FLAG);
+    }
+
+
+    /**
+     * Convert the given duration to a String that conforms to <a href="https://tools.ietf.org/html/rfc5545#section-3.3.6">RFC 5545, Section 3.3.6</a>.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The formatted duration value.
+     */
+    public static String toString(long duration)
+    {
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            return Rendered.STRINGS[index];
+        }
+        byte[] buffer = new byte[MAX_LENGTH];
+        return new String(buffer, 0, render(buffer, 0, duration), StandardCharsets.US_ASCII);
+    }
+
+
+    /**
+     * Returns the length of the string representation of the given duration.
+     *
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The number of characters {@link #toString(long)} would return.
+     */
+    public static int length(long duration)
+    {
+        long fields = fields(duration);
+        if (fields == 0)
+        {
+            // P0D
+            return 3;
+        }
+
+        int length = duration < 0 ? 2 : 1;
+        int date = dateField(fields);
+        if (date > 0)
+        {
+            length += digits(date) + 1;
+        }
+        if ((int) fields != 0)
+        {
+            int hours = hoursField(fields);
+            int minutes = minutesField(fields);
+            int seconds = secondsField(fields);
+            length += 1 + (hours > 0 ? digits(hours) + 1 : 0) + (minutes > 0 ? digits(minutes) + 1 : 0) + (seconds > 0 ? digits(seconds) + 1 : 0);
+        }
+        return length;
+    }
+
+
+    /**
+     * Write the given duration to a {@link StringBuilder}.
+     *
+     * @param out
+     *         The {@link StringBuilder} to write to.
+     * @param duration
+     *         A packed duration value.
+     */
+    public static void writeTo(StringBuilder out, long duration)
+    {
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            out.append(Rendered.STRINGS[index]);
+            return;
+        }
+        renderUnchecked(out, duration);
+    }
+
+
+    /**
+     * Write the given duration to a {@link Writer}.
+     *
+     * @param out
+     *         The {@link Writer} to write to.
+     * @param duration
+     *         A packed duration value.
+     *
+     * @throws IOException
+     */
+    public static void writeTo(Writer out, long duration) throws IOException
+    {
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            out.write(Rendered.STRINGS[index]);
+            return;
+        }
+        render(out, duration);
+    }
+
+
+    /**
+     * Write the ASCII representation of the given duration to a byte array.
+     *
+     * @param buffer
+     *         The array to write to.
+     * @param offset
+     *         The position of the first byte to write.
+     * @param duration
+     *         A packed duration value.
+     *
+     * @return The position after the last byte written.
+     *
+     * @throws ArrayIndexOutOfBoundsException
+     *         if the array is too short, in which case the contents of the array are undefined.
+     */
+    public static int writeTo(byte[] buffer, int offset, long duration)
+    {
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            byte[] rendered = Rendered.BYTES[index];
+            System.arraycopy(rendered, 0, buffer, offset, rendered.length);
+            return offset + rendered.length;
+        }
+        return render(buffer, offset, duration);
+    }
+
+
+    /**
+     * Write the ASCII representation of the given duration to a {@link ByteBuffer}, starting at its current position.
+     *
+     * @param buffer
+     *         The {@link ByteBuffer} to write to.
+     * @param duration
+     *         A packed duration value.
+     *
+     * @throws BufferOverflowException
+     *         if there is not enough space left in the buffer, in which case the buffer is not modified.
+     */
+    public static void writeTo(ByteBuffer buffer, long duration)
+    {
+        int length = length(duration);
+        if (buffer.remaining() < length)
+        {
+            throw new BufferOverflowException();
+        }
+
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            buffer.put(Rendered.BYTES[index]);
+            return;
+        }
+
+        buffer.position(render(buffer, buffer.position(), duration));
+    }
+
+
+    /**
+     * Write the given duration to a {@link CharBuffer}, starting at its current position.
+     *
+     * @param buffer
+     *         The {@link CharBuffer} to write to.
+     * @param duration
+     *         A packed duration value.
+     *
+     * @throws BufferOverflowException
+     *         if there is not enough space left in the buffer, in which case the buffer is not modified.
+     */
+    public static void writeTo(CharBuffer buffer, long duration)
+    {
+        if (buffer.remaining() < length(duration))
+        {
+            throw new BufferOverflowException();
+        }
+
+        int index = cacheIndex(duration);
+        if (index >= 0)
+        {
+            buffer.put(Rendered.STRINGS[index]);
+            return;
+        }
+        renderUnchecked(buffer, duration);
+    }
+
+
+    /**
+     * Renders the given duration into a byte array.
+     *
+     * @return The position after the last byte written.
+     */
+    private static int render(byte[] buffer, int offset, long duration)
+    {
+        long fields = fields(duration);
+        if (duration < 0 && fields != 0)
+        {
+            buffer[offset++] = '-';
+        }
+        buffer[offset++] = 'P';
+
+        if (fields == 0)
+        {
+            buffer[offset++] = '0';
+            buffer[offset++] = 'D';
+            return offset;
+        }
+
+        int date = dateField(fields);
+        if (date > 0)
+        {
+            offset = renderNumber(buffer, offset, date);
+            buffer[offset++] = fields < 0 ? (byte) 'W' : (byte) 'D';
+        }
+
+        if ((int) fields != 0)
+        {
+            buffer[offset++] = 'T';
+            int hours = hoursField(fields);
+            int minutes = minutesField(fields);
+            int seconds = secondsField(fields);
+            if (hours > 0)
+            {
+                offset = renderNumber(buffer, offset, hours);
+                buffer[offset++] = 'H';
+            }
+            if (minutes > 0)
+            {
+                offset = renderTwoDigits(buffer, offset, minutes);
+                buffer[offset++] = 'M';
+            }
+            if (seconds > 0)
+            {
+                offset = renderTwoDigits(buffer, offset, seconds);
+                buffer[offset++] = 'S';
+            }
+        }
+        return offset;
+    }
+
+
+    /**
+     * Renders the given duration into a {@link ByteBuffer}, using absolute puts, which work for heap and direct buffers alike. The position of the buffer is
+     * not changed.
+     *
+     * @return The index after the last byte written.
+     */
+    private static int render(ByteBuffer buffer, int index, long duration)
+    {
+        long fields = fields(duration);
+        if (duration < 0 && fields != 0)
+        {
+            buffer.put(index++, (byte) '-');
+        }
+        buffer.put(index++, (byte) 'P');
+
+        if (fields == 0)
+        {
+            buffer.put(index++, (byte) '0');
+            buffer.put(index++, (byte) 'D');
+            return index;
+        }
+
+        int date = dateField(fields);
+        if (date > 0)
+        {
+            index = renderNumber(buffer, index, date);
+            buffer.put(index++, fields < 0 ? (byte) 'W' : (byte) 'D');
+        }
+
+        if ((int) fields != 0)
+        {
+            buffer.put(index++, (byte) 'T');
+            int hours = hoursField(fields);
+            int minutes = minutesField(fields);
+            int seconds = secondsField(fields);
+            if (hours > 0)
+            {
+                index = renderNumber(buffer, index, hours);
+                buffer.put(index++, (byte) 'H');
+            }
+            if (minutes > 0)
+            {
+                index = renderTwoDigits(buffer, index, minutes);
+                buffer.put(index++, (byte) 'M');
+            }
+            if (seconds > 0)
+            {
+                index = renderTwoDigits(buffer, index, seconds);
+                buffer.put(index++, (byte) 'S');
+            }
+        }
+        return index;
+    }
+
+
+    /**
+     * Appends the given duration to an {@link Appendable}.
+     *
+     * @throws IOException
+     *         if the {@link Appendable} is a {@link Writer} that failed.
+     */
+    private static void render(Appendable out, long duration) throws IOException
+    {
+        long fields = fields(duration);
+        if (duration < 0 && fields != 0)
+        {
+            out.append('-');
+        }
+        out.append('P');
+
+        if (fields == 0)
+        {
+            out.append('0');
+            out.append('D');
+            return;
+        }
+
+        int date = dateField(fields);
+        if (date > 0)
+        {
+            renderNumber(out, date);
+            out.append(fields < 0 ? 'W' : 'D');
+        }
+
+        if ((int) fields != 0)
+        {
+            out.append('T');
+            int hours = hoursField(fields);
+            int minutes = minutesField(fields);
+            int seconds = secondsField(fields);
+            if (hours > 0)
+            {
+                renderNumber(out, hours);
+                out.append('H');
+            }
+            if (minutes > 0)
+            {
+                renderTwoDigits(out, minutes);
+                out.append('M');
+            }
+            if (seconds > 0)
+            {
+                renderTwoDigits(out, seconds);
+                out.append('S');
+            }
+        }
+    }
+
+
+    /**
+     * Appends the given duration to an {@link Appendable} that never throws an {@link IOException}, i.e. anything but a {@link Writer}.
+     */
+    private static void renderUnchecked(Appendable out, long duration)
+    {
+        try
+        {
+            render(out, duration);
+        }
+        catch (IOException e)
+        {
+            // can't happen, only Writers throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Splits the given duration into the fields of its string representation. The upper 32 bits contain the number of weeks or days, with the sign bit set
+     * for weeks. The lower 32 bits contain the hours (bits 12-31), the minutes (bits 6-11) and the seconds (bits 0-5). Fields that are <code>0</code> are
+     * not written, so the result is <code>0</code> only for a zero duration.
+     */
+    private static long fields(long duration)
+    {
+        int days = days(duration);
+        int time = secondsOfDay(duration);
+        if (time == 0 && days % 7 == 0 && days > 0)
+        {
+            return Long.MIN_VALUE | ((long) (days / 7) << 32);
+        }
+        return ((long) days << 32) | ((long) (time / 3600) << 12) | ((time / 60 % 60) << 6) | (time % 60);
+    }
+
+
+    private static int dateField(long fields)
+    {
+        return (int) (fields >>> 32) & 0x7fffffff;
+    }
+
+
+    private static int hoursField(long fields)
+    {
+        return (int) (fields >>> 12) & 0xfffff;
+    }
+
+
+    private static int minutesField(long fields)
+    {
+        return (int) (fields >>> 6) & 0x3f;
+    }
+
+
+    private static int secondsField(long fields)
+    {
+        return (int) fields & 0x3f;
+    }
+
+
+    /**
+     * Renders a non-negative number into a byte array, two digits at a time.
+     *
+     * @return The position after the last byte written.
+     */
+    private static int renderNumber(byte[] buffer, int offset, int num)
+    {
+        int end = offset + digits(num);
+        int position = end;
+        while (num >= 100)
+        {
+            int pair = num % 100 * 2;
+            num /= 100;
+            buffer[--position] = DIGITS[pair + 1];
+            buffer[--position] = DIGITS[pair];
+        }
+        renderTwoDigits(buffer, offset, num);
+        return end;
+    }
+
+
+    /**
+     * Renders a non-negative number into a {@link ByteBuffer}, two digits at a time.
+     *
+     * @return The index after the last byte written.
+     */
+    private static int renderNumber(ByteBuffer buffer, int index, int num)
+    {
+        int end = index + digits(num);
+        int position = end;
+        while (num >= 100)
+        {
+            int pair = num % 100 * 2;
+            num /= 100;
+            buffer.put(--position, DIGITS[pair + 1]);
+            buffer.put(--position, DIGITS[pair]);
+        }
+        renderTwoDigits(buffer, index, num);
+        return end;
+    }
+
+
+    /**
+     * Appends a non-negative number to an {@link Appendable}, two digits at a time.
+     */
+    private static void renderNumber(Appendable out, int num) throws IOException
+    {
+        // collect the trailing digit pairs, 7 bits each, the most significant of them ends up in the lowest bits
+        int pairs = 0;
+        int pairCount = 0;
+        while (num >= 100)
+        {
+            pairs = (pairs << 7) | (num % 100);
+            num /= 100;
+            ++pairCount;
+        }
+        renderTwoDigits(out, num);
+        while (pairCount-- > 0)
+        {
+            int pair = (pairs & 0x7f) * 2;
+            pairs >>>= 7;
+            out.append((char) DIGITS[pair]);
+            out.append((char) DIGITS[pair + 1]);
+        }
+    }
+
+
+    /**
+     * Renders a number in the range [0, 99] into a byte array, without a leading zero.
+     *
+     * @return The position after the last byte written.
+     */
+    private static int renderTwoDigits(byte[] buffer, int offset, int num)
+    {
+        if (num >= 10)
+        {
+            buffer[offset++] = DIGITS[num * 2];
+        }
+        buffer[offset++] = DIGITS[num * 2 + 1];
+        return offset;
+    }
+
+
+    /**
+     * Renders a number in the range [0, 99] into a {@link ByteBuffer}, without a leading zero.
+     *
+     * @return The index after the last byte written.
+     */
+    private static int renderTwoDigits(ByteBuffer buffer, int index, int num)
+    {
+        if (num >= 10)
+        {
+            buffer.put(index++, DIGITS[num * 2]);
+        }
+        buffer.put(index++, DIGITS[num * 2 + 1]);
+        return index;
+    }
+
+
+    /**
+     * Appends a number in the range [0, 99] to an {@link Appendable}, without a leading zero.
+     */
+    private static void renderTwoDigits(Appendable out, int num) throws IOException
+    {
+        if (num >= 10)
+        {
+            out.append((char) DIGITS[num * 2]);
+        }
+        out.append((char) DIGITS[num * 2 + 1]);
+    }
+
+
+    /**
+     * Returns the number of decimal digits of the given non-negative number.
+     */
+    private static int digits(int num)
+    {
+        int digits = 1;
+        while (num >= 10)
+        {
+            num /= 10;
+            ++digits;
+        }
+        return digits;
+    }
+
+
+    private static void transition(int state, int charClass, int nextState)
+    {
+        TRANSITIONS[state * CLASS_COUNT + charClass] = (byte) nextState;
+    }
+
+
+    /**
+     * Returns the result of a parser that ended in the given state.
+     */
+    private static long result(int state, long duration, int end)
+    {
+        if ((FINAL_STATES & (1 << state)) == 0)
+        {
+            return ERROR_FLAG | end;
+        }
+        return duration;
+    }
+
+
+    /**
+     * Returns the index of the given duration in the cache of pre-rendered durations or <code>-1</code> if it's not cached.
+     */
+    private static int cacheIndex(long duration)
+    {
+        int days = days(duration);
+        int time = secondsOfDay(duration);
+        int index;
+        if (days == 0 && time % 300 == 0 && time <= 24 * 3600)
+        {
+            index = time / 300;
+        }
+        else if (time == 0 && days <= CACHED_DAYS)
+        {
+            index = CACHED_TIMES + days - 1;
+        }
+        else
+        {
+            return -1;
+        }
+        return duration < 0 ? index + CACHED_PER_SIGN : index;
+    }
+
+
+    /**
+     * Packs the given values, checking that the days still fit.
+     */
+    private static long pack(long sign, long days, long secondsOfDay)
+    {
+        if (days > Integer.MAX_VALUE || secondsOfDay > Integer.MAX_VALUE)
+        {
+            throw new ArithmeticException("duration overflow");
+        }
+        return sign | (days << DAYS_POS) | (secondsOfDay << SECONDS_POS);
+    }
+
+
+    /**
+     * The cache of pre-rendered durations. It's initialized when it's used for the first time.
+     */
+    private final static class Rendered
+    {
+        private final static String[] STRINGS = new String[CACHED_PER_SIGN * 2];
+        private final static byte[][] BYTES = new byte[CACHED_PER_SIGN * 2][];
+
+        static
+        {
+            for (int sign = 1; sign >= -1; sign -= 2)
+            {
+                for (int i = 0; i < CACHED_TIMES; ++i)
+                {
+                    cache(make(sign, 0, i * 300));
+                }
+                for (int i = 1; i <= CACHED_DAYS; ++i)
+                {
+                    cache(make(sign, i, 0));
+                }
+            }
+        }
+
+
+        private static void cache(long duration)
+        {
+            byte[] buffer = new byte[MAX_LENGTH];
+            int length = render(buffer, 0, duration);
+            int index = cacheIndex(duration);
+            BYTES[index] = Arrays.copyOf(buffer, length);
+            STRINGS[index] = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+        }
+    }
+}
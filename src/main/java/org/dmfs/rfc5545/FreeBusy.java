@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * Busy period calculations as needed for free/busy information (see <a href="https://tools.ietf.org/html/rfc5545#section-3.8.2.6">RFC 5545 section
+ * 3.8.2.6</a>).
+ * <p>
+ * Busy periods are returned as <code>long[]</code> arrays of pairs, i.e. <code>[start0, end0, start1, end1, ...]</code>. Each period includes its start and
+ * excludes its end. The periods are sorted and neither overlap nor touch each other, adjacent periods are joined. Periods of zero length are dropped.
+ * <p>
+ * None of the methods modifies its input arrays.
+ *
+ * @author Marten Gajda
+ */
+public final class FreeBusy
+{
+    /**
+     * The minimum number of periods to sort in parallel.
+     */
+    private final static int PARALLEL_THRESHOLD = 1 << 13;
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private FreeBusy()
+    {
+    }
+
+
+    /**
+     * Returns the busy periods of the given occurrences.
+     *
+     * @param starts
+     *         The start timestamps of the occurrences, in any order.
+     * @param ends
+     *         The end timestamps of the occurrences.
+     *
+     * @return The busy periods as an array of pairs.
+     */
+    public static long[] coalesce(long[] starts, long[] ends)
+    {
+        return coalesce(starts, ends, false);
+    }
+
+
+    /**
+     * Same as {@link #coalesce(long[], long[])}, but sorts large inputs in parallel.
+     */
+    public static long[] parallelCoalesce(long[] starts, long[] ends)
+    {
+        return coalesce(starts, ends, true);
+    }
+
+
+    /**
+     * Returns the busy periods of the given occurrences. The end of each occurrence is calculated using {@link Duration#addTo(TimeZone, long)}.
+     *
+     * @param timeZone
+     *         The {@link TimeZone} of the occurrences or <code>null</code> for floating occurrences.
+     * @param starts
+     *         The start timestamps of the occurrences, in any order.
+     * @param durations
+     *         The {@link Duration}s of the occurrences.
+     *
+     * @return The busy periods as an array of pairs.
+     */
+    public static long[] coalesce(TimeZone timeZone, long[] starts, Duration[] durations)
+    {
+        if (starts.length != durations.length)
+        {
+            throw new IllegalArgumentException("starts and durations must have the same length");
+        }
+        long[] ends = new long[starts.length];
+        for (int i = 0; i < ends.length; ++i)
+        {
+            ends[i] = durations[i].addTo(timeZone, starts[i]);
+        }
+        return coalesce(starts, ends, false);
+    }
+
+
+    /**
+     * Returns the busy periods of the given occurrences, which all have the same {@link Duration}. The end of each occurrence is calculated using {@link
+     * Duration#addTo(TimeZone, long)}.
+     *
+     * @param timeZone
+     *         The {@link TimeZone} of the occurrences or <code>null</code> for floating occurrences.
+     * @param starts
+     *         The start timestamps of the occurrences, in any order.
+     * @param duration
+     *         The {@link Duration} of the occurrences.
+     *
+     * @return The busy periods as an array of pairs.
+     */
+    public static long[] coalesce(TimeZone timeZone, long[] starts, Duration duration)
+    {
+        long[] ends = new long[starts.length];
+        for (int i = 0; i < ends.length; ++i)
+        {
+            ends[i] = duration.addTo(timeZone, starts[i]);
+        }
+        return coalesce(starts, ends, false);
+    }
+
+
+    /**
+     * Merges the given busy periods into one set of busy periods. This is a streaming k-way merge, so it's efficient for a large number of inputs, e.g. the
+     * busy periods of many calendars.
+     *
+     * @param periods
+     *         Arrays of busy periods. Each array must be sorted by start, but periods of the same array may overlap.
+     *
+     * @return The busy periods as an array of pairs.
+     */
+    public static long[] merge(long[]... periods)
+    {
+        int total = 0;
+        // a binary min-heap of the indices of the inputs that have periods left, ordered by the start of their next period
+        int[] heap = new int[periods.length];
+        int[] positions = new int[periods.length];
+        int size = 0;
+        for (int i = 0; i < periods.length; ++i)
+        {
+            if ((periods[i].length & 1) != 0)
+            {
+                throw new IllegalArgumentException("periods must contain pairs of timestamps");
+            }
+            total += periods[i].length;
+            if (periods[i].length > 0)
+            {
+                heap[size] = i;
+                siftUp(heap, size++, periods, positions);
+            }
+        }
+
+        long[] result = new long[total];
+        int count = 0;
+        long currentStart = 0;
+        long currentEnd = 0;
+        boolean inPeriod = false;
+        while (size > 0)
+        {
+            int input = heap[0];
+            long[] inputPeriods = periods[input];
+            int position = positions[input];
+            long start = inputPeriods[position];
+            long end = inputPeriods[position + 1];
+
+            position += 2;
+            positions[input] = position;
+            if (position == inputPeriods.length)
+            {
+                // this input is exhausted, move the last element to the top
+                heap[0] = heap[--size];
+            }
+            siftDown(heap, size, periods, positions);
+
+            if (end <= start)
+            {
+                // skip empty periods
+                continue;
+            }
+
+            if (inPeriod && start <= currentEnd)
+            {
+                // overlaps or touches the current period
+                currentEnd = Math.max(currentEnd, end);
+            }
+            else
+            {
+                if (inPeriod)
+                {
+                    result[count++] = currentStart;
+                    result[count++] = currentEnd;
+                }
+                currentStart = start;
+                currentEnd = end;
+                inPeriod = true;
+            }
+        }
+        if (inPeriod)
+        {
+            result[count++] = currentStart;
+            result[count++] = currentEnd;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+
+    private static long[] coalesce(long[] starts, long[] ends, boolean parallel)
+    {
+        if (starts.length != ends.length)
+        {
+            throw new IllegalArgumentException("starts and ends must have the same length");
+        }
+
+        // copy all non-empty periods
+        long[] sortedStarts = new long[starts.length];
+        long[] sortedEnds = new long[starts.length];
+        int count = 0;
+        for (int i = 0; i < starts.length; ++i)
+        {
+            if (ends[i] > starts[i])
+            {
+                sortedStarts[count] = starts[i];
+                sortedEnds[count] = ends[i];
+                ++count;
+            }
+        }
+
+        /*
+         * The union of the periods doesn't depend on which start belongs to which end, so we can sort starts and ends independently. Then we walk through
+         * both arrays, counting the number of periods we're in. Starts are processed before ends at the same time, so touching periods are joined.
+         */
+        if (parallel && count > PARALLEL_THRESHOLD)
+        {
+            Arrays.parallelSort(sortedStarts, 0, count);
+            Arrays.parallelSort(sortedEnds, 0, count);
+        }
+        else
+        {
+            Arrays.sort(sortedStarts, 0, count);
+            Arrays.sort(sortedEnds, 0, count);
+        }
+
+        long[] result = new long[count * 2];
+        int resultCount = 0;
+        int depth = 0;
+        int s = 0;
+        int e = 0;
+        while (e < count)
+        {
+            if (s < count && sortedStarts[s] <= sortedEnds[e])
+            {
+                if (depth++ == 0)
+                {
+                    result[resultCount++] = sortedStarts[s];
+                }
+                ++s;
+            }
+            else
+            {
+                if (--depth == 0)
+                {
+                    result[resultCount++] = sortedEnds[e];
+                }
+                ++e;
+            }
+        }
+        return resultCount == result.length ? result : Arrays.copyOf(result, resultCount);
+    }
+
+
+    private static long nextStart(int input, long[][] periods, int[] positions)
+    {
+        return periods[input][positions[input]];
+    }
+
+
+    private static void siftUp(int[] heap, int index, long[][] periods, int[] positions)
+    {
+        int input = heap[index];
+        long start = nextStart(input, periods, positions);
+        while (index > 0)
+        {
+            int parent = (index - 1) >>> 1;
+            if (nextStart(heap[parent], periods, positions) <= start)
+            {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = input;
+    }
+
+
+    private static void siftDown(int[] heap, int size, long[][] periods, int[] positions)
+    {
+        if (size == 0)
+        {
+            return;
+        }
+        int index = 0;
+        int input = heap[0];
+        long start = nextStart(input, periods, positions);
+        int child;
+        while ((child = 2 * index + 1) < size)
+        {
+            long childStart = nextStart(heap[child], periods, positions);
+            if (child + 1 < size)
+            {
+                long rightStart = nextStart(heap[child + 1], periods, positions);
+                if (rightStart < childStart)
+                {
+                    ++child;
+                    childStart = rightStart;
+                }
+            }
+            if (start <= childStart)
+            {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = input;
+    }
+}
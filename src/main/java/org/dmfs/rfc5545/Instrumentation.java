@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Optional instrumentation of the hot paths of this library. It counts invocations and records latency histograms per operation, calendar scale and time
+ * zone.
+ * <p>
+ * Instrumentation is disabled by default. It's enabled by setting the system property <code>org.dmfs.rfc5545.instrumentation</code> to <code>true</code>
+ * when the JVM is started. Since {@link #ENABLED} is a constant, the JIT removes all probes when instrumentation is disabled, so there is no overhead in that
+ * case.
+ * <p>
+ * The results can be exported via JMX, see {@link #registerMXBean()}.
+ * <p>
+ * Note that operations may be nested. For instance the time spent in {@link Operation#TIMESTAMP} includes the time spent in {@link Operation#TO_MILLIS}.
+ * Conversions that are delegated to another {@link CalendarMetrics} are only recorded once, for the calendar scale they were called on.
+ *
+ * @author Marten Gajda
+ */
+public final class Instrumentation
+{
+    /**
+     * Whether instrumentation is enabled.
+     */
+    public final static boolean ENABLED = Boolean.getBoolean("org.dmfs.rfc5545.instrumentation");
+
+    /**
+     * The name of the MXBean.
+     */
+    public final static String MXBEAN_NAME = "org.dmfs.rfc5545:type=Instrumentation";
+
+    /**
+     * The key used instead of a time zone ID for floating values.
+     */
+    private final static String FLOATING = "floating";
+
+    /**
+     * The key used for operations without calendar scale or time zone.
+     */
+    private final static String NONE = "-";
+
+    /**
+     * The number of histogram buckets.
+     */
+    private final static int BUCKETS = 40;
+
+
+    /**
+     * The instrumented operations.
+     */
+    public enum Operation
+    {
+        /**
+         * {@link DateTime#parse(CalendarMetrics, TimeZone, String)}.
+         */
+        PARSE_DATE_TIME,
+
+        /**
+         * {@link Duration#parse(String)}.
+         */
+        PARSE_DURATION,
+
+        /**
+         * The calculation of the timestamp in {@link DateTime#getTimestamp()}.
+         */
+        TIMESTAMP,
+
+        /**
+         * The calculation of the instance in {@link DateTime#getInstance()}.
+         */
+        INSTANCE,
+
+        /**
+         * {@link CalendarMetrics#toMillis(TimeZone, int, int, int, int, int, int, int)}.
+         */
+        TO_MILLIS,
+
+        /**
+         * {@link CalendarMetrics#toInstance(long, TimeZone)}.
+         */
+        TO_INSTANCE
+    }
+
+
+    /**
+     * The statistics by operation, calendar scale and time zone ID.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private final static ConcurrentMap<String, ConcurrentMap<String, Statistics>>[] STATISTICS = new ConcurrentMap[Operation.values().length];
+
+    static
+    {
+        for (int i = 0; i < STATISTICS.length; ++i)
+        {
+            STATISTICS[i] = new ConcurrentHashMap<String, ConcurrentMap<String, Statistics>>();
+        }
+    }
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private Instrumentation()
+    {
+    }
+
+
+    /**
+     * Records an invocation of the given operation. Callers should check {@link #ENABLED} before taking the start time and calling this.
+     *
+     * @param operation
+     *         The {@link Operation}.
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the operation, may be <code>null</code>.
+     * @param timeZone
+     *         The {@link TimeZone} of the operation, may be <code>null</code> for floating values.
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} at the start of the operation.
+     */
+    public static void record(Operation operation, CalendarMetrics calendarMetrics, TimeZone timeZone, long startNanos)
+    {
+        long nanos = System.nanoTime() - startNanos;
+        statistics(operation, calendarMetrics == null ? NONE : calendarMetrics.toString(), timeZone == null ? FLOATING : timeZone.getID()).record(nanos);
+    }
+
+
+    /**
+     * Records an invocation of an operation that doesn't depend on a calendar scale or time zone.
+     *
+     * @param operation
+     *         The {@link Operation}.
+     * @param startNanos
+     *         The value of {@link System#nanoTime()} at the start of the operation.
+     */
+    public static void record(Operation operation, long startNanos)
+    {
+        long nanos = System.nanoTime() - startNanos;
+        statistics(operation, NONE, NONE).record(nanos);
+    }
+
+
+    /**
+     * Registers an {@link InstrumentationMXBean} with the platform MBean server under the name {@link #MXBEAN_NAME}. Does nothing if it has been registered
+     * already.
+     */
+    public static void registerMXBean()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(MXBEAN_NAME));
+        }
+        catch (InstanceAlreadyExistsException e)
+        {
+            // already registered
+        }
+        catch (JMException e)
+        {
+            throw new IllegalStateException("can't register MXBean", e);
+        }
+    }
+
+
+    private static Statistics statistics(Operation operation, String scale, String timeZoneId)
+    {
+        ConcurrentMap<String, ConcurrentMap<String, Statistics>> byScale = STATISTICS[operation.ordinal()];
+        ConcurrentMap<String, Statistics> byZone = byScale.get(scale);
+        if (byZone == null)
+        {
+            ConcurrentMap<String, Statistics> newByZone = new ConcurrentHashMap<String, Statistics>();
+            byZone = byScale.putIfAbsent(scale, newByZone);
+            if (byZone == null)
+            {
+                byZone = newByZone;
+            }
+        }
+
+        Statistics statistics = byZone.get(timeZoneId);
+        if (statistics == null)
+        {
+            Statistics newStatistics = new Statistics();
+            statistics = byZone.putIfAbsent(timeZoneId, newStatistics);
+            if (statistics == null)
+            {
+                statistics = newStatistics;
+            }
+        }
+        return statistics;
+    }
+
+
+    /**
+     * The counters of a specific operation, calendar scale and time zone.
+     */
+    private final static class Statistics
+    {
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mNanos = new LongAdder();
+        private final LongAdder[] mHistogram = new LongAdder[BUCKETS];
+
+
+        Statistics()
+        {
+            for (int i = 0; i < BUCKETS; ++i)
+            {
+                mHistogram[i] = new LongAdder();
+            }
+        }
+
+
+        void record(long nanos)
+        {
+            mCount.increment();
+            mNanos.add(nanos);
+            // the bucket is the binary logarithm of the latency
+            mHistogram[Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(Math.max(1, nanos)))].increment();
+        }
+
+
+        long[] histogram()
+        {
+            long[] result = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; ++i)
+            {
+                result[i] = mHistogram[i].sum();
+            }
+            return result;
+        }
+
+
+        void reset()
+        {
+            mCount.reset();
+            mNanos.reset();
+            for (LongAdder bucket : mHistogram)
+            {
+                bucket.reset();
+            }
+        }
+    }
+
+
+    /**
+     * The {@link InstrumentationMXBean} implementation.
+     */
+    final static class MXBean implements InstrumentationMXBean
+    {
+        private final static int COUNT = 0;
+        private final static int NANOS = 1;
+
+
+        @Override
+        public boolean isEnabled()
+        {
+            return ENABLED;
+        }
+
+
+        @Override
+        public Map<String, Long> getCounts()
+        {
+            return sums(COUNT);
+        }
+
+
+        @Override
+        public Map<String, Long> getTotalNanos()
+        {
+            return sums(NANOS);
+        }
+
+
+        @Override
+        public Map<String, long[]> getHistograms()
+        {
+            Map<String, long[]> result = new TreeMap<String, long[]>();
+            for (Operation operation : Operation.values())
+            {
+                for (Map.Entry<String, ConcurrentMap<String, Statistics>> byScale : STATISTICS[operation.ordinal()].entrySet())
+                {
+                    for (Map.Entry<String, Statistics> byZone : byScale.getValue().entrySet())
+                    {
+                        result.put(operation + "/" + byScale.getKey() + "/" + byZone.getKey(), byZone.getValue().histogram());
+                    }
+                }
+            }
+            return result;
+        }
+
+
+        @Override
+        public void reset()
+        {
+            for (ConcurrentMap<String, ConcurrentMap<String, Statistics>> byScale : STATISTICS)
+            {
+                for (ConcurrentMap<String, Statistics> byZone : byScale.values())
+                {
+                    for (Statistics statistics : byZone.values())
+                    {
+                        statistics.reset();
+                    }
+                }
+            }
+        }
+
+
+        private Map<String, Long> sums(int counter)
+        {
+            Map<String, Long> result = new TreeMap<String, Long>();
+            for (Operation operation : Operation.values())
+            {
+                for (Map.Entry<String, ConcurrentMap<String, Statistics>> byScale : STATISTICS[operation.ordinal()].entrySet())
+                {
+                    for (Map.Entry<String, Statistics> byZone : byScale.getValue().entrySet())
+                    {
+                        Statistics statistics = byZone.getValue();
+                        result.put(operation + "/" + byScale.getKey() + "/" + byZone.getKey(), (counter == COUNT ? statistics.mCount : statistics.mNanos).sum());
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
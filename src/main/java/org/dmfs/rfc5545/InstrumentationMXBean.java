@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.util.Map;
+
+
+/**
+ * The JMX interface of {@link Instrumentation}. All maps are keyed by <code>operation/calendar scale/time zone</code>.
+ *
+ * @author Marten Gajda
+ */
+public interface InstrumentationMXBean
+{
+    /**
+     * Returns whether instrumentation is enabled.
+     *
+     * @return <code>true</code> if the instrumentation is enabled.
+     */
+    boolean isEnabled();
+
+    /**
+     * Returns the number of invocations.
+     *
+     * @return A map of invocation counts.
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * Returns the total time spent in nanoseconds.
+     *
+     * @return A map of total times.
+     */
+    Map<String, Long> getTotalNanos();
+
+    /**
+     * Returns the latency histograms. Element <code>n</code> of each histogram contains the number of invocations that took at least <code>2^n</code> and less
+     * than <code>2^(n+1)</code> nanoseconds.
+     *
+     * @return A map of histograms.
+     */
+    Map<String, long[]> getHistograms();
+
+    /**
+     * Resets all counters.
+     */
+    void reset();
+}
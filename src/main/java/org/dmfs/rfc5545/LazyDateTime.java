@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.util.TimeZone;
+
+
+/**
+ * A lazy view of a DATE or DATE-TIME value as specified in <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC 5545, Section 3.3.5</a>.
+ * <p>
+ * In contrast to {@link DateTime#parse(CalendarMetrics, TimeZone, String)} this class doesn't parse the value upfront. It only keeps a reference to the
+ * backing character range and decodes the digits of a field when that field is requested. The all-day and floating flags are derived from the length of the
+ * value and the presence of the 'Z' literal, so checking them doesn't decode anything at all. The packed instance and the timestamp are only calculated when
+ * {@link #getInstance()} or {@link #getTimestamp()} is called.
+ * <p>
+ * This is useful if most values are only checked for a single property (like the year or the all-day flag) and then discarded.
+ * <p>
+ * Note that the constructors only check the form of the value. Illegal digits and a month of <code>00</code> are not detected before the respective field
+ * is decoded. In that case an {@link IllegalArgumentException} is thrown by the getter.
+ * <p>
+ * Objects of this class are immutable, provided the backing {@link CharSequence} doesn't change.
+ *
+ * @author Marten Gajda
+ */
+public final class LazyDateTime
+{
+    /**
+     * The {@link CalendarMetrics} of this {@link LazyDateTime} object.
+     */
+    private final CalendarMetrics mCalendarMetrics;
+
+    /**
+     * The {@link TimeZone} of this {@link LazyDateTime} object. May be <code>null</code> if the value is floating.
+     */
+    private final TimeZone mTimezone;
+
+    /**
+     * The {@link CharSequence} that contains the value.
+     */
+    private final CharSequence mValue;
+
+    /**
+     * The position of the first character of the value in {@link #mValue}.
+     */
+    private final int mOffset;
+
+    /**
+     * The position after the last character of the value in {@link #mValue}.
+     */
+    private final int mEnd;
+
+    /**
+     * All-day flag.
+     */
+    private final boolean mAllday;
+
+    /**
+     * The packed instance of this {@link LazyDateTime}. This will be {@link Long#MAX_VALUE} if it has not been calculated yet.
+     * <p>
+     * Like the lazy fields of {@link DateTime} this is volatile, because writes to non-volatile longs may be split into two 32 bit writes (JLS 17.7).
+     *
+     * @see Instance
+     */
+    private volatile long mInstance = Long.MAX_VALUE;
+
+    /**
+     * The milliseconds since the epoch of this {@link LazyDateTime}. This will be {@link Long#MAX_VALUE} if it has not been calculated yet.
+     */
+    private volatile long mTimestamp = Long.MAX_VALUE;
+
+
+    /**
+     * Creates a lazy view of the given date-time string using {@link DateTime#GREGORIAN_CALENDAR_SCALE}. Unless the given value ends with "Z" the result will
+     * be floating.
+     *
+     * @param value
+     *         A date-time string.
+     *
+     * @throws IllegalArgumentException
+     *         if the value doesn't have the form of a DATE or DATE-TIME value.
+     */
+    public LazyDateTime(CharSequence value)
+    {
+        this(DateTime.GREGORIAN_CALENDAR_SCALE, null, value);
+    }
+
+
+    /**
+     * Creates a lazy view of the given date-time string using {@link DateTime#GREGORIAN_CALENDAR_SCALE}.
+     *
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param value
+     *         A date-time string.
+     *
+     * @throws IllegalArgumentException
+     *         if the value doesn't have the form of a DATE or DATE-TIME value.
+     */
+    public LazyDateTime(TimeZone timeZone, CharSequence value)
+    {
+        this(DateTime.GREGORIAN_CALENDAR_SCALE, timeZone, value);
+    }
+
+
+    /**
+     * Creates a lazy view of the given date-time string.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to use.
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param value
+     *         A date-time string.
+     *
+     * @throws IllegalArgumentException
+     *         if the value doesn't have the form of a DATE or DATE-TIME value.
+     */
+    public LazyDateTime(CalendarMetrics calendarMetrics, TimeZone timeZone, CharSequence value)
+    {
+        this(calendarMetrics, timeZone, value, 0, value.length());
+    }
+
+
+    /**
+     * Creates a lazy view of the date-time value in the given range of a {@link CharSequence}. This allows to refer to a value within a larger text (like an
+     * entire content line) without creating a substring.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} to use.
+     * @param timeZone
+     *         A time zone to apply to non-allday and non-UTC date-time values. If timeZone is <code>null</code> the value will be floating unless it ends
+     *         with 'Z'.
+     * @param text
+     *         The {@link CharSequence} that contains the date-time value.
+     * @param start
+     *         The position of the first character of the value.
+     * @param end
+     *         The position after the last character of the value.
+     *
+     * @throws IllegalArgumentException
+     *         if the range doesn't have the form of a DATE or DATE-TIME value.
+     */
+    public LazyDateTime(CalendarMetrics calendarMetrics, TimeZone timeZone, CharSequence text, int start, int end)
+    {
+        if (text == null)
+        {
+            throw new NullPointerException("a date-time string must not be null");
+        }
+
+        int length = end - start;
+        if (length == 8)
+        {
+            mAllday = true;
+            mTimezone = null;
+        }
+        else if (length == 15 && text.charAt(start + 8) == 'T')
+        {
+            mAllday = false;
+            mTimezone = timeZone;
+        }
+        else if (length == 16 && text.charAt(start + 8) == 'T' && text.charAt(start + 15) == 'Z')
+        {
+            mAllday = false;
+            mTimezone = DateTime.UTC;
+        }
+        else
+        {
+            throw new IllegalArgumentException("illegal date-time string: '" + text.subSequence(start, end) + "'");
+        }
+
+        mCalendarMetrics = calendarMetrics;
+        mValue = text;
+        mOffset = start;
+        mEnd = end;
+    }
+
+
+    /**
+     * Returns the {@link CalendarMetrics} of this {@link LazyDateTime}.
+     *
+     * @return The {@link CalendarMetrics} instance.
+     */
+    public CalendarMetrics getCalendarMetrics()
+    {
+        return mCalendarMetrics;
+    }
+
+
+    /**
+     * Returns the {@link TimeZone} of this {@link LazyDateTime}.
+     *
+     * @return The {@link TimeZone} or <code>null</code> for floating and all-day values.
+     */
+    public TimeZone getTimeZone()
+    {
+        return mTimezone;
+    }
+
+
+    /**
+     * Returns whether this is an all-day value. This doesn't decode any digits.
+     *
+     * @return <code>true</code> if this is all-day, <code>false</code> otherwise.
+     */
+    public boolean isAllDay()
+    {
+        return mAllday;
+    }
+
+
+    /**
+     * Returns whether this is a floating value. This doesn't decode any digits.
+     *
+     * @return <code>true</code> if this is floating, <code>false</code> otherwise.
+     */
+    public boolean isFloating()
+    {
+        return mTimezone == null;
+    }
+
+
+    /**
+     * Returns the year of this value. Only the digits of the year are decoded.
+     *
+     * @return The year.
+     */
+    public int getYear()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? fourDigits(0) : Instance.year(instance);
+    }
+
+
+    /**
+     * Returns the (packed) month of this value. Only the digits of the month are decoded.
+     *
+     * @return The month.
+     */
+    public int getMonth()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? month() : Instance.month(instance);
+    }
+
+
+    /**
+     * Returns the month day of this value. Only the digits of the day are decoded.
+     *
+     * @return The month day.
+     */
+    public int getDayOfMonth()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? twoDigits(6) : Instance.dayOfMonth(instance);
+    }
+
+
+    /**
+     * Returns the hours of this value. For all-day values this always returns <code>0</code>.
+     *
+     * @return The hours.
+     */
+    public int getHours()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? mAllday ? 0 : twoDigits(9) : Instance.hour(instance);
+    }
+
+
+    /**
+     * Returns the minutes of this value. For all-day values this always returns <code>0</code>.
+     *
+     * @return The minutes.
+     */
+    public int getMinutes()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? mAllday ? 0 : twoDigits(11) : Instance.minute(instance);
+    }
+
+
+    /**
+     * Returns the seconds of this value. For all-day values this always returns <code>0</code>.
+     *
+     * @return The seconds.
+     */
+    public int getSeconds()
+    {
+        long instance = mInstance;
+        return instance == Long.MAX_VALUE ? mAllday ? 0 : twoDigits(13) : Instance.second(instance);
+    }
+
+
+    /**
+     * Get the packed instance value of this value. This decodes all fields when called for the first time.
+     *
+     * @return The packed instance value.
+     */
+    public long getInstance()
+    {
+        long instance = mInstance;
+        if (instance == Long.MAX_VALUE)
+        {
+            if (mAllday)
+            {
+                instance = Instance.make(fourDigits(0), month(), twoDigits(6), 0, 0, 0);
+            }
+            else
+            {
+                instance = Instance.make(fourDigits(0), month(), twoDigits(6), twoDigits(9), twoDigits(11), twoDigits(13));
+            }
+            mInstance = instance;
+        }
+        return instance;
+    }
+
+
+    /**
+     * Returns the timestamp of this value. For floating values this equals the timestamp in UTC.
+     *
+     * @return the time in milliseconds since the epoch.
+     */
+    public long getTimestamp()
+    {
+        long timestamp = mTimestamp;
+        if (timestamp == Long.MAX_VALUE)
+        {
+            long instance = getInstance();
+            timestamp = mCalendarMetrics.toMillis(mTimezone, Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance),
+                    Instance.hour(instance), Instance.minute(instance), Instance.second(instance), 0);
+            mTimestamp = timestamp;
+        }
+        return timestamp;
+    }
+
+
+    /**
+     * Returns a {@link DateTime} representing this value. Any values that have been calculated already are passed on to the new {@link DateTime}.
+     *
+     * @return A {@link DateTime}.
+     */
+    public DateTime toDateTime()
+    {
+        return new DateTime(mCalendarMetrics, mTimezone, getInstance(), mAllday, mTimestamp);
+    }
+
+
+    /**
+     * Returns the original date-time string.
+     */
+    @Override
+    public String toString()
+    {
+        return mValue.subSequence(mOffset, mEnd).toString();
+    }
+
+
+    private int fourDigits(int position)
+    {
+        try
+        {
+            return DateTime.parseFourDigits(mValue, mOffset + position);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("illegal characters in date-time string: '" + this + "'", e);
+        }
+    }
+
+
+    /**
+     * Returns the packed month. Like {@link DateTime#parse(String)} this rejects month <code>00</code>, which would underflow into the year bits of the
+     * instance.
+     */
+    private int month()
+    {
+        int month = twoDigits(4);
+        if (month == 0)
+        {
+            throw new IllegalArgumentException("illegal date-time string: '" + this + "' at position 4");
+        }
+        return month - 1;
+    }
+
+
+    private int twoDigits(int position)
+    {
+        try
+        {
+            return DateTime.parseTwoDigits(mValue, mOffset + position);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("illegal characters in date-time string: '" + this + "'", e);
+        }
+    }
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.TimeZone;
+
+
+/**
+ * Provides a set of static methods to manipulate local date and time values with milliseconds and a UTC offset stored in a single packed long value.
+ * <p>
+ * In contrast to {@link Instance} an offset instance knows its UTC offset, so it can be converted to a timestamp without looking up a {@link TimeZone}. To
+ * make room for the milliseconds and the offset it doesn't store the day of the week and the UTC offset is limited to multiples of 15 minutes between -32
+ * and +31:45 hours. Offsets of historic local mean times (which are not multiples of 15 minutes) can't be represented.
+ * <p>
+ * The year, month, day and time are stored in the same order as in {@link Instance}, so offset instances with the same offset compare like their local
+ * times.
+ * <p>
+ * Note that the offset instance value alone doesn't say much without the corresponding {@link CalendarMetrics}.
+ * <p>
+ * Also note: never persist packed offset instance values. The implementation and the format of the packed long may change.
+ *
+ * @author Marten Gajda
+ */
+public final class OffsetInstance
+{
+    private final static int YEAR_BITS = 18;
+    private final static int MONTH_BITS = 4;
+    private final static int DAY_BITS = 5;
+    private final static int HOUR_BITS = 5;
+    private final static int MINUTE_BITS = 6;
+    private final static int SECOND_BITS = 6;
+    private final static int MILLIS_BITS = 10;
+    private final static int OFFSET_BITS = 8;
+
+    private final static int OFFSET_POS = 0;
+    private final static int MILLIS_POS = OFFSET_BITS + OFFSET_POS;
+    private final static int SECOND_POS = MILLIS_BITS + MILLIS_POS;
+    private final static int MINUTE_POS = SECOND_BITS + SECOND_POS;
+    private final static int HOUR_POS = MINUTE_BITS + MINUTE_POS;
+    private final static int DAY_POS = HOUR_BITS + HOUR_POS;
+    private final static int MONTH_POS = DAY_BITS + DAY_POS;
+    private final static int YEAR_POS = MONTH_BITS + MONTH_POS;
+
+    private final static long OFFSET_MASK = ((1L << OFFSET_BITS) - 1) << OFFSET_POS;
+    private final static long MILLIS_MASK = ((1L << MILLIS_BITS) - 1) << MILLIS_POS;
+    private final static long SECOND_MASK = ((1L << SECOND_BITS) - 1) << SECOND_POS;
+    private final static long MINUTE_MASK = ((1L << MINUTE_BITS) - 1) << MINUTE_POS;
+    private final static long HOUR_MASK = ((1L << HOUR_BITS) - 1) << HOUR_POS;
+    private final static long DAY_MASK = ((1L << DAY_BITS) - 1) << DAY_POS;
+    private final static long MONTH_MASK = ((1L << MONTH_BITS) - 1) << MONTH_POS;
+    private final static long YEAR_MASK = ((1L << YEAR_BITS) - 1) << YEAR_POS;
+
+    /**
+     * The granularity of the UTC offset in milliseconds.
+     */
+    private final static int OFFSET_UNIT = 15 * 60 * 1000;
+
+    private final static int OFFSET_BIAS = 1 << (OFFSET_BITS - 1);
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private OffsetInstance()
+    {
+    }
+
+
+    /**
+     * Return an offset instance value for the given local date and time and UTC offset.
+     *
+     * @param year
+     *         The year of the instance.
+     * @param month
+     *         The month of the instance.
+     * @param dayOfMonth
+     *         The day of the instance.
+     * @param hour
+     *         The hour of the instance.
+     * @param minute
+     *         The minutes of the instance.
+     * @param second
+     *         The seconds of the instance.
+     * @param millis
+     *         The milliseconds of the instance.
+     * @param offset
+     *         The UTC offset in milliseconds, must be a multiple of 15 minutes.
+     *
+     * @return The packed offset instance value.
+     *
+     * @throws IllegalArgumentException
+     *         if the offset can not be represented.
+     */
+    public static long make(int year, int month, int dayOfMonth, int hour, int minute, int second, int millis, int offset)
+    {
+        return ((long) year << YEAR_POS) | ((long) month << MONTH_POS) | ((long) dayOfMonth << DAY_POS) | ((long) hour << HOUR_POS)
+                | ((long) minute << MINUTE_POS) | ((long) second << SECOND_POS) | ((long) millis << MILLIS_POS) | packOffset(offset);
+    }
+
+
+    /**
+     * Return an offset instance value for the given {@link Instance} value, milliseconds and UTC offset.
+     *
+     * @param instance
+     *         The packed {@link Instance} of the local time.
+     * @param millis
+     *         The milliseconds of the instance.
+     * @param offset
+     *         The UTC offset in milliseconds, must be a multiple of 15 minutes.
+     *
+     * @return The packed offset instance value.
+     *
+     * @throws IllegalArgumentException
+     *         if the offset can not be represented.
+     */
+    public static long of(long instance, int millis, int offset)
+    {
+        return make(Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance), Instance.hour(instance), Instance.minute(instance),
+                Instance.second(instance), millis, offset);
+    }
+
+
+    /**
+     * Return an offset instance value for the given timestamp in the given {@link TimeZone}. This is the only operation that needs to look up the time zone.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the instance.
+     * @param timestamp
+     *         The time in milliseconds since the epoch.
+     * @param timeZone
+     *         The time zone, may be <code>null</code> in which case UTC will be used.
+     *
+     * @return The packed offset instance value.
+     *
+     * @throws IllegalArgumentException
+     *         if the UTC offset of the time zone at the given time is not a multiple of 15 minutes.
+     */
+    public static long of(CalendarMetrics calendarMetrics, long timestamp, TimeZone timeZone)
+    {
+        int offset = timeZone == null ? 0 : timeZone.getOffset(timestamp);
+        return of(calendarMetrics.toInstance(timestamp + offset, null), (int) Math.floorMod(timestamp, 1000L), offset);
+    }
+
+
+    /**
+     * Return the {@link Instance} value of the local date and time of the given offset instance. The day of the week is not set.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The packed {@link Instance} value.
+     */
+    public static long toInstance(long offsetInstance)
+    {
+        return Instance.make(year(offsetInstance), month(offsetInstance), dayOfMonth(offsetInstance), hour(offsetInstance), minute(offsetInstance),
+                second(offsetInstance));
+    }
+
+
+    /**
+     * Convert the given offset instance to milliseconds since the epoch. This doesn't need a {@link TimeZone}, the offset instance knows its UTC offset.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the offset instance.
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public static long toMillis(CalendarMetrics calendarMetrics, long offsetInstance)
+    {
+        return calendarMetrics.toMillis(null, year(offsetInstance), month(offsetInstance), dayOfMonth(offsetInstance), hour(offsetInstance),
+                minute(offsetInstance), second(offsetInstance), millis(offsetInstance)) - offset(offsetInstance);
+    }
+
+
+    /**
+     * Return an offset instance that represents the same time as the given one with a different UTC offset. Use an offset of <code>0</code> to get the UTC
+     * time.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the offset instance.
+     * @param offsetInstance
+     *         The offset instance.
+     * @param offset
+     *         The new UTC offset in milliseconds, must be a multiple of 15 minutes.
+     *
+     * @return The packed offset instance value.
+     *
+     * @throws IllegalArgumentException
+     *         if the offset can not be represented.
+     */
+    public static long withOffset(CalendarMetrics calendarMetrics, long offsetInstance, int offset)
+    {
+        if (offset == offset(offsetInstance))
+        {
+            return offsetInstance;
+        }
+        return of(calendarMetrics.toInstance(toMillis(calendarMetrics, offsetInstance) + offset, null), millis(offsetInstance), offset);
+    }
+
+
+    /**
+     * Get the year of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The year.
+     */
+    public static int year(long offsetInstance)
+    {
+        return (int) ((offsetInstance & YEAR_MASK) >>> YEAR_POS);
+    }
+
+
+    /**
+     * Get the month of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The month.
+     */
+    public static int month(long offsetInstance)
+    {
+        return (int) ((offsetInstance & MONTH_MASK) >>> MONTH_POS);
+    }
+
+
+    /**
+     * Get the day of month of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The day of month.
+     */
+    public static int dayOfMonth(long offsetInstance)
+    {
+        return (int) ((offsetInstance & DAY_MASK) >>> DAY_POS);
+    }
+
+
+    /**
+     * Get the hour of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The hour.
+     */
+    public static int hour(long offsetInstance)
+    {
+        return (int) ((offsetInstance & HOUR_MASK) >>> HOUR_POS);
+    }
+
+
+    /**
+     * Get the minute of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The minute.
+     */
+    public static int minute(long offsetInstance)
+    {
+        return (int) ((offsetInstance & MINUTE_MASK) >>> MINUTE_POS);
+    }
+
+
+    /**
+     * Get the seconds of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The seconds.
+     */
+    public static int second(long offsetInstance)
+    {
+        return (int) ((offsetInstance & SECOND_MASK) >>> SECOND_POS);
+    }
+
+
+    /**
+     * Get the milliseconds of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The milliseconds.
+     */
+    public static int millis(long offsetInstance)
+    {
+        return (int) ((offsetInstance & MILLIS_MASK) >>> MILLIS_POS);
+    }
+
+
+    /**
+     * Get the UTC offset of the given packed offset instance.
+     *
+     * @param offsetInstance
+     *         The offset instance.
+     *
+     * @return The UTC offset in milliseconds.
+     */
+    public static int offset(long offsetInstance)
+    {
+        return ((int) ((offsetInstance & OFFSET_MASK) >>> OFFSET_POS) - OFFSET_BIAS) * OFFSET_UNIT;
+    }
+
+
+    /**
+     * Convert the local date and time of the given offset instance to a String that conforms to <a href="https://tools.ietf.org/html/rfc5545#section-3.3.5">RFC
+     * 5545, Section 3.3.5</a>. The milliseconds and the offset are not included. Use {@link #withOffset(CalendarMetrics, long, int)} with an offset of
+     * <code>0</code> to get the UTC time.
+     *
+     * @param offsetInstance
+     *         An offset instance value.
+     *
+     * @return The formatted date-time value.
+     *
+     * @see Instance#toString(long)
+     */
+    public static String toString(long offsetInstance)
+    {
+        return Instance.toString(toInstance(offsetInstance));
+    }
+
+
+    /**
+     * Write the local date and time of the given offset instance to a {@link StringBuilder}. See {@link Instance#writeTo(StringBuilder, long, boolean)}.
+     *
+     * @param out
+     *         The {@link StringBuilder} to write to.
+     * @param offsetInstance
+     *         An offset instance value.
+     * @param dateOnly
+     *         <code>true</code> to write the date value only, <code>false</code> to also write the time.
+     */
+    public static void writeTo(StringBuilder out, long offsetInstance, boolean dateOnly)
+    {
+        Instance.writeTo(out, toInstance(offsetInstance), dateOnly);
+    }
+
+
+    /**
+     * Write the local date and time of the given offset instance to a {@link Writer}. See {@link Instance#writeTo(Writer, long, boolean)}.
+     *
+     * @param out
+     *         The {@link Writer} to write to.
+     * @param offsetInstance
+     *         An offset instance value.
+     * @param dateOnly
+     *         <code>true</code> to write the date value only, <code>false</code> to also write the time.
+     *
+     * @throws IOException
+     */
+    public static void writeTo(Writer out, long offsetInstance, boolean dateOnly) throws IOException
+    {
+        Instance.writeTo(out, toInstance(offsetInstance), dateOnly);
+    }
+
+
+    /**
+     * Write the UTC offset of the given offset instance to a {@link StringBuilder} in the form specified in <a
+     * href="https://tools.ietf.org/html/rfc5545#section-3.3.14">RFC 5545, Section 3.3.14</a>, e.g. <code>+0100</code> or <code>-0430</code>.
+     *
+     * @param out
+     *         The {@link StringBuilder} to write to.
+     * @param offsetInstance
+     *         An offset instance value.
+     */
+    public static void writeOffsetTo(StringBuilder out, long offsetInstance)
+    {
+        int offset = offset(offsetInstance) / 60000;
+        out.append(offset < 0 ? '-' : '+');
+        offset = Math.abs(offset);
+        out.append((char) (offset / 600 + '0'));
+        out.append((char) (offset / 60 % 10 + '0'));
+        out.append((char) (offset % 60 / 10 + '0'));
+        out.append((char) (offset % 10 + '0'));
+    }
+
+
+    private static long packOffset(int offset)
+    {
+        int units = offset / OFFSET_UNIT;
+        if (units * OFFSET_UNIT != offset || units < -OFFSET_BIAS || units >= OFFSET_BIAS)
+        {
+            throw new IllegalArgumentException("Can't represent UTC offset " + offset);
+        }
+        return (long) (units + OFFSET_BIAS) << OFFSET_POS;
+    }
+}
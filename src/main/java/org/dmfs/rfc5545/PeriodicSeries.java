@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+
+import java.util.TimeZone;
+
+
+/**
+ * A series of occurrences that start every n days, weeks or months at the local time of a start {@link DateTime} and last for a specific {@link Duration}.
+ * <p>
+ * The occurrences that overlap a given time window are written to primitive <code>long[]</code> buffers of start and end timestamps by a {@link Window}.
+ * The first occurrence of a window is determined arithmetically, so the cost of a query doesn't depend on the distance between the start of the series and
+ * the window.
+ * <p>
+ * The end of each occurrence is calculated like {@link DateTime#addDuration(Duration)} does it. Monthly occurrences that would fall on a day that doesn't
+ * exist in a specific month (like February 30th) are skipped.
+ * <p>
+ * Example:
+ * <pre>
+ * PeriodicSeries series = new PeriodicSeries(DateTime.parse("Europe/Berlin", "20150101T090000"), PeriodicSeries.Step.DAY, 1, Duration.parse("PT1H"));
+ * PeriodicSeries.Window window = series.window(windowStart, windowEnd);
+ * long[] starts = new long[256];
+ * long[] ends = new long[256];
+ * int count;
+ * while ((count = window.fill(starts, ends)) &gt; 0)
+ * {
+ *     // process count occurrences
+ * }
+ * </pre>
+ *
+ * @author Marten Gajda
+ */
+public final class PeriodicSeries
+{
+    /**
+     * The step between two occurrences.
+     */
+    public enum Step
+    {
+        DAY, WEEK, MONTH
+    }
+
+
+    private final static long ONE_DAY = 24 * 3600 * 1000L;
+
+    private final CalendarMetrics mCalendarMetrics;
+    private final TimeZone mTimeZone;
+    private final long mStartInstance;
+    private final long mStartTimestamp;
+    private final Step mStep;
+    private final int mInterval;
+    private final Duration mDuration;
+
+    /**
+     * Whether the duration can be added in milliseconds.
+     */
+    private final boolean mExactDuration;
+    private final long mDurationMillis;
+
+
+    /**
+     * Creates a new {@link PeriodicSeries}.
+     *
+     * @param start
+     *         The start of the first occurrence.
+     * @param step
+     *         The {@link Step} between two occurrences.
+     * @param interval
+     *         The number of steps between two occurrences, must be &gt; 0.
+     * @param duration
+     *         The {@link Duration} of each occurrence, must not be negative.
+     *
+     * @throws IllegalArgumentException
+     *         if the interval is not positive, the duration is negative or the duration has a time part and the start is all-day.
+     */
+    public PeriodicSeries(DateTime start, Step step, int interval, Duration duration)
+    {
+        if (interval < 1)
+        {
+            throw new IllegalArgumentException("interval must be >0");
+        }
+        if (duration.getSign() < 0 && !duration.isZero())
+        {
+            throw new IllegalArgumentException("duration must not be negative");
+        }
+        if (start.isAllDay() && duration.getSecondsOfDay() > 0)
+        {
+            throw new IllegalArgumentException("Can't add a duration with time to an all-day DateTime.");
+        }
+
+        mCalendarMetrics = start.getCalendarMetrics();
+        mTimeZone = start.getTimeZone();
+        mStartInstance = start.getInstance();
+        mStartTimestamp = start.getTimestamp();
+        mStep = step;
+        mInterval = interval;
+        mDuration = duration;
+        mExactDuration = duration.isZero() || mTimeZone == null || !mTimeZone.useDaylightTime();
+        mDurationMillis = duration.toMillis();
+    }
+
+
+    /**
+     * Returns a {@link Window} that returns all occurrences that overlap the time from <code>windowStart</code> (inclusive) to <code>windowEnd</code>
+     * (exclusive). Occurrences of zero length are included if they start within the window.
+     *
+     * @param windowStart
+     *         The start of the window in milliseconds since the epoch.
+     * @param windowEnd
+     *         The end of the window in milliseconds since the epoch.
+     *
+     * @return A {@link Window}.
+     */
+    public Window window(long windowStart, long windowEnd)
+    {
+        return new Window(firstIndex(windowStart), windowStart, windowEnd);
+    }
+
+
+    /**
+     * Returns the index of an occurrence that's not after the first occurrence that overlaps the given window start. All occurrences before that index end
+     * before the window start.
+     */
+    private int firstIndex(long windowStart)
+    {
+        // go back the length of one occurrence plus some extra time to account for offset changes
+        long probeInstance = mCalendarMetrics.toInstance(windowStart - mDurationMillis - 2 * ONE_DAY, mTimeZone);
+
+        long steps;
+        if (mStep == Step.MONTH)
+        {
+            int startYear = Instance.year(mStartInstance);
+            long months = (Instance.year(probeInstance) - startYear) * (long) mCalendarMetrics.getMonthsPerYear(startYear) + Instance.month(
+                    probeInstance) - Instance.month(mStartInstance);
+            steps = Math.floorDiv(months, mInterval) - 1;
+        }
+        else
+        {
+            long days = Math.floorDiv(mCalendarMetrics.toMillis(probeInstance, null) - mCalendarMetrics.toMillis(mStartInstance, null), ONE_DAY);
+            steps = Math.floorDiv(days, mStep == Step.WEEK ? 7L * mInterval : mInterval) - 1;
+        }
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, steps));
+    }
+
+
+    /**
+     * Returns the instance of the occurrence with the given index or {@link Long#MAX_VALUE} if the occurrence doesn't exist.
+     */
+    private long instance(int index)
+    {
+        long steps = steps(index);
+        if (steps > Integer.MAX_VALUE)
+        {
+            // beyond the range of nextDay and nextMonth
+            return Long.MAX_VALUE;
+        }
+        if (mStep == Step.MONTH)
+        {
+            long instance = mCalendarMetrics.nextMonth(mStartInstance, (int) steps);
+            return mCalendarMetrics.validate(instance) ? instance : Long.MAX_VALUE;
+        }
+        return mCalendarMetrics.nextDay(mStartInstance, (int) steps);
+    }
+
+
+    /**
+     * Returns the number of days or months between the start of the series and the occurrence with the given index.
+     */
+    private long steps(int index)
+    {
+        return mStep == Step.WEEK ? index * 7L * mInterval : (long) index * mInterval;
+    }
+
+
+    /**
+     * Returns the end of the occurrence that starts at the given instance and timestamp.
+     */
+    private long end(long instance, long timestamp)
+    {
+        if (mExactDuration)
+        {
+            return timestamp + mDurationMillis;
+        }
+
+        // same as DateTime.addDuration
+        int days = mDuration.getRawDays();
+        long end = days == 0 ? timestamp : mCalendarMetrics.toMillis(mCalendarMetrics.nextDay(instance, days), mTimeZone);
+        return end + mDuration.getSecondsOfDay() * 1000L;
+    }
+
+
+    /**
+     * A window of a {@link PeriodicSeries}. It returns the occurrences in the window in chunks. {@link Window}s are not thread-safe.
+     */
+    public final class Window
+    {
+        private final long mWindowStart;
+        private final long mWindowEnd;
+        private int mIndex;
+        private boolean mDone;
+
+
+        Window(int firstIndex, long windowStart, long windowEnd)
+        {
+            mIndex = firstIndex;
+            mWindowStart = windowStart;
+            mWindowEnd = windowEnd;
+        }
+
+
+        /**
+         * Writes the next occurrences of this window to the given arrays.
+         *
+         * @param starts
+         *         The array to store the start timestamps in.
+         * @param ends
+         *         The array to store the end timestamps in.
+         *
+         * @return The number of occurrences written, which is limited by the length of the shorter array. Returns 0 once all occurrences have been
+         * returned.
+         */
+        public int fill(long[] starts, long[] ends)
+        {
+            int max = Math.min(starts.length, ends.length);
+            int count = 0;
+            while (count < max && !mDone)
+            {
+                int index = mIndex;
+                long instance = instance(index);
+                if (instance == Long.MAX_VALUE)
+                {
+                    if (index == Integer.MAX_VALUE || steps(index) > Integer.MAX_VALUE)
+                    {
+                        // this and all following occurrences are out of range
+                        mDone = true;
+                        break;
+                    }
+                    // this occurrence doesn't exist
+                    mIndex = index + 1;
+                    continue;
+                }
+
+                long start = index == 0 ? mStartTimestamp : mCalendarMetrics.toMillis(instance, mTimeZone);
+                if (start >= mWindowEnd)
+                {
+                    mDone = true;
+                    break;
+                }
+
+                long end = end(instance, start);
+                mIndex = index + 1;
+                if (end > mWindowStart || start >= mWindowStart)
+                {
+                    starts[count] = start;
+                    ends[count] = end;
+                    ++count;
+                }
+            }
+            return count;
+        }
+    }
+}
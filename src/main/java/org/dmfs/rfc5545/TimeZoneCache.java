@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A bounded, lock-free cache of {@link TimeZone}s by TZID.
+ * <p>
+ * {@link TimeZone#getTimeZone(String)} takes a global lock and clones the zone on every call. This cache resolves each TZID once and returns the same {@link
+ * TimeZone} instance for all subsequent lookups. Lookups accept any {@link CharSequence}, so TZIDs don't need to be converted to {@link String}s first, and
+ * don't allocate anything on a cache hit.
+ * <p>
+ * The cache is a fixed size hash table. Each TZID has two candidate slots, if both are taken by other TZIDs, one of them is replaced. Replaced entries are
+ * resolved again when they're requested the next time.
+ * <p>
+ * <strong>Note:</strong> {@link TimeZone} is mutable. The instances returned by this cache are shared, so they must not be modified. Clone them if you need to
+ * change them.
+ *
+ * @author Marten Gajda
+ */
+public final class TimeZoneCache
+{
+    /**
+     * A shared default instance.
+     */
+    public final static TimeZoneCache DEFAULT = new TimeZoneCache(512);
+
+    private final AtomicReferenceArray<Entry> mEntries;
+    private final int mMask;
+
+
+    /**
+     * Creates a {@link TimeZoneCache} with space for (at least) the given number of time zones.
+     *
+     * @param capacity
+     *         The capacity of the cache, will be rounded up to the next power of two.
+     */
+    public TimeZoneCache(int capacity)
+    {
+        if (capacity < 2 || capacity > 1 << 16)
+        {
+            throw new IllegalArgumentException("capacity must be in the range [2, 65536]");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mEntries = new AtomicReferenceArray<Entry>(size);
+        mMask = size - 1;
+    }
+
+
+    /**
+     * Returns the {@link TimeZone} with the given TZID. Just like {@link TimeZone#getTimeZone(String)} this returns the GMT zone for unknown TZIDs.
+     *
+     * @param id
+     *         The TZID.
+     *
+     * @return A shared {@link TimeZone} instance that must not be modified.
+     */
+    public TimeZone timeZone(CharSequence id)
+    {
+        return entry(id).mTimeZone;
+    }
+
+
+    /**
+     * Returns the cache {@link Entry} of the time zone with the given TZID.
+     *
+     * @param id
+     *         The TZID.
+     *
+     * @return An {@link Entry}.
+     */
+    public Entry entry(CharSequence id)
+    {
+        int hash = hash(id);
+        int slot = spread(hash) & mMask;
+        Entry entry = mEntries.get(slot);
+        if (entry != null && entry.matches(hash, id))
+        {
+            return entry;
+        }
+        int secondSlot = slot ^ 1;
+        Entry secondEntry = mEntries.get(secondSlot);
+        if (secondEntry != null && secondEntry.matches(hash, id))
+        {
+            return secondEntry;
+        }
+
+        // cache miss, racing threads may resolve the same zone concurrently, but that does no harm
+        Entry newEntry = new Entry(hash, id.toString());
+        mEntries.set(entry == null || secondEntry != null ? slot : secondSlot, newEntry);
+        return newEntry;
+    }
+
+
+    /**
+     * Returns the hash code of the given {@link CharSequence}. This equals {@link String#hashCode()}, so the cached hash code of a {@link String} can be used.
+     */
+    private static int hash(CharSequence id)
+    {
+        if (id instanceof String)
+        {
+            return id.hashCode();
+        }
+
+        int hash = 0;
+        for (int i = 0, length = id.length(); i < length; ++i)
+        {
+            hash = 31 * hash + id.charAt(i);
+        }
+        return hash;
+    }
+
+
+    private static int spread(int hash)
+    {
+        return hash ^ (hash >>> 16);
+    }
+
+
+    /**
+     * An immutable cache entry. Besides the {@link TimeZone} it contains a summary of the zone that can be used without calling any methods of the {@link
+     * TimeZone}.
+     */
+    public final static class Entry
+    {
+        private final int mHash;
+        private final String mId;
+        private final TimeZone mTimeZone;
+        private final boolean mUseDaylightTime;
+        private final int mRawOffset;
+
+
+        private Entry(int hash, String id)
+        {
+            mHash = hash;
+            mId = id;
+            mTimeZone = TimeZone.getTimeZone(id);
+            mUseDaylightTime = mTimeZone.useDaylightTime();
+            mRawOffset = mTimeZone.getRawOffset();
+        }
+
+
+        /**
+         * Returns the TZID this entry has been requested with. Note that this may differ from the ID of the {@link TimeZone} if the TZID is unknown.
+         *
+         * @return The TZID.
+         */
+        public String getId()
+        {
+            return mId;
+        }
+
+
+        /**
+         * Returns the {@link TimeZone} of this entry.
+         *
+         * @return A shared {@link TimeZone} instance that must not be modified.
+         */
+        public TimeZone getTimeZone()
+        {
+            return mTimeZone;
+        }
+
+
+        /**
+         * Returns the result of {@link TimeZone#useDaylightTime()} at the time the zone was resolved.
+         *
+         * @return <code>true</code> if the zone uses daylight saving time.
+         */
+        public boolean useDaylightTime()
+        {
+            return mUseDaylightTime;
+        }
+
+
+        /**
+         * Returns the result of {@link TimeZone#getRawOffset()} at the time the zone was resolved.
+         *
+         * @return The raw offset in milliseconds.
+         */
+        public int getRawOffset()
+        {
+            return mRawOffset;
+        }
+
+
+        private boolean matches(int hash, CharSequence id)
+        {
+            return mHash == hash && mId.contentEquals(id);
+        }
+    }
+}
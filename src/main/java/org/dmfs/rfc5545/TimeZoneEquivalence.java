@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * A global cache that maps {@link TimeZone}s to equivalence classes. Two {@link TimeZone}s are in the same class if they have the same rules (see {@link
+ * TimeZone#hasSameRules(TimeZone)}). Floating time (a <code>null</code> time zone) is in the class of UTC.
+ * <p>
+ * This allows to check whether two zones result in the same timestamps with a simple int compare, instead of walking the transition data of both zones
+ * with {@link TimeZone#hasSameRules(TimeZone)} every time.
+ * <p>
+ * The cache is bounded. Once it's full {@link #classOf(TimeZone)} returns {@link #UNKNOWN} for zones that are not in the cache yet.
+ *
+ * @author Marten Gajda
+ */
+final class TimeZoneEquivalence
+{
+    /**
+     * The class of UTC and all zones with the same rules (and of floating time).
+     */
+    final static int UTC_CLASS = 0;
+
+    /**
+     * Returned by {@link #classOf(TimeZone)} if the cache is full and the zone is not known.
+     */
+    final static int UNKNOWN = -1;
+
+    /**
+     * The maximum number of {@link TimeZone}s in the cache.
+     */
+    private final static int MAX_SIZE = 4096;
+
+    /**
+     * The classes of all known zones. The keys are clones, because {@link TimeZone}s are mutable.
+     */
+    private final static ConcurrentHashMap<TimeZone, Integer> CLASSES = new ConcurrentHashMap<TimeZone, Integer>();
+
+    /**
+     * One representative zone per class, the index is the class id. Only accessed while holding the class lock.
+     */
+    private static TimeZone[] sRepresentatives = { TimeZone.getTimeZone("UTC") };
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private TimeZoneEquivalence()
+    {
+    }
+
+
+    /**
+     * Returns the equivalence class of the given {@link TimeZone}.
+     *
+     * @param timeZone
+     *         A {@link TimeZone} or <code>null</code> for floating time.
+     *
+     * @return The class id or {@link #UNKNOWN} if the cache is full.
+     */
+    static int classOf(TimeZone timeZone)
+    {
+        if (timeZone == null)
+        {
+            return UTC_CLASS;
+        }
+
+        Integer result = CLASSES.get(timeZone);
+        if (result != null)
+        {
+            return result;
+        }
+
+        if (CLASSES.size() >= MAX_SIZE)
+        {
+            return UNKNOWN;
+        }
+
+        return newClassOf(timeZone);
+    }
+
+
+    /**
+     * Returns whether two {@link TimeZone}s result in the same timestamps.
+     *
+     * @param first
+     *         A {@link TimeZone} or <code>null</code> for floating time.
+     * @param second
+     *         Another {@link TimeZone} or <code>null</code> for floating time.
+     *
+     * @return <code>true</code> if both zones have the same rules, considering floating time to be UTC.
+     */
+    static boolean sameRules(TimeZone first, TimeZone second)
+    {
+        if (first == second)
+        {
+            return true;
+        }
+
+        int firstClass = classOf(first);
+        int secondClass = classOf(second);
+        if (firstClass != UNKNOWN && secondClass != UNKNOWN)
+        {
+            return firstClass == secondClass;
+        }
+
+        // the cache is full, compare the rules
+        return (first == null ? DateTime.UTC : first).hasSameRules(second == null ? DateTime.UTC : second);
+    }
+
+
+    /**
+     * Determines the class of a zone that's not in the cache. This is synchronized, so each new class gets exactly one representative.
+     */
+    private static synchronized int newClassOf(TimeZone timeZone)
+    {
+        Integer result = CLASSES.get(timeZone);
+        if (result != null)
+        {
+            return result;
+        }
+
+        TimeZone[] representatives = sRepresentatives;
+        int classId = representatives.length;
+        for (int i = 0; i < representatives.length; ++i)
+        {
+            if (representatives[i].hasSameRules(timeZone))
+            {
+                classId = i;
+                break;
+            }
+        }
+
+        TimeZone clone = (TimeZone) timeZone.clone();
+        if (classId == representatives.length)
+        {
+            representatives = Arrays.copyOf(representatives, classId + 1);
+            representatives[classId] = clone;
+            sRepresentatives = representatives;
+        }
+        CLASSES.put(clone, classId);
+        return classId;
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.LocalTimeResolver;
+
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Bulk time zone operations on arrays of timestamps and packed instances. These are the batch equivalents of {@link DateTime#shiftTimeZone(TimeZone)},
+ * {@link DateTime#swapTimeZone(TimeZone)}, {@link DateTime#getInstance()} and {@link DateTime#getTimestamp()}.
+ * <p>
+ * Instead of asking the {@link TimeZone} for the offset of every single element, the period of constant offset around an element is determined (using the
+ * transition tables of {@link LocalTimeResolver}) and reused for all following elements in the same period. The input doesn't have to be sorted, but sorted input benefits most,
+ * because consecutive elements usually fall into the same period.
+ * <p>
+ * A <code>null</code> time zone stands for floating time. All methods allow the result array to be the input array, in which case the values are converted
+ * in place. The <code>parallel*</code> variants split large arrays into ranges that are converted on the common {@link ForkJoinPool}.
+ *
+ * @author Marten Gajda
+ */
+public final class TimeZoneShifter
+{
+    /**
+     * The minimum number of elements per range of the parallel operations.
+     */
+    private final static int PARALLEL_THRESHOLD = 1 << 13;
+
+    /**
+     * A local time that is at least this far away from the next transition (in both directions) can be converted using the offset of the current period. This
+     * exceeds the largest offset (in both directions) by a couple of hours.
+     */
+    private final static long SAFETY_MARGIN = 26 * 3600 * 1000L;
+
+    private final static int OPERATION_TO_INSTANCES = 0;
+    private final static int OPERATION_TO_TIMESTAMPS = 1;
+    private final static int OPERATION_SHIFT = 2;
+    private final static int OPERATION_SWAP = 3;
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private TimeZoneShifter()
+    {
+    }
+
+
+    /**
+     * Converts timestamps to packed instances in the given time zone. This is the batch equivalent of <code>new DateTime(calendarMetrics, timeZone,
+     * timestamp).getInstance()</code>.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the instances.
+     * @param timeZone
+     *         The {@link TimeZone} of the instances or <code>null</code> for floating instances.
+     * @param timestamps
+     *         The timestamps to convert.
+     * @param result
+     *         The array to store the instances in, may be the same as <code>timestamps</code>.
+     */
+    public static void toInstances(CalendarMetrics calendarMetrics, TimeZone timeZone, long[] timestamps, long[] result)
+    {
+        checkLength(timestamps, result);
+        toInstances(calendarMetrics, new OffsetCursor(timeZone), timestamps, result, 0, timestamps.length);
+    }
+
+
+    /**
+     * Same as {@link #toInstances(CalendarMetrics, TimeZone, long[], long[])}, but converts large arrays in parallel.
+     */
+    public static void parallelToInstances(CalendarMetrics calendarMetrics, TimeZone timeZone, long[] timestamps, long[] result)
+    {
+        checkLength(timestamps, result);
+        ForkJoinPool.commonPool().invoke(new RangeTask(OPERATION_TO_INSTANCES, calendarMetrics, timeZone, null, timestamps, result, 0, timestamps.length));
+    }
+
+
+    /**
+     * Converts packed instances in the given time zone to timestamps. This is the batch equivalent of <code>new DateTime(calendarMetrics, timeZone, year,
+     * month, day, hours, minutes, seconds).getTimestamp()</code>.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the instances.
+     * @param timeZone
+     *         The {@link TimeZone} of the instances or <code>null</code> for floating instances.
+     * @param instances
+     *         The instances to convert.
+     * @param result
+     *         The array to store the timestamps in, may be the same as <code>instances</code>.
+     */
+    public static void toTimestamps(CalendarMetrics calendarMetrics, TimeZone timeZone, long[] instances, long[] result)
+    {
+        checkLength(instances, result);
+        toTimestamps(calendarMetrics, new OffsetCursor(timeZone), instances, result, 0, instances.length);
+    }
+
+
+    /**
+     * Same as {@link #toTimestamps(CalendarMetrics, TimeZone, long[], long[])}, but converts large arrays in parallel.
+     */
+    public static void parallelToTimestamps(CalendarMetrics calendarMetrics, TimeZone timeZone, long[] instances, long[] result)
+    {
+        checkLength(instances, result);
+        ForkJoinPool.commonPool().invoke(new RangeTask(OPERATION_TO_TIMESTAMPS, calendarMetrics, timeZone, null, instances, result, 0, instances.length));
+    }
+
+
+    /**
+     * Shifts packed instances from one time zone to another, keeping the absolute time. This is the batch equivalent of {@link
+     * DateTime#shiftTimeZone(TimeZone)}.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the instances.
+     * @param from
+     *         The {@link TimeZone} of the given instances or <code>null</code> for floating instances.
+     * @param to
+     *         The {@link TimeZone} of the resulting instances or <code>null</code> for floating instances.
+     * @param instances
+     *         The instances to shift.
+     * @param result
+     *         The array to store the shifted instances in, may be the same as <code>instances</code>.
+     */
+    public static void shift(CalendarMetrics calendarMetrics, TimeZone from, TimeZone to, long[] instances, long[] result)
+    {
+        checkLength(instances, result);
+        if (TimeZoneEquivalence.sameRules(from, to))
+        {
+            // the local times don't change
+            System.arraycopy(instances, 0, result, 0, instances.length);
+            return;
+        }
+        shift(calendarMetrics, new OffsetCursor(from), new OffsetCursor(to), instances, result, 0, instances.length);
+    }
+
+
+    /**
+     * Same as {@link #shift(CalendarMetrics, TimeZone, TimeZone, long[], long[])}, but shifts large arrays in parallel.
+     */
+    public static void parallelShift(CalendarMetrics calendarMetrics, TimeZone from, TimeZone to, long[] instances, long[] result)
+    {
+        checkLength(instances, result);
+        if (TimeZoneEquivalence.sameRules(from, to))
+        {
+            // the local times don't change
+            System.arraycopy(instances, 0, result, 0, instances.length);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RangeTask(OPERATION_SHIFT, calendarMetrics, from, to, instances, result, 0, instances.length));
+    }
+
+
+    /**
+     * Swaps the time zone of timestamps, keeping the local time. This is the batch equivalent of {@link DateTime#swapTimeZone(TimeZone)}, except that the
+     * milliseconds of the timestamps are retained.
+     *
+     * @param from
+     *         The {@link TimeZone} of the given timestamps or <code>null</code> for floating timestamps.
+     * @param to
+     *         The {@link TimeZone} of the resulting timestamps or <code>null</code> for floating timestamps.
+     * @param timestamps
+     *         The timestamps to swap.
+     * @param result
+     *         The array to store the swapped timestamps in, may be the same as <code>timestamps</code>.
+     */
+    public static void swap(TimeZone from, TimeZone to, long[] timestamps, long[] result)
+    {
+        checkLength(timestamps, result);
+        if (TimeZoneEquivalence.sameRules(from, to))
+        {
+            // the timestamps don't change
+            System.arraycopy(timestamps, 0, result, 0, timestamps.length);
+            return;
+        }
+        swap(new OffsetCursor(from), new OffsetCursor(to), timestamps, result, 0, timestamps.length);
+    }
+
+
+    /**
+     * Same as {@link #swap(TimeZone, TimeZone, long[], long[])}, but swaps large arrays in parallel.
+     */
+    public static void parallelSwap(TimeZone from, TimeZone to, long[] timestamps, long[] result)
+    {
+        checkLength(timestamps, result);
+        if (TimeZoneEquivalence.sameRules(from, to))
+        {
+            // the timestamps don't change
+            System.arraycopy(timestamps, 0, result, 0, timestamps.length);
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new RangeTask(OPERATION_SWAP, null, from, to, timestamps, result, 0, timestamps.length));
+    }
+
+
+    private static void toInstances(CalendarMetrics calendarMetrics, OffsetCursor cursor, long[] timestamps, long[] result, int from, int to)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            long timestamp = timestamps[i];
+            result[i] = calendarMetrics.toInstance(timestamp + cursor.offset(timestamp), null);
+        }
+    }
+
+
+    private static void toTimestamps(CalendarMetrics calendarMetrics, OffsetCursor cursor, long[] instances, long[] result, int from, int to)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            long instance = instances[i];
+            result[i] = cursor.toTimestamp(calendarMetrics, instance, calendarMetrics.toMillis(instance, null));
+        }
+    }
+
+
+    private static void shift(CalendarMetrics calendarMetrics, OffsetCursor fromCursor, OffsetCursor toCursor, long[] instances, long[] result, int from,
+                              int to)
+    {
+        for (int i = from; i < to; ++i)
+        {
+            long instance = instances[i];
+            long timestamp = fromCursor.toTimestamp(calendarMetrics, instance, calendarMetrics.toMillis(instance, null));
+            result[i] = calendarMetrics.toInstance(timestamp + toCursor.offset(timestamp), null);
+        }
+    }
+
+
+    private static void swap(OffsetCursor fromCursor, OffsetCursor toCursor, long[] timestamps, long[] result, int from, int to)
+    {
+        CalendarMetrics calendarMetrics = DateTime.GREGORIAN_CALENDAR_SCALE;
+        for (int i = from; i < to; ++i)
+        {
+            long timestamp = timestamps[i];
+            long localTime = timestamp + fromCursor.offset(timestamp);
+            result[i] = toCursor.toTimestamp(calendarMetrics, Long.MAX_VALUE, localTime);
+        }
+    }
+
+
+    private static void checkLength(long[] values, long[] result)
+    {
+        if (result.length < values.length)
+        {
+            throw new IllegalArgumentException("result array is too short");
+        }
+    }
+
+
+    /**
+     * A cursor over the periods of constant offset of a {@link TimeZone}. It remembers the period of the last request, so the offsets of other timestamps in
+     * the same period are returned without asking the {@link TimeZone}.
+     * <p>
+     * The periods are taken from the verified transition tables of {@link LocalTimeResolver#offset(TimeZone, long, long[])}. Zones without a table (like
+     * zones with custom rules) and timestamps outside of the table have periods of one millisecond, which means the {@link TimeZone} is asked for every
+     * timestamp.
+     */
+    private final static class OffsetCursor
+    {
+        private final TimeZone mTimeZone;
+
+        /**
+         * Receives the bounds of a new period.
+         */
+        private final long[] mPeriod = new long[2];
+
+        /**
+         * The first timestamp of the current period.
+         */
+        private long mStart = Long.MAX_VALUE;
+
+        /**
+         * The first timestamp after the current period.
+         */
+        private long mEnd = Long.MIN_VALUE;
+
+        /**
+         * The offset during the current period.
+         */
+        private int mOffset;
+
+
+        OffsetCursor(TimeZone timeZone)
+        {
+            mTimeZone = timeZone;
+            if (timeZone == null)
+            {
+                // floating time has a constant offset of 0
+                mStart = Long.MIN_VALUE;
+                mEnd = Long.MAX_VALUE;
+            }
+        }
+
+
+        /**
+         * Returns the offset of the zone at the given timestamp.
+         */
+        int offset(long timestamp)
+        {
+            if (timestamp >= mStart && timestamp < mEnd)
+            {
+                return mOffset;
+            }
+
+            int offset = LocalTimeResolver.offset(mTimeZone, timestamp, mPeriod);
+            mOffset = offset;
+            mStart = mPeriod[0];
+            mEnd = mPeriod[1];
+            return offset;
+        }
+
+
+        /**
+         * Returns the timestamp of the given local time in this zone.
+         *
+         * @param calendarMetrics
+         *         The {@link CalendarMetrics} to use if the local time is close to a transition.
+         * @param instance
+         *         The instance of the local time or {@link Long#MAX_VALUE} if it has not been calculated yet.
+         * @param localTime
+         *         The local time in milliseconds (i.e. the timestamp of the local time in UTC).
+         */
+        long toTimestamp(CalendarMetrics calendarMetrics, long instance, long localTime)
+        {
+            int offset = offset(localTime);
+            if (localTime - SAFETY_MARGIN >= mStart && localTime + SAFETY_MARGIN < mEnd)
+            {
+                // there is no transition near the local time, so the result falls into the same period
+                return localTime - offset;
+            }
+
+            // close to a transition, let the calendar metrics resolve the local time
+            if (instance == Long.MAX_VALUE)
+            {
+                instance = calendarMetrics.toInstance(localTime, null);
+            }
+            return calendarMetrics.toMillis(mTimeZone, Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance), Instance.hour(instance),
+                    Instance.minute(instance), Instance.second(instance), (int) Math.floorMod(localTime, 1000L));
+        }
+    }
+
+
+    /**
+     * Converts a range of an array, splitting it as long as it's larger than {@link #PARALLEL_THRESHOLD}.
+     */
+    private final static class RangeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int mOperation;
+        private final CalendarMetrics mCalendarMetrics;
+        private final TimeZone mFrom;
+        private final TimeZone mTo;
+        private final long[] mValues;
+        private final long[] mResult;
+        private final int mStart;
+        private final int mEnd;
+
+
+        RangeTask(int operation, CalendarMetrics calendarMetrics, TimeZone from, TimeZone to, long[] values, long[] result, int start, int end)
+        {
+            mOperation = operation;
+            mCalendarMetrics = calendarMetrics;
+            mFrom = from;
+            mTo = to;
+            mValues = values;
+            mResult = result;
+            mStart = start;
+            mEnd = end;
+        }
+
+
+        @Override
+        protected void compute()
+        {
+            if (mEnd - mStart > PARALLEL_THRESHOLD)
+            {
+                int middle = (mStart + mEnd) >>> 1;
+                invokeAll(new RangeTask(mOperation, mCalendarMetrics, mFrom, mTo, mValues, mResult, mStart, middle),
+                        new RangeTask(mOperation, mCalendarMetrics, mFrom, mTo, mValues, mResult, middle, mEnd));
+                return;
+            }
+
+            switch (mOperation)
+            {
+                case OPERATION_TO_INSTANCES:
+                    toInstances(mCalendarMetrics, new OffsetCursor(mFrom), mValues, mResult, mStart, mEnd);
+                    break;
+                case OPERATION_TO_TIMESTAMPS:
+                    toTimestamps(mCalendarMetrics, new OffsetCursor(mFrom), mValues, mResult, mStart, mEnd);
+                    break;
+                case OPERATION_SHIFT:
+                    shift(mCalendarMetrics, new OffsetCursor(mFrom), new OffsetCursor(mTo), mValues, mResult, mStart, mEnd);
+                    break;
+                default:
+                    swap(new OffsetCursor(mFrom), new OffsetCursor(mTo), mValues, mResult, mStart, mEnd);
+            }
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.TimeZone;
  */
 public abstract class CalendarMetrics
 {
+    private final static long MILLIS_PER_DAY = 24L * 3600L * 1000L;
 
     /**
      * The first day of the week.
@@ -363,6 +364,30 @@ public abstract class CalendarMetrics
     }
 
 
+    /**
+     * Get the week numbers of the given instances. This is equivalent to calling {@link #getWeekOfYear(int, int, int)} for each instance, but may be faster
+     * for large arrays.
+     *
+     * @param instances
+     *         The instances.
+     * @param result
+     *         The array to store the week numbers in, must not be shorter than <code>instances</code>.
+     */
+    public void getWeekOfYear(long[] instances, int[] result)
+    {
+        if (result.length < instances.length)
+        {
+            throw new IllegalArgumentException("result array is too short");
+        }
+
+        for (int i = 0, count = instances.length; i < count; ++i)
+        {
+            long instance = instances[i];
+            result[i] = getWeekOfYear(Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance));
+        }
+    }
+
+
     /**
      * Get the ISO week number of the given date.
      * <p>
@@ -501,7 +526,8 @@ public abstract class CalendarMetrics
 
 
     /**
-     * Convert the given (local) date to milliseconds since the epoch using the given {@link TimeZone}.
+     * Convert the given (local) date to milliseconds since the epoch using the given {@link TimeZone}. Local times that fall into a gap or an overlap of the
+     * time zone are resolved using {@link TransitionPolicy#LATER}.
      *
      * @param timeZone
      *         The time zone or <code>null</code> for floating dates (and all-day dates).
@@ -524,6 +550,41 @@ public abstract class CalendarMetrics
      */
     public abstract long toMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis);
 
+
+    /**
+     * Convert the given (local) date to milliseconds since the epoch using the given {@link TimeZone}, resolving local times that fall into a gap or an
+     * overlap of the time zone with the given {@link TransitionPolicy}. {@link #toMillis(TimeZone, int, int, int, int, int, int, int)} uses {@link
+     * TransitionPolicy#LATER}.
+     *
+     * @param timeZone
+     *         The time zone or <code>null</code> for floating dates (and all-day dates).
+     * @param year
+     *         The year.
+     * @param packedMonth
+     *         The packed month.
+     * @param dayOfMonth
+     *         The day of the month.
+     * @param hours
+     *         The hour of the day.
+     * @param minutes
+     *         The minutes.
+     * @param seconds
+     *         The seconds.
+     * @param millis
+     *         The milliseconds.
+     * @param policy
+     *         The {@link TransitionPolicy}.
+     *
+     * @return The milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException
+     *         if the policy is {@link TransitionPolicy#REJECT} and the local time falls into a gap or an overlap.
+     */
+    public long toMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis, TransitionPolicy policy)
+    {
+        return LocalTimeResolver.toTimestamp(timeZone, toMillis(null, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis), policy);
+    }
+
     /**
      * Converts a timestamp to an instance in the given {@link TimeZone}.
      *
@@ -537,6 +598,39 @@ public abstract class CalendarMetrics
     public abstract long toInstance(long timestamp, TimeZone timeZone);
 
 
+    /**
+     * Returns the number of days between 1970-01-01 (Gregorian) and the date of the given instance. The epoch day doesn't depend on the calendar scale, so
+     * it can be used to convert dates between calendar scales (see {@link CalendarScaleConverter}). The time of the instance is ignored.
+     * <p>
+     * The default implementation converts the date to a floating timestamp. Subclasses should override this with a direct calculation.
+     *
+     * @param instance
+     *         The instance.
+     *
+     * @return The epoch day of the instance.
+     */
+    public long toEpochDay(long instance)
+    {
+        return Math.floorDiv(toMillis(null, Instance.year(instance), Instance.month(instance), Instance.dayOfMonth(instance), 0, 0, 0, 0), MILLIS_PER_DAY);
+    }
+
+
+    /**
+     * Returns the instance of the given number of days since 1970-01-01 (Gregorian). The time of the result is 00:00:00.
+     * <p>
+     * The default implementation converts the floating timestamp of the day. Subclasses should override this with a direct calculation.
+     *
+     * @param epochDay
+     *         The number of days since 1970-01-01.
+     *
+     * @return The instance of that day in this calendar scale.
+     */
+    public long fromEpochDay(long epochDay)
+    {
+        return toInstance(epochDay * MILLIS_PER_DAY, null);
+    }
+
+
     /**
      * Validates the given instance.
      * <p>
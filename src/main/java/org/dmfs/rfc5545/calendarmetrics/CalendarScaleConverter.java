@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.Instance;
+
+
+/**
+ * Converts packed instances from one calendar scale to another one.
+ * <p>
+ * The date is converted via its epoch day (see {@link CalendarMetrics#toEpochDay(long)}), the time of the day is taken over as it is. In contrast to {@link
+ * org.dmfs.rfc5545.DateTime#DateTime(CalendarMetrics, org.dmfs.rfc5545.DateTime)} this doesn't calculate any timestamps and doesn't need a time zone, so
+ * it's suitable for all-day and floating values only. Like {@link CalendarMetrics#toInstance(long, java.util.TimeZone)} the results don't contain a day of
+ * the week.
+ *
+ * @author Marten Gajda
+ */
+public final class CalendarScaleConverter
+{
+    private final CalendarMetrics mFrom;
+    private final CalendarMetrics mTo;
+    private final boolean mSameScale;
+
+
+    /**
+     * Creates a {@link CalendarScaleConverter} that converts instances between the given calendar scales.
+     *
+     * @param from
+     *         The {@link CalendarMetrics} of the instances to convert.
+     * @param to
+     *         The {@link CalendarMetrics} of the results.
+     */
+    public CalendarScaleConverter(CalendarMetrics from, CalendarMetrics to)
+    {
+        mFrom = from;
+        mTo = to;
+        mSameScale = from.scaleEquals(to);
+    }
+
+
+    /**
+     * Converts a single instance.
+     *
+     * @param instance
+     *         An instance in the source calendar scale.
+     *
+     * @return The same date and time in the target calendar scale.
+     */
+    public long convert(long instance)
+    {
+        if (mSameScale)
+        {
+            return Instance.maskWeekday(instance);
+        }
+        return withTime(mTo.fromEpochDay(mFrom.toEpochDay(instance)), instance);
+    }
+
+
+    /**
+     * Converts all instances of the given array. See {@link #convert(long[], int, long[], int, int)}.
+     *
+     * @param instances
+     *         The instances in the source calendar scale.
+     * @param result
+     *         The array to store the results in. Must be at least as long as the instances array, it may be the same array.
+     */
+    public void convert(long[] instances, long[] result)
+    {
+        if (result.length < instances.length)
+        {
+            throw new IllegalArgumentException("result array is too short");
+        }
+        convert(instances, 0, result, 0, instances.length);
+    }
+
+
+    /**
+     * Converts a range of instances. Consecutive days, like the days of a month view, are converted by advancing the previous result by one day, which is
+     * much cheaper than a full conversion.
+     *
+     * @param instances
+     *         The instances in the source calendar scale.
+     * @param offset
+     *         The position of the first instance to convert.
+     * @param result
+     *         The array to store the results in, may be the same array.
+     * @param resultOffset
+     *         The position of the first result.
+     * @param count
+     *         The number of instances to convert.
+     */
+    public void convert(long[] instances, int offset, long[] result, int resultOffset, int count)
+    {
+        if (offset < 0 || resultOffset < 0 || count < 0 || offset + count > instances.length || resultOffset + count > result.length)
+        {
+            throw new ArrayIndexOutOfBoundsException("range exceeds array bounds");
+        }
+
+        if (mSameScale)
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                result[resultOffset + i] = Instance.maskWeekday(instances[offset + i]);
+            }
+            return;
+        }
+
+        long previousEpochDay = Long.MIN_VALUE;
+        long previousDate = 0;
+        for (int i = 0; i < count; ++i)
+        {
+            long instance = instances[offset + i];
+            long epochDay = mFrom.toEpochDay(instance);
+            long date;
+            if (epochDay == previousEpochDay)
+            {
+                date = previousDate;
+            }
+            else if (epochDay == previousEpochDay + 1)
+            {
+                date = mTo.nextDay(previousDate);
+            }
+            else
+            {
+                date = mTo.fromEpochDay(epochDay);
+            }
+            result[resultOffset + i] = withTime(date, instance);
+            previousEpochDay = epochDay;
+            previousDate = date;
+        }
+    }
+
+
+    /**
+     * Returns the given date with the time of the given instance.
+     */
+    private static long withTime(long date, long instance)
+    {
+        return Instance.make(Instance.year(date), Instance.month(date), Instance.dayOfMonth(date), Instance.hour(instance), Instance.minute(instance),
+                Instance.second(instance));
+    }
+}
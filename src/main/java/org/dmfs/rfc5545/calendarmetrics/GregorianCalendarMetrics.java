@@ -18,9 +18,12 @@
 package org.dmfs.rfc5545.calendarmetrics;
 
 import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Instrumentation;
 import org.dmfs.rfc5545.Weekday;
 
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 
 /**
@@ -63,6 +66,25 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
      * <code>YEARDAYS_PER_MONTH[i]</code> for all <code>i > 1<code>.
      */
     private final static int[] YEARDAYS_PER_MONTH = { 0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334 };
+    /**
+     * The first year covered by the week tables.
+     */
+    private final static int WEEK_TABLE_FIRST_YEAR = 1900;
+    /**
+     * The number of years covered by the week tables.
+     */
+    private final static int WEEK_TABLE_YEARS = 300;
+    /**
+     * The week tables by calendar scale class, indexed by week start and minimal days in first week. Week tables only depend on these values, so they are
+     * shared by all instances with the same week definition.
+     */
+    private final static ConcurrentHashMap<Class<?>, AtomicReferenceArray<WeekTable>> WEEK_TABLES =
+            new ConcurrentHashMap<Class<?>, AtomicReferenceArray<WeekTable>>();
+
+    /**
+     * The {@link WeekTable} of this instance, initialized lazily.
+     */
+    private WeekTable mWeekTable;
 
 
     /**
@@ -159,18 +181,34 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
     @Override
     public int getWeeksPerYear(int year)
     {
-        int yd1st = getYearDayOfFirstWeekStart(year);
-        int yearDays = getDaysPerYear(year) - yd1st + 1;
-        int fullweeks = yearDays / 7;
-        int remainingDays = yearDays % 7;
-
-        return 7 - remainingDays >= minDaysInFirstWeek ? fullweeks : fullweeks + 1;
+        WeekTable table = weekTable();
+        int index = year - WEEK_TABLE_FIRST_YEAR;
+        if (table != null && index >= 0 && index < WEEK_TABLE_YEARS)
+        {
+            return table.mWeeksPerYear[index];
+        }
+        return computeWeeksPerYear(year);
     }
 
 
     @Override
     public int getWeekOfYear(int year, int yearDay)
     {
+        WeekTable table = weekTable();
+        int index = year - WEEK_TABLE_FIRST_YEAR;
+        if (table != null && index > 0 && index < WEEK_TABLE_YEARS)
+        {
+            int yd1st = table.mFirstWeekStarts[index];
+            if (yearDay < yd1st)
+            {
+                // day must be in the last week of the previous year
+                return table.mWeeksPerYear[index - 1];
+            }
+            int week = (yearDay - yd1st) / 7 + 1;
+            int weeksInYear = table.mWeeksPerYear[index];
+            return week > weeksInYear ? week - weeksInYear : week;
+        }
+
         int yd1st = getYearDayOfFirstWeekStart(year);
 
         if (yearDay < yd1st)
@@ -189,6 +227,51 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
     }
 
 
+    @Override
+    public void getWeekOfYear(long[] instances, int[] result)
+    {
+        if (result.length < instances.length)
+        {
+            throw new IllegalArgumentException("result array is too short");
+        }
+
+        WeekTable table = weekTable();
+        if (table == null)
+        {
+            super.getWeekOfYear(instances, result);
+            return;
+        }
+
+        byte[] firstWeekStarts = table.mFirstWeekStarts;
+        byte[] weeksPerYear = table.mWeeksPerYear;
+        for (int i = 0, count = instances.length; i < count; ++i)
+        {
+            long instance = instances[i];
+            int year = Instance.year(instance);
+            int yearDay = getDayOfYear(year, Instance.month(instance), Instance.dayOfMonth(instance));
+            int index = year - WEEK_TABLE_FIRST_YEAR;
+            if (index > 0 && index < WEEK_TABLE_YEARS)
+            {
+                int yd1st = firstWeekStarts[index];
+                if (yearDay < yd1st)
+                {
+                    result[i] = weeksPerYear[index - 1];
+                }
+                else
+                {
+                    int week = (yearDay - yd1st) / 7 + 1;
+                    int weeksInYear = weeksPerYear[index];
+                    result[i] = week > weeksInYear ? week - weeksInYear : week;
+                }
+            }
+            else
+            {
+                result[i] = getWeekOfYear(year, yearDay);
+            }
+        }
+    }
+
+
     @Override
     public int getDayOfYear(int year, int packedMonth, int dayOfMonth)
     {
@@ -221,6 +304,18 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
 
     @Override
     public int getYearDayOfFirstWeekStart(int year)
+    {
+        WeekTable table = weekTable();
+        int index = year - WEEK_TABLE_FIRST_YEAR;
+        if (table != null && index >= 0 && index < WEEK_TABLE_YEARS)
+        {
+            return table.mFirstWeekStarts[index];
+        }
+        return computeYearDayOfFirstWeekStart(year);
+    }
+
+
+    private int computeYearDayOfFirstWeekStart(int year)
     {
         int jan1stWeekDay = getWeekDayOfFirstYearDay(year);
 
@@ -232,6 +327,54 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
     }
 
 
+    private int computeWeeksPerYear(int year)
+    {
+        int yd1st = computeYearDayOfFirstWeekStart(year);
+        int yearDays = getDaysPerYear(year) - yd1st + 1;
+        int fullweeks = yearDays / 7;
+        int remainingDays = yearDays % 7;
+
+        return 7 - remainingDays >= minDaysInFirstWeek ? fullweeks : fullweeks + 1;
+    }
+
+
+    /**
+     * Returns the {@link WeekTable} of this calendar scale and week definition or <code>null</code> if there is none.
+     */
+    private WeekTable weekTable()
+    {
+        WeekTable table = mWeekTable;
+        if (table == null)
+        {
+            if (minDaysInFirstWeek < 1 || minDaysInFirstWeek > 7)
+            {
+                return null;
+            }
+
+            AtomicReferenceArray<WeekTable> tables = WEEK_TABLES.get(getClass());
+            if (tables == null)
+            {
+                AtomicReferenceArray<WeekTable> newTables = new AtomicReferenceArray<WeekTable>(7 * 7);
+                tables = WEEK_TABLES.putIfAbsent(getClass(), newTables);
+                if (tables == null)
+                {
+                    tables = newTables;
+                }
+            }
+
+            int key = weekStartInt * 7 + minDaysInFirstWeek - 1;
+            table = tables.get(key);
+            if (table == null)
+            {
+                tables.compareAndSet(key, null, new WeekTable(this));
+                table = tables.get(key);
+            }
+            mWeekTable = table;
+        }
+        return table;
+    }
+
+
     @Override
     public int getPackedMonthOfYearDay(int year, int yearDay)
     {
@@ -310,48 +453,25 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
     @Override
     public long toMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis)
     {
-        int timeInMillis = ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
-        int dayOfWeek = getDayOfWeek(year, packedMonth, dayOfMonth);
-
-        int dstOffset = timeZone == null ? 0 : (timeZone.getOffset(1 /* GregorianCalendar.AD */, year, packedMonth, dayOfMonth,
-                dayOfWeek + 1/* Calendar uses 1-7 */, timeInMillis) - timeZone.getRawOffset());
-
-        int yearDay = getDayOfYear(year, packedMonth, dayOfMonth);
-        long localTime = getTimeStamp(year, yearDay, hours, minutes, seconds, millis);
-
-        timeInMillis -= dstOffset;
-        if (timeInMillis < 0)
+        if (Instrumentation.ENABLED)
         {
-            timeInMillis += 24 * 60 * 60 * 1000;
-            if (--dayOfMonth == 0)
-            {
-                if (--packedMonth < 0)
-                {
-                    --year;
-                    packedMonth = getMonthsPerYear(year) - 1;
-                }
-                dayOfMonth = getDaysPerPackedMonth(year, packedMonth);
-                dayOfWeek = (dayOfWeek + 6) % 7;
-            }
-        }
-        else if (timeInMillis >= 24 * 60 * 60 * 1000)
-        {
-            timeInMillis -= 24 * 60 * 60 * 1000;
-            if (++dayOfMonth > getDaysPerPackedMonth(year, packedMonth))
-            {
-                if (++packedMonth >= getMonthsPerYear(year))
-                {
-                    ++year;
-                    packedMonth = 0;
-                }
-                dayOfMonth = 1;
-                dayOfWeek = (dayOfWeek + 1) % 7;
-            }
+            long start = System.nanoTime();
+            long result = uninstrumentedToMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+            Instrumentation.record(Instrumentation.Operation.TO_MILLIS, this, timeZone, start);
+            return result;
         }
+        return uninstrumentedToMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+    }
 
-        int offset2 = timeZone == null ? 0 : timeZone.getOffset(1 /* GregorianCalendar.AD */, year, packedMonth, dayOfMonth, dayOfWeek + 1, timeInMillis);
 
-        return localTime - offset2;
+    /**
+     * Same as {@link #toMillis(TimeZone, int, int, int, int, int, int, int)}, but without instrumentation. Calendar scales that delegate the conversion to the
+     * Gregorian calendar call this, so the conversion is not recorded twice.
+     */
+    final long uninstrumentedToMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis)
+    {
+        long localTime = getTimeStamp(year, getDayOfYear(year, packedMonth, dayOfMonth), hours, minutes, seconds, millis);
+        return LocalTimeResolver.toTimestamp(timeZone, localTime, TransitionPolicy.LATER);
     }
 
 
@@ -379,6 +499,23 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
 
     @Override
     public long toInstance(long timestamp, TimeZone timeZone)
+    {
+        if (Instrumentation.ENABLED)
+        {
+            long start = System.nanoTime();
+            long result = uninstrumentedToInstance(timestamp, timeZone);
+            Instrumentation.record(Instrumentation.Operation.TO_INSTANCE, this, timeZone, start);
+            return result;
+        }
+        return uninstrumentedToInstance(timestamp, timeZone);
+    }
+
+
+    /**
+     * Same as {@link #toInstance(long, TimeZone)}, but without instrumentation. Calendar scales that delegate the conversion to the Gregorian calendar call
+     * this, so the conversion is not recorded twice.
+     */
+    final long uninstrumentedToInstance(long timestamp, TimeZone timeZone)
     {
         long localTime = timestamp;
         if (timeZone != null)
@@ -399,8 +536,39 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
             localTime -= 24 * 3600 * 1000;
         }
 
+        return gregorianInstance(localTime / (24 * 3600 * 1000L), time);
+    }
+
+
+    @Override
+    public long toEpochDay(long instance)
+    {
+        int year = Instance.year(instance);
+        return (year - 1970) * 365L + getDayOfYear(year, Instance.month(instance), Instance.dayOfMonth(instance)) - 1 + numLeapDaysSince1970(year);
+    }
+
+
+    @Override
+    public long fromEpochDay(long epochDay)
+    {
+        return gregorianInstance(epochDay, 0);
+    }
+
+
+    /**
+     * Returns the Gregorian instance of the given epoch day and time of the day.
+     *
+     * @param epochDay
+     *         The number of days since 1970-01-01.
+     * @param time
+     *         The time of the day in milliseconds.
+     *
+     * @return The instance.
+     */
+    private long gregorianInstance(long epochDay, int time)
+    {
         // the number of days that have passed since 0001-01-01
-        final int daysSince1 = (int) (localTime / (24 * 3600 * 1000L) + 365 * 1969 + 477);
+        final int daysSince1 = (int) (epochDay + 365 * 1969 + 477);
 
         // the number of full 400 year cycles and the remaining days
         final int c400 = daysSince1 / (400 * 365 + 97);
@@ -426,4 +594,24 @@ public class GregorianCalendarMetrics extends NoLeapMonthCalendarMetrics
 
         return Instance.make(year, packedMonth(monthAndDay), dayOfMonth(monthAndDay), minutes / 60, minutes % 60, time / 1000 % 60);
     }
+
+
+    /**
+     * The start of the first week and the number of weeks of each year in the range covered by the week tables.
+     */
+    private final static class WeekTable
+    {
+        private final byte[] mFirstWeekStarts = new byte[WEEK_TABLE_YEARS];
+        private final byte[] mWeeksPerYear = new byte[WEEK_TABLE_YEARS];
+
+
+        WeekTable(GregorianCalendarMetrics calendarMetrics)
+        {
+            for (int i = 0; i < WEEK_TABLE_YEARS; ++i)
+            {
+                mFirstWeekStarts[i] = (byte) calendarMetrics.computeYearDayOfFirstWeekStart(WEEK_TABLE_FIRST_YEAR + i);
+                mWeeksPerYear[i] = (byte) calendarMetrics.computeWeeksPerYear(WEEK_TABLE_FIRST_YEAR + i);
+            }
+        }
+    }
 }
@@ -18,6 +18,7 @@
 package org.dmfs.rfc5545.calendarmetrics;
 
 import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Instrumentation;
 import org.dmfs.rfc5545.Weekday;
 
 import java.util.TimeZone;
@@ -41,6 +42,7 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
      */
     public final static long MILLIS_TO_1389_10_22C = ((1389 - 1) / 30 * DAYS_PER_CYCLE + (1389 - 1) % 30 * 354 + 3 /* leap days */ + 5 /* months à 30 days */
             * 30 + 4 /* months à 29 days */ * 29 + 21 /* days */) * MILLIS_PER_DAY;
+    private final static long DAYS_TO_1389_10_22C = MILLIS_TO_1389_10_22C / MILLIS_PER_DAY;
     public final static String CALENDAR_SCALE_TLBA = "ISLAMIC-TLBA";
     public final static String CALENDAR_SCALE_CIVIL = "ISLAMIC-CIVIL";
     /**
@@ -63,7 +65,7 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
      * An array of {@link Weekday}s. This is handy to get a {@link Weekday} instance for a given weekday number.
      */
     public final static Weekday[] WEEKDAYS = Weekday.values();
-    private final static CalendarMetrics GREGORIAN_METRICS = GregorianCalendarMetrics.FACTORY.getCalendarMetrics(Weekday.SU);
+    private final static GregorianCalendarMetrics GREGORIAN_METRICS = new GregorianCalendarMetrics(GregorianCalendarMetrics.CALENDAR_SCALE_ALIAS, Weekday.SU, 4);
     private final int mLeapYearPatternIndex;
     private final boolean mCivil;
 
@@ -286,6 +288,8 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
     @Override
     public long toMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis)
     {
+        long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
+
         /*
          * We can't to this conversion in Islamic scale, because the TimeZone class works with Gregorian calendars only. So convert the Islamic date to
          * Gregorian first.
@@ -297,13 +301,20 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
         packedMonth = Instance.month(gregorianDate);
         dayOfMonth = Instance.dayOfMonth(gregorianDate);
 
-        return GREGORIAN_METRICS.toMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+        long result = GREGORIAN_METRICS.uninstrumentedToMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+        if (Instrumentation.ENABLED)
+        {
+            Instrumentation.record(Instrumentation.Operation.TO_MILLIS, this, timeZone, start);
+        }
+        return result;
     }
 
 
     @Override
     public long toInstance(long timestamp, TimeZone timeZone)
     {
+        long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
+
         long localTime = timestamp;
         if (timeZone != null)
         {
@@ -326,11 +337,51 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
             --localTime;
         }
 
+        long result = islamicInstance(localTime, time);
+        if (Instrumentation.ENABLED)
+        {
+            Instrumentation.record(Instrumentation.Operation.TO_INSTANCE, this, timeZone, start);
+        }
+        return result;
+    }
+
+
+    @Override
+    public long toEpochDay(long instance)
+    {
+        int iYear = Instance.year(instance);
+        int yearInCycle = (iYear - 1) % 30;
+
+        long daysSince1 = ((iYear - 1L) / 30) * DAYS_PER_CYCLE + (354L * yearInCycle + LEAP_YEAR_COUNT[mLeapYearPatternIndex][yearInCycle]) + getDayOfYear(
+                iYear, Instance.month(instance), Instance.dayOfMonth(instance)) - 1;
+        return mCivil ? daysSince1 - DAYS_TO_1389_10_22C : daysSince1 - DAYS_TO_1389_10_22C - 1;
+    }
+
+
+    @Override
+    public long fromEpochDay(long epochDay)
+    {
+        return islamicInstance(mCivil ? epochDay + DAYS_TO_1389_10_22C : epochDay + DAYS_TO_1389_10_22C + 1, 0);
+    }
+
+
+    /**
+     * Returns the Islamic instance of the given day and time of the day.
+     *
+     * @param daysSince1
+     *         The number of days since 0001-01-01 (Islamic).
+     * @param time
+     *         The time of the day in milliseconds.
+     *
+     * @return The instance.
+     */
+    private long islamicInstance(long daysSince1, int time)
+    {
         // the number of full 30 year cycles since 0001-01-01
-        final int cycles = (int) (localTime / DAYS_PER_CYCLE);
+        final int cycles = (int) (daysSince1 / DAYS_PER_CYCLE);
 
         // the days in the current cycle
-        final long daysInCycle = localTime % DAYS_PER_CYCLE;
+        final long daysInCycle = daysSince1 % DAYS_PER_CYCLE;
 
         // get an estimate of the year, this is 0-based and might be off by 1
         int year = (int) (daysInCycle / 355);
@@ -356,6 +407,27 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
     }
 
 
+    /**
+     * Two {@link IslamicCalendarMetrics} equal if the week definition, the leap year pattern and the epoch (civil or astronomical) match.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        return super.equals(obj) && scaleEquals((CalendarMetrics) obj);
+    }
+
+
+    /**
+     * Two {@link IslamicCalendarMetrics} use the same calendar scale if the leap year pattern and the epoch (civil or astronomical) match.
+     */
+    @Override
+    public boolean scaleEquals(CalendarMetrics obj)
+    {
+        return super.scaleEquals(obj) && mLeapYearPatternIndex == ((IslamicCalendarMetrics) obj).mLeapYearPatternIndex
+                && mCivil == ((IslamicCalendarMetrics) obj).mCivil;
+    }
+
+
     /**
      * Convert the given Islamic instance to Gregorian calendar.
      *
@@ -366,19 +438,8 @@ public class IslamicCalendarMetrics extends NoLeapMonthCalendarMetrics
      */
     public long toGregorian(long islamicInstance)
     {
-        int iYear = Instance.year(islamicInstance);
-        int iPackedMonth = Instance.month(islamicInstance);
-        int iDayOfMonth = Instance.dayOfMonth(islamicInstance);
-
-        int yearInCycle = (iYear - 1) % 30;
-
-        long iTimeStamp = ((((iYear - 1L) / 30) * DAYS_PER_CYCLE + (354L * yearInCycle + LEAP_YEAR_COUNT[mLeapYearPatternIndex][yearInCycle]))
-                + getDayOfYear(iYear, iPackedMonth, iDayOfMonth) - 1) * 24L * 3600L * 1000L;
-
-        long localTime = mCivil ? iTimeStamp - MILLIS_TO_1389_10_22C : iTimeStamp - MILLIS_TO_1389_10_22C - MILLIS_PER_DAY;
-
         // convert the "floating" timestamp to a Gregorian calendar instance
-        return GREGORIAN_METRICS.toInstance(localTime, null);
+        return GREGORIAN_METRICS.uninstrumentedToInstance(toEpochDay(islamicInstance) * MILLIS_PER_DAY, null);
     }
 
 
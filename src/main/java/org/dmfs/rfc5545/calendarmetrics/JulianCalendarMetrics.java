@@ -18,6 +18,7 @@
 package org.dmfs.rfc5545.calendarmetrics;
 
 import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Instrumentation;
 import org.dmfs.rfc5545.Weekday;
 
 import java.util.TimeZone;
@@ -54,7 +55,11 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
     };
     public final static String CALENDAR_SCALE_NAME = "JULIUS";
 
-    private GregorianCalendarMetrics mGregorianCalendarMetrics;
+    /**
+     * The {@link GregorianCalendarMetrics} used to calculate timestamps. This is created eagerly and final, so instances can be shared among threads without
+     * any further synchronization.
+     */
+    private final GregorianCalendarMetrics mGregorianCalendarMetrics;
 
 
     /**
@@ -67,7 +72,7 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
      */
     public JulianCalendarMetrics(Weekday weekStart, int minDaysInFirstWeek)
     {
-        super(CALENDAR_SCALE_ALIAS, weekStart, minDaysInFirstWeek);
+        this(CALENDAR_SCALE_ALIAS, weekStart, minDaysInFirstWeek);
     }
 
 
@@ -82,6 +87,7 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
     JulianCalendarMetrics(String name, Weekday weekStart, int minDaysInFirstWeek)
     {
         super(name, weekStart, minDaysInFirstWeek);
+        mGregorianCalendarMetrics = new GregorianCalendarMetrics(GregorianCalendarMetrics.CALENDAR_SCALE_ALIAS, weekStart, minDaysInFirstWeek);
     }
 
 
@@ -121,6 +127,8 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
     @Override
     public long toMillis(TimeZone timeZone, int year, int packedMonth, int dayOfMonth, int hours, int minutes, int seconds, int millis)
     {
+        long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
+
         // convert to Gregorian calendar and use that to convert the date
 
         if (packedMonth > 1)
@@ -139,11 +147,6 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
         }
 
         GregorianCalendarMetrics gregorianMetrics = mGregorianCalendarMetrics;
-        if (gregorianMetrics == null)
-        {
-            gregorianMetrics = mGregorianCalendarMetrics = new GregorianCalendarMetrics(GregorianCalendarMetrics.CALENDAR_SCALE_ALIAS, weekStart,
-                    minDaysInFirstWeek);
-        }
 
         // adjust day of month over- or under-run
 
@@ -168,7 +171,12 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
             dayOfMonth += gregorianMetrics.getDaysPerPackedMonth(year, packedMonth);
         }
 
-        return gregorianMetrics.toMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+        long result = gregorianMetrics.uninstrumentedToMillis(timeZone, year, packedMonth, dayOfMonth, hours, minutes, seconds, millis);
+        if (Instrumentation.ENABLED)
+        {
+            Instrumentation.record(Instrumentation.Operation.TO_MILLIS, this, timeZone, start);
+        }
+        return result;
     }
 
 
@@ -196,6 +204,8 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
     @Override
     public long toInstance(long timestamp, TimeZone timeZone)
     {
+        long start = Instrumentation.ENABLED ? System.nanoTime() : 0;
+
         long localTime = timestamp;
         if (timeZone != null)
         {
@@ -215,8 +225,44 @@ public class JulianCalendarMetrics extends GregorianCalendarMetrics
             localTime -= 24 * 3600 * 1000;
         }
 
+        long result = julianInstance(localTime / (24 * 3600000L), time);
+        if (Instrumentation.ENABLED)
+        {
+            Instrumentation.record(Instrumentation.Operation.TO_INSTANCE, this, timeZone, start);
+        }
+        return result;
+    }
+
+
+    @Override
+    public long toEpochDay(long instance)
+    {
+        // 1970-01-01 refers to the Gregorian calendar, which is 13 days ahead on that date
+        return super.toEpochDay(instance) + 13;
+    }
+
+
+    @Override
+    public long fromEpochDay(long epochDay)
+    {
+        return julianInstance(epochDay, 0);
+    }
+
+
+    /**
+     * Returns the Julian instance of the given epoch day and time of the day.
+     *
+     * @param epochDay
+     *         The number of days since 1970-01-01 (Gregorian).
+     * @param time
+     *         The time of the day in milliseconds.
+     *
+     * @return The instance.
+     */
+    private long julianInstance(long epochDay, int time)
+    {
         // the number of days that have passed since 0001-01-01
-        final int daysSince1 = (int) (localTime / (24 * 3600000L) + 365 * 1969 + 492 - 13 /*
+        final int daysSince1 = (int) (epochDay + 365 * 1969 + 492 - 13 /*
          * account for the difference between Julian and Gregorian calendar on
          * 1970-01-01
          */);
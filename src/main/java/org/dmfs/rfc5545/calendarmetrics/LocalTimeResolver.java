@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Converts local times to absolute times, resolving local times in gaps and overlaps according to a {@link TransitionPolicy}.
+ * <p>
+ * For each {@link TimeZone} a table of all transitions in local time is built once (from 1900 up to the year 2100). Resolving a local time takes a single
+ * binary search in that table. {@link TimeZone}s with custom rules, local times outside of the table and zones that don't fit into the cache anymore are
+ * resolved by asking the {@link TimeZone} for the offsets around the local time.
+ * <p>
+ * The same tables provide the periods of constant offset of a zone (see {@link #offset(TimeZone, long, long[])}), which allows batch operations to convert
+ * many timestamps without asking the {@link TimeZone} for each of them.
+ *
+ * @author Marten Gajda
+ */
+public final class LocalTimeResolver
+{
+    /**
+     * The maximum number of cached transition tables.
+     */
+    private final static int MAX_SIZE = 1024;
+
+    /**
+     * The end of the transition tables (2100-01-01T00:00:00Z).
+     */
+    private final static long TABLE_END = 4102444800000L;
+
+    private final static long ONE_DAY = 24 * 3600 * 1000L;
+
+    /**
+     * The start of the transition tables (1900-01-02T00:00:00Z). {@link TimeZone} doesn't know about the transitions before 1900, so the tables ignore them.
+     * Local times before the start of a table (plus one day) are resolved by asking the {@link TimeZone}.
+     */
+    private final static long TABLE_START = -2208988800000L + ONE_DAY;
+
+    /**
+     * The transition tables. The keys are clones, because {@link TimeZone}s are mutable.
+     */
+    private final static ConcurrentHashMap<TimeZone, Transitions> TRANSITIONS = new ConcurrentHashMap<TimeZone, Transitions>();
+
+    /**
+     * The marker for zones that can't use a transition table.
+     */
+    private final static Transitions NO_TRANSITIONS = new Transitions(0, new long[0], new long[0], new int[0], new int[0], Long.MAX_VALUE, Long.MIN_VALUE,
+            Long.MIN_VALUE);
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private LocalTimeResolver()
+    {
+    }
+
+
+    /**
+     * Returns the absolute time of the given local time in the given {@link TimeZone}.
+     *
+     * @param timeZone
+     *         The {@link TimeZone} or <code>null</code> for floating times.
+     * @param localTime
+     *         The local time in milliseconds since the epoch (i.e. the timestamp the local time would have in UTC).
+     * @param policy
+     *         The {@link TransitionPolicy} for local times in gaps or overlaps.
+     *
+     * @return The time in milliseconds since the epoch.
+     *
+     * @throws IllegalArgumentException
+     *         if the policy is {@link TransitionPolicy#REJECT} and the local time falls into a gap or an overlap.
+     */
+    public static long toTimestamp(TimeZone timeZone, long localTime, TransitionPolicy policy)
+    {
+        if (timeZone == null)
+        {
+            return localTime;
+        }
+
+        Transitions transitions = transitions(timeZone);
+        if (localTime >= transitions.mStart && localTime < transitions.mEnd)
+        {
+            return transitions.toTimestamp(timeZone, localTime, policy);
+        }
+
+        // determine the offsets before and after the local time, at instants safely before and after all candidates
+        int offsetBefore = timeZone.getOffset(localTime - ONE_DAY);
+        int offsetAfter = timeZone.getOffset(localTime + ONE_DAY);
+
+        if (offsetBefore == offsetAfter)
+        {
+            return localTime - offsetBefore;
+        }
+
+        boolean validBefore = timeZone.getOffset(localTime - offsetBefore) == offsetBefore;
+        boolean validAfter = timeZone.getOffset(localTime - offsetAfter) == offsetAfter;
+        if (validBefore != validAfter)
+        {
+            return localTime - (validBefore ? offsetBefore : offsetAfter);
+        }
+
+        // both candidates are valid (overlap) or none is (gap)
+        return resolve(timeZone, localTime, offsetBefore, offsetAfter, policy);
+    }
+
+
+    /**
+     * Returns the offset of the given {@link TimeZone} at the given timestamp and the period around the timestamp in which the offset doesn't change.
+     * <p>
+     * The period is taken from the transition table of the zone. If the zone has no table or the timestamp is not covered by it, the period only contains
+     * the given timestamp.
+     *
+     * @param timeZone
+     *         The {@link TimeZone}.
+     * @param timestamp
+     *         The time in milliseconds since the epoch.
+     * @param period
+     *         An array of at least two elements that receives the first timestamp of the period and the first timestamp after the period.
+     *
+     * @return The offset in milliseconds.
+     */
+    public static int offset(TimeZone timeZone, long timestamp, long[] period)
+    {
+        Transitions transitions = transitions(timeZone);
+        if (timestamp >= TABLE_START && timestamp < transitions.mTimestampEnd)
+        {
+            return transitions.offset(timestamp, period);
+        }
+        period[0] = timestamp;
+        period[1] = timestamp + 1;
+        return timeZone.getOffset(timestamp);
+    }
+
+
+    private static long resolve(TimeZone timeZone, long localTime, int offsetBefore, int offsetAfter, TransitionPolicy policy)
+    {
+        switch (policy)
+        {
+            case EARLIER:
+                return localTime - Math.max(offsetBefore, offsetAfter);
+            case LATER:
+                return localTime - Math.min(offsetBefore, offsetAfter);
+            default:
+                throw new IllegalArgumentException(
+                        String.format("local time %d %s in time zone %s", localTime, offsetAfter > offsetBefore ? "doesn't exist" : "is ambiguous",
+                                timeZone.getID()));
+        }
+    }
+
+
+    private static Transitions transitions(TimeZone timeZone)
+    {
+        Transitions transitions = TRANSITIONS.get(timeZone);
+        if (transitions == null)
+        {
+            transitions = TRANSITIONS.size() < MAX_SIZE ? newTransitions(timeZone) : NO_TRANSITIONS;
+        }
+        return transitions;
+    }
+
+
+    private static Transitions newTransitions(TimeZone timeZone)
+    {
+        TimeZone clone = (TimeZone) timeZone.clone();
+        Transitions transitions = buildTransitions(clone);
+        TRANSITIONS.putIfAbsent(clone, transitions);
+        return transitions;
+    }
+
+
+    /**
+     * Builds the transition table of the given zone. Returns {@link #NO_TRANSITIONS} if the zone has custom rules or the {@link ZoneRules} don't match the
+     * {@link TimeZone}.
+     */
+    private static Transitions buildTransitions(TimeZone timeZone)
+    {
+        ZoneRules rules;
+        try
+        {
+            TimeZone systemZone = TimeZone.getTimeZone(timeZone.getID());
+            if (!systemZone.getID().equals(timeZone.getID()) || !timeZone.hasSameRules(systemZone))
+            {
+                return NO_TRANSITIONS;
+            }
+            rules = timeZone.toZoneId().getRules();
+        }
+        catch (DateTimeException e)
+        {
+            // no rules available
+            return NO_TRANSITIONS;
+        }
+
+        List<ZoneOffsetTransition> transitions = new ArrayList<ZoneOffsetTransition>();
+        for (ZoneOffsetTransition transition : rules.getTransitions())
+        {
+            if (transition.toEpochSecond() * 1000 >= TABLE_START)
+            {
+                transitions.add(transition);
+            }
+        }
+        long end = Long.MAX_VALUE;
+        long timestampEnd = Long.MAX_VALUE;
+        if (!rules.getTransitionRules().isEmpty())
+        {
+            // add the transitions of the rules up to the end of the table
+            Instant instant = transitions.isEmpty() ? Instant.ofEpochMilli(TABLE_START) : transitions.get(transitions.size() - 1).getInstant();
+            ZoneOffsetTransition next;
+            while ((next = rules.nextTransition(instant)) != null && next.toEpochSecond() * 1000 < TABLE_END)
+            {
+                transitions.add(next);
+                instant = next.getInstant();
+            }
+            // the first local time that might be affected by a transition after the table
+            end = TABLE_END - ONE_DAY;
+            timestampEnd = TABLE_END;
+        }
+
+        int count = transitions.size();
+        long[] timestamps = new long[count];
+        long[] localStarts = new long[count];
+        int[] offsetsBefore = new int[count];
+        int[] offsetsAfter = new int[count];
+        for (int i = 0; i < count; ++i)
+        {
+            ZoneOffsetTransition transition = transitions.get(i);
+            long timestamp = transition.toEpochSecond() * 1000;
+            int offsetBefore = transition.getOffsetBefore().getTotalSeconds() * 1000;
+            int offsetAfter = transition.getOffsetAfter().getTotalSeconds() * 1000;
+            if (timeZone.getOffset(timestamp - 1) != offsetBefore || timeZone.getOffset(timestamp) != offsetAfter)
+            {
+                // the TimeZone doesn't agree with the ZoneRules
+                return NO_TRANSITIONS;
+            }
+            timestamps[i] = timestamp;
+            localStarts[i] = timestamp + Math.min(offsetBefore, offsetAfter);
+            offsetsBefore[i] = offsetBefore;
+            offsetsAfter[i] = offsetAfter;
+        }
+
+        int initialOffset = count == 0 ? rules.getOffset(Instant.ofEpochMilli(TABLE_START)).getTotalSeconds() * 1000 : offsetsBefore[0];
+        if (timeZone.getOffset(TABLE_START) != initialOffset)
+        {
+            return NO_TRANSITIONS;
+        }
+        return new Transitions(initialOffset, timestamps, localStarts, offsetsBefore, offsetsAfter, TABLE_START + ONE_DAY, end, timestampEnd);
+    }
+
+
+    /**
+     * The transitions of a zone in local time.
+     */
+    private final static class Transitions
+    {
+        /**
+         * The offset before the first transition.
+         */
+        private final int mInitialOffset;
+
+        /**
+         * The timestamps of the transitions.
+         */
+        private final long[] mTimestamps;
+
+        /**
+         * The local times at which the gaps or overlaps of the transitions begin.
+         */
+        private final long[] mLocalStarts;
+
+        private final int[] mOffsetsBefore;
+
+        private final int[] mOffsetsAfter;
+
+        /**
+         * The first local time that's covered by this table.
+         */
+        private final long mStart;
+
+        /**
+         * The first local time that's not covered by this table.
+         */
+        private final long mEnd;
+
+        /**
+         * The first timestamp that's not covered by this table. The first timestamp that's covered is {@link #TABLE_START}.
+         */
+        private final long mTimestampEnd;
+
+
+        Transitions(int initialOffset, long[] timestamps, long[] localStarts, int[] offsetsBefore, int[] offsetsAfter, long start, long end,
+                    long timestampEnd)
+        {
+            mInitialOffset = initialOffset;
+            mTimestamps = timestamps;
+            mLocalStarts = localStarts;
+            mOffsetsBefore = offsetsBefore;
+            mOffsetsAfter = offsetsAfter;
+            mStart = start;
+            mEnd = end;
+            mTimestampEnd = timestampEnd;
+        }
+
+
+        int offset(long timestamp, long[] period)
+        {
+            int index = Arrays.binarySearch(mTimestamps, timestamp);
+            if (index < 0)
+            {
+                // the index of the last transition before the timestamp
+                index = -index - 2;
+            }
+            period[0] = index < 0 ? TABLE_START : mTimestamps[index];
+            period[1] = index + 1 < mTimestamps.length ? mTimestamps[index + 1] : mTimestampEnd;
+            return index < 0 ? mInitialOffset : mOffsetsAfter[index];
+        }
+
+
+        long toTimestamp(TimeZone timeZone, long localTime, TransitionPolicy policy)
+        {
+            int index = Arrays.binarySearch(mLocalStarts, localTime);
+            if (index < 0)
+            {
+                // the index of the last transition before the local time
+                index = -index - 2;
+            }
+
+            if (index < 0)
+            {
+                return localTime - mInitialOffset;
+            }
+
+            int offsetBefore = mOffsetsBefore[index];
+            int offsetAfter = mOffsetsAfter[index];
+            if (localTime >= mLocalStarts[index] + Math.abs(offsetAfter - offsetBefore))
+            {
+                return localTime - offsetAfter;
+            }
+            return resolve(timeZone, localTime, offsetBefore, offsetAfter, policy);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.Instance;
+
+
+/**
+ * Generates the days of a month view, i.e. a grid of 6 weeks with 7 days each. The first row contains the first day of the month, it starts with the first
+ * day of the week of the {@link CalendarMetrics} and the remaining cells are filled with days of the previous and the next month.
+ * <p>
+ * The grid is calculated directly from the day of the week of the first day and the lengths of the three months involved, no instances are iterated and
+ * nothing is allocated.
+ *
+ * @author Marten Gajda
+ */
+public final class MonthGrid
+{
+    /**
+     * The number of rows (weeks) of a month grid.
+     */
+    public final static int ROWS = 6;
+
+    /**
+     * The number of columns (days of the week) of a month grid.
+     */
+    public final static int COLUMNS = 7;
+
+    /**
+     * The number of cells of a month grid.
+     */
+    public final static int CELLS = ROWS * COLUMNS;
+
+    private final CalendarMetrics mCalendarMetrics;
+
+
+    /**
+     * Creates a {@link MonthGrid} for the given calendar scale and week definition.
+     *
+     * @param calendarMetrics
+     *         The {@link CalendarMetrics} of the month grids.
+     */
+    public MonthGrid(CalendarMetrics calendarMetrics)
+    {
+        mCalendarMetrics = calendarMetrics;
+    }
+
+
+    /**
+     * Fills the given arrays with the days and the week numbers of the given month. The days are stored row by row as packed all-day instances (with the day
+     * of the week set) in the first {@link #CELLS} elements of <code>cells</code>. The week number of each row is stored in <code>weekNumbers</code>.
+     *
+     * @param year
+     *         The year of the month.
+     * @param packedMonth
+     *         The packed month.
+     * @param cells
+     *         An array with at least {@link #CELLS} elements to store the days in.
+     * @param weekNumbers
+     *         An array with at least {@link #ROWS} elements to store the week numbers in, may be <code>null</code> if the week numbers are not needed.
+     *
+     * @return The index of the cell that contains the first day of the month, i.e. the number of days of the previous month in the grid.
+     */
+    public int fill(int year, int packedMonth, long[] cells, int[] weekNumbers)
+    {
+        if (cells.length < CELLS || weekNumbers != null && weekNumbers.length < ROWS)
+        {
+            throw new IllegalArgumentException("result array is too short");
+        }
+
+        CalendarMetrics calendarMetrics = mCalendarMetrics;
+        int weekStart = calendarMetrics.weekStartInt;
+        int leadingDays = (calendarMetrics.getDayOfWeek(year, packedMonth, 1) - weekStart + 7) % 7;
+        int daysInMonth = calendarMetrics.getDaysPerPackedMonth(year, packedMonth);
+
+        // the previous month
+        int prevYear = year;
+        int prevMonth = packedMonth - 1;
+        if (prevMonth < 0)
+        {
+            --prevYear;
+            prevMonth = calendarMetrics.getMonthsPerYear(prevYear) - 1;
+        }
+        int firstLeadingDay = calendarMetrics.getDaysPerPackedMonth(prevYear, prevMonth) - leadingDays + 1;
+
+        // the next month
+        int nextYear = year;
+        int nextMonth = packedMonth + 1;
+        if (nextMonth == calendarMetrics.getMonthsPerYear(year))
+        {
+            ++nextYear;
+            nextMonth = 0;
+        }
+
+        int i = 0;
+        for (; i < leadingDays; ++i)
+        {
+            cells[i] = Instance.make(prevYear, prevMonth, firstLeadingDay + i, 0, 0, 0, (weekStart + i) % 7);
+        }
+        for (int day = 1; day <= daysInMonth; ++day, ++i)
+        {
+            cells[i] = Instance.make(year, packedMonth, day, 0, 0, 0, (weekStart + i) % 7);
+        }
+        for (int day = 1; i < CELLS; ++day, ++i)
+        {
+            cells[i] = Instance.make(nextYear, nextMonth, day, 0, 0, 0, (weekStart + i) % 7);
+        }
+
+        if (weekNumbers != null)
+        {
+            for (int row = 0; row < ROWS; ++row)
+            {
+                long first = cells[row * COLUMNS];
+                weekNumbers[row] = calendarMetrics.getWeekOfYear(Instance.year(first), Instance.month(first), Instance.dayOfMonth(first));
+            }
+        }
+        return leadingDays;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+/**
+ * Policies to resolve local times that don't map to exactly one absolute time, because they fall into a gap (like the hour skipped when DST starts) or an
+ * overlap (like the hour repeated when DST ends) of a time zone.
+ * <p>
+ * In both cases there are two candidates: the local time interpreted using the offset before the transition and the local time interpreted using the offset
+ * after the transition.
+ *
+ * @author Marten Gajda
+ */
+public enum TransitionPolicy
+{
+    /**
+     * Use the earlier of both candidates. In an overlap this is the first occurrence of the local time. In a gap the local time is moved backwards by the
+     * length of the gap, e.g. 02:30 becomes 01:30 in the old offset.
+     */
+    EARLIER,
+
+    /**
+     * Use the later of both candidates. In an overlap this is the second occurrence of the local time. In a gap the local time is moved forward by the length
+     * of the gap, e.g. 02:30 becomes 03:30 in the new offset. This is what {@link java.util.GregorianCalendar} does for regular DST transitions and the
+     * default of {@link CalendarMetrics#toMillis(java.util.TimeZone, int, int, int, int, int, int, int)}.
+     */
+    LATER,
+
+    /**
+     * Throw an {@link IllegalArgumentException} if the local time falls into a gap or an overlap.
+     */
+    REJECT
+}
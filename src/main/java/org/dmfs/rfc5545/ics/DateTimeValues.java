@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+import java.util.Arrays;
+
+
+/**
+ * The date-time values extracted by {@link IcsDateTimeExtractor}, stored in primitive arrays. The n-th value is described by the n-th element of each array.
+ * <p>
+ * The arrays returned by this class are not copied, so they must not be modified.
+ *
+ * @author Marten Gajda
+ */
+public final class DateTimeValues
+{
+    private final int[] mProperties;
+    private final long[] mInstances;
+    private final int[] mFlags;
+    private final int[] mTimeZoneIndices;
+    private final String[] mTimeZoneIds;
+    private final int mErrorCount;
+
+
+    DateTimeValues(int[] properties, long[] instances, int[] flags, int[] timeZoneIndices, String[] timeZoneIds, int errorCount)
+    {
+        mProperties = properties;
+        mInstances = instances;
+        mFlags = flags;
+        mTimeZoneIndices = timeZoneIndices;
+        mTimeZoneIds = timeZoneIds;
+        mErrorCount = errorCount;
+    }
+
+
+    /**
+     * Returns the number of values.
+     *
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return mInstances.length;
+    }
+
+
+    /**
+     * Returns the property ids of all values, see the <code>PROPERTY_*</code> constants of {@link IcsValueScanner}.
+     *
+     * @return An array of property ids.
+     */
+    public int[] properties()
+    {
+        return mProperties;
+    }
+
+
+    /**
+     * Returns the packed instances of all values.
+     *
+     * @return An array of packed instances.
+     *
+     * @see org.dmfs.rfc5545.Instance
+     */
+    public long[] instances()
+    {
+        return mInstances;
+    }
+
+
+    /**
+     * Returns the flags of all values, see the <code>FLAG_*</code> constants of {@link IcsValueScanner}.
+     *
+     * @return An array of flags.
+     */
+    public int[] flags()
+    {
+        return mFlags;
+    }
+
+
+    /**
+     * Returns the time zone indices of all values. The index is <code>-1</code> for all-day, floating and UTC values.
+     *
+     * @return An array of time zone indices.
+     *
+     * @see #timeZoneId(int)
+     */
+    public int[] timeZoneIndices()
+    {
+        return mTimeZoneIndices;
+    }
+
+
+    /**
+     * Returns the TZID with the given index.
+     *
+     * @param timeZoneIndex
+     *         A time zone index.
+     *
+     * @return The TZID.
+     */
+    public String timeZoneId(int timeZoneIndex)
+    {
+        return mTimeZoneIds[timeZoneIndex];
+    }
+
+
+    /**
+     * Returns the number of distinct TZIDs.
+     *
+     * @return The number of TZIDs.
+     */
+    public int timeZoneCount()
+    {
+        return mTimeZoneIds.length;
+    }
+
+
+    /**
+     * Returns the number of malformed values that have been skipped.
+     *
+     * @return The number of errors.
+     */
+    public int errorCount()
+    {
+        return mErrorCount;
+    }
+
+
+    /**
+     * Collects the values of an {@link IcsValueScanner} in growing arrays. Durations are ignored, errors are counted.
+     */
+    final static class Collector implements ValueListener
+    {
+        int[] mProperties = new int[256];
+        long[] mInstances = new long[256];
+        int[] mFlags = new int[256];
+        int[] mTimeZoneIndices = new int[256];
+        String[] mTimeZoneIds = new String[0];
+        int mCount;
+        int mErrorCount;
+
+
+        @Override
+        public void onDateTime(int property, long instance, int flags, int timeZoneIndex)
+        {
+            ensureCapacity(mCount + 1);
+            mProperties[mCount] = property;
+            mInstances[mCount] = instance;
+            mFlags[mCount] = flags;
+            mTimeZoneIndices[mCount] = timeZoneIndex;
+            ++mCount;
+        }
+
+
+        @Override
+        public void onDuration(int property, int sign, int days, int seconds)
+        {
+            // not collected
+        }
+
+
+        @Override
+        public void onError(int property, long position)
+        {
+            ++mErrorCount;
+        }
+
+
+        /**
+         * Appends the values of another {@link Collector}, mapping its time zone indices to the indices of this collector.
+         */
+        void append(Collector other)
+        {
+            int[] indexMap = new int[other.mTimeZoneIds.length];
+            for (int i = 0; i < indexMap.length; ++i)
+            {
+                indexMap[i] = timeZoneIndex(other.mTimeZoneIds[i]);
+            }
+
+            ensureCapacity(mCount + other.mCount);
+            System.arraycopy(other.mProperties, 0, mProperties, mCount, other.mCount);
+            System.arraycopy(other.mInstances, 0, mInstances, mCount, other.mCount);
+            System.arraycopy(other.mFlags, 0, mFlags, mCount, other.mCount);
+            for (int i = 0; i < other.mCount; ++i)
+            {
+                int index = other.mTimeZoneIndices[i];
+                mTimeZoneIndices[mCount + i] = index < 0 ? index : indexMap[index];
+            }
+            mCount += other.mCount;
+            mErrorCount += other.mErrorCount;
+        }
+
+
+        DateTimeValues toValues()
+        {
+            return new DateTimeValues(Arrays.copyOf(mProperties, mCount), Arrays.copyOf(mInstances, mCount), Arrays.copyOf(mFlags, mCount),
+                    Arrays.copyOf(mTimeZoneIndices, mCount), mTimeZoneIds, mErrorCount);
+        }
+
+
+        private int timeZoneIndex(String timeZoneId)
+        {
+            for (int i = 0; i < mTimeZoneIds.length; ++i)
+            {
+                if (mTimeZoneIds[i].equals(timeZoneId))
+                {
+                    return i;
+                }
+            }
+            mTimeZoneIds = Arrays.copyOf(mTimeZoneIds, mTimeZoneIds.length + 1);
+            mTimeZoneIds[mTimeZoneIds.length - 1] = timeZoneId;
+            return mTimeZoneIds.length - 1;
+        }
+
+
+        private void ensureCapacity(int capacity)
+        {
+            if (capacity > mInstances.length)
+            {
+                int newLength = Math.max(capacity, mInstances.length * 2);
+                mProperties = Arrays.copyOf(mProperties, newLength);
+                mInstances = Arrays.copyOf(mInstances, newLength);
+                mFlags = Arrays.copyOf(mFlags, newLength);
+                mTimeZoneIndices = Arrays.copyOf(mTimeZoneIndices, newLength);
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Extracts the date-time values of large iCalendar files in parallel.
+ * <p>
+ * The file is split into chunks at lines starting with <code>BEGIN:VEVENT</code>. Each chunk is memory-mapped and scanned by an {@link IcsValueScanner} on a
+ * {@link ForkJoinPool}. The results are merged into the primitive arrays of a {@link DateTimeValues} object in the order of the file, just as if the file had
+ * been scanned sequentially. Since each chunk is mapped separately, files larger than 2 GB are supported.
+ * <p>
+ * Only DATE and DATE-TIME values are extracted, durations (including the durations of periods) are ignored. Malformed values are skipped and counted, see
+ * {@link DateTimeValues#errorCount()}, so a single broken value doesn't discard the results of the other chunks.
+ *
+ * @author Marten Gajda
+ */
+public final class IcsDateTimeExtractor
+{
+    /**
+     * The pattern of a chunk boundary. The boundary is right after the line feed.
+     */
+    private final static byte[] EVENT_START = "\nBEGIN:VEVENT".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The minimum size of a chunk. Smaller chunks don't pay off.
+     */
+    private final static long MIN_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum size of a chunk.
+     */
+    private final static long MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The maximum size of a single mapping. Larger chunks are mapped in multiple parts.
+     */
+    private final static long MAX_MAPPING_SIZE = 1024 * 1024 * 1024;
+
+    /**
+     * The size of the buffer used to search chunk boundaries.
+     */
+    private final static int SEARCH_BUFFER_SIZE = 64 * 1024;
+
+
+    /**
+     * You shall not instantiate this class.
+     */
+    private IcsDateTimeExtractor()
+    {
+    }
+
+
+    /**
+     * Extracts all date-time values of the given iCalendar file using the common {@link ForkJoinPool}.
+     *
+     * @param file
+     *         The {@link Path} of the file.
+     *
+     * @return The {@link DateTimeValues}.
+     *
+     * @throws IOException
+     *         if the file can not be read.
+     */
+    public static DateTimeValues extract(Path file) throws IOException
+    {
+        return extract(file, ForkJoinPool.commonPool());
+    }
+
+
+    /**
+     * Extracts all date-time values of the given iCalendar file using the given {@link ForkJoinPool}.
+     *
+     * @param file
+     *         The {@link Path} of the file.
+     * @param pool
+     *         The {@link ForkJoinPool} to scan the chunks on.
+     *
+     * @return The {@link DateTimeValues}.
+     *
+     * @throws IOException
+     *         if the file can not be read.
+     */
+    public static DateTimeValues extract(Path file, ForkJoinPool pool) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            return extract(channel, pool, Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (pool.getParallelism() * 4L))));
+        }
+    }
+
+
+    /**
+     * Extracts all date-time values using chunks of the given nominal size.
+     */
+    static DateTimeValues extract(FileChannel channel, ForkJoinPool pool, long chunkSize) throws IOException
+    {
+        long[] boundaries = boundaries(channel, chunkSize);
+        try
+        {
+            return pool.invoke(new ChunkTask(channel, boundaries, 0, boundaries.length - 1)).toValues();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+    }
+
+
+    /**
+     * Returns the positions of the chunk boundaries, including the start and the end of the file.
+     */
+    private static long[] boundaries(FileChannel channel, long chunkSize) throws IOException
+    {
+        long size = channel.size();
+        long[] boundaries = new long[(int) (size / chunkSize) + 2];
+        int count = 1;
+        long position = chunkSize;
+        while (position < size)
+        {
+            long boundary = nextEventStart(channel, position, size);
+            if (boundary >= size)
+            {
+                break;
+            }
+            boundaries[count++] = boundary;
+            position = Math.max(boundary + 1, position + chunkSize);
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+
+    /**
+     * Returns the position of the first line starting with <code>BEGIN:VEVENT</code> at or after the given position or the size of the file if there is no
+     * such line.
+     */
+    private static long nextEventStart(FileChannel channel, long position, long size) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        // start one byte earlier to catch the line feed of a line that starts right at the given position
+        long windowStart = position - 1;
+        while (windowStart < size)
+        {
+            buffer.clear();
+            while (buffer.hasRemaining() && channel.read(buffer, windowStart + buffer.position()) >= 0)
+            {
+                // read until the buffer is full or the end of the file has been reached
+            }
+            int count = buffer.position();
+            int limit = count - EVENT_START.length;
+            for (int i = 0; i <= limit; ++i)
+            {
+                if (matches(bytes, i))
+                {
+                    return windowStart + i + 1;
+                }
+            }
+            if (windowStart + count >= size)
+            {
+                break;
+            }
+            // overlap the windows, so patterns crossing the window end are found
+            windowStart += count - EVENT_START.length + 1;
+        }
+        return size;
+    }
+
+
+    private static boolean matches(byte[] bytes, int offset)
+    {
+        for (int i = 0; i < EVENT_START.length; ++i)
+        {
+            if (bytes[offset + i] != EVENT_START[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * A task that scans a range of chunks by splitting it in halves until a single chunk remains.
+     */
+    private final static class ChunkTask extends RecursiveTask<DateTimeValues.Collector>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel mChannel;
+        private final long[] mBoundaries;
+        private final int mFrom;
+        private final int mTo;
+
+
+        ChunkTask(FileChannel channel, long[] boundaries, int from, int to)
+        {
+            mChannel = channel;
+            mBoundaries = boundaries;
+            mFrom = from;
+            mTo = to;
+        }
+
+
+        @Override
+        protected DateTimeValues.Collector compute()
+        {
+            if (mTo - mFrom == 1)
+            {
+                return scan(mBoundaries[mFrom], mBoundaries[mTo]);
+            }
+
+            int middle = (mFrom + mTo) >>> 1;
+            ChunkTask left = new ChunkTask(mChannel, mBoundaries, mFrom, middle);
+            left.fork();
+            DateTimeValues.Collector right = new ChunkTask(mChannel, mBoundaries, middle, mTo).compute();
+            DateTimeValues.Collector result = left.join();
+            result.append(right);
+            return result;
+        }
+
+
+        private DateTimeValues.Collector scan(long start, long end)
+        {
+            DateTimeValues.Collector collector = new DateTimeValues.Collector();
+            IcsValueScanner scanner = new IcsValueScanner(collector);
+            try
+            {
+                for (long position = start; position < end; position += MAX_MAPPING_SIZE)
+                {
+                    scanner.process(mChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_MAPPING_SIZE, end - position)));
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            scanner.finish();
+
+            String[] timeZoneIds = new String[scanner.timeZoneCount()];
+            for (int i = 0; i < timeZoneIds.length; ++i)
+            {
+                timeZoneIds[i] = scanner.timeZoneId(i);
+            }
+            collector.mTimeZoneIds = timeZoneIds;
+            return collector;
+        }
+    }
+}
@@ -0,0 +1,717 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+import org.dmfs.rfc5545.AsciiDateTimeParser;
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Durations;
+import org.dmfs.rfc5545.TimeZoneCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+
+/**
+ * A streaming scanner that extracts the date-time and duration values of the properties DTSTART, DTEND, DUE, RECURRENCE-ID, EXDATE, RDATE and DURATION from
+ * iCalendar content as specified in <a href="https://tools.ietf.org/html/rfc5545">RFC 5545</a>.
+ * <p>
+ * The content is consumed in chunks of bytes of arbitrary size. Folded lines are unfolded on the fly, even if a line break falls on a chunk boundary. All other
+ * properties are skipped without looking at their values. The values are passed to a {@link ValueListener} as primitives, so apart from the table of the
+ * distinct TZIDs the memory consumption doesn't depend on the size of the input and no objects are created per line or per value.
+ * <p>
+ * DATE and DATE-TIME values are parsed according to the rules of {@link org.dmfs.rfc5545.DateTime#parse(String)}, durations according to the rules of {@link
+ * org.dmfs.rfc5545.Duration#parse(String)}. Periods of time (like in RDATE values) are reported as a start value with {@link #FLAG_PERIOD_START} followed by
+ * either an end value with {@link #FLAG_PERIOD_END} or a duration.
+ * <p>
+ * Malformed values don't abort the scan. They are reported to {@link ValueListener#onError(int, long)} and the rest of the content line is skipped, so
+ * the scanner stays in a consistent state and continues with the next line.
+ * <p>
+ * Note that this scanner doesn't know about components, so it reports the values of all components (including the ones in VTIMEZONE and VALARM
+ * components).
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Marten Gajda
+ */
+public final class IcsValueScanner
+{
+    public final static int PROPERTY_DTSTART = 0;
+    public final static int PROPERTY_DTEND = 1;
+    public final static int PROPERTY_DUE = 2;
+    public final static int PROPERTY_RECURRENCE_ID = 3;
+    public final static int PROPERTY_EXDATE = 4;
+    public final static int PROPERTY_RDATE = 5;
+    public final static int PROPERTY_DURATION = 6;
+
+    /**
+     * Flag of all-day values.
+     */
+    public final static int FLAG_ALLDAY = 1;
+
+    /**
+     * Flag of values in UTC.
+     */
+    public final static int FLAG_UTC = 2;
+
+    /**
+     * Flag of floating values, i.e. date-time values without a time zone.
+     */
+    public final static int FLAG_FLOATING = 4;
+
+    /**
+     * Flag of values that start a period of time.
+     */
+    public final static int FLAG_PERIOD_START = 8;
+
+    /**
+     * Flag of values that end a period of time.
+     */
+    public final static int FLAG_PERIOD_END = 16;
+
+    /**
+     * The names of the supported properties, the index of each name is the property id.
+     */
+    private final static byte[][] PROPERTY_NAMES = {
+            ascii("DTSTART"), ascii("DTEND"), ascii("DUE"), ascii("RECURRENCE-ID"), ascii("EXDATE"), ascii("RDATE"), ascii("DURATION") };
+
+    private final static byte[] PARAMETER_TZID = ascii("TZID");
+    private final static byte[] PARAMETER_VALUE = ascii("VALUE");
+
+    private final static int STATE_NAME = 0;
+    private final static int STATE_PARAMETER_NAME = 1;
+    private final static int STATE_PARAMETER_VALUE = 2;
+    private final static int STATE_VALUE = 3;
+    private final static int STATE_SKIP = 4;
+
+    private final static int PARAMETER_OTHER = 0;
+    private final static int PARAMETER_TZ = 1;
+    private final static int PARAMETER_VALUE_TYPE = 2;
+
+    /**
+     * The length of the longest supported property name.
+     */
+    private final static int MAX_NAME_LENGTH = 13;
+
+    /**
+     * The maximum length of a TZID.
+     */
+    private final static int MAX_TZID_LENGTH = 256;
+
+    /**
+     * The maximum length of a single value. The longest valid values are periods of two UTC date-time values (33 bytes).
+     */
+    private final static int MAX_VALUE_LENGTH = 64;
+
+    /**
+     * The size of the buffer used to read from {@link InputStream}s and {@link ReadableByteChannel}s.
+     */
+    private final static int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The size of the buffer used to copy the content of direct {@link ByteBuffer}s.
+     */
+    private final static int TRANSFER_BUFFER_SIZE = 8 * 1024;
+
+
+    private final ValueListener mListener;
+
+    private final byte[] mName = new byte[MAX_NAME_LENGTH];
+    private final byte[] mTzId = new byte[MAX_TZID_LENGTH];
+    private final byte[] mValue = new byte[MAX_VALUE_LENGTH];
+
+    /**
+     * A buffer to copy the content of direct {@link ByteBuffer}s, created when needed.
+     */
+    private byte[] mTransferBuffer;
+
+    private int mState = STATE_NAME;
+
+    /**
+     * Whether the last byte was a line feed. In that case the next byte decides whether the line is folded or not.
+     */
+    private boolean mLineFeed;
+
+    private int mNameLength;
+    private int mProperty;
+    private int mParameter;
+    private boolean mQuoted;
+    private int mTzIdLength;
+    private int mValueLength;
+
+    /**
+     * The number of bytes of the content processed so far.
+     */
+    private long mPosition;
+
+    /**
+     * The position of the first byte of the current content line.
+     */
+    private long mLineStart;
+
+    /**
+     * The index of the TZID of the current property or <code>-1</code>.
+     */
+    private int mTimeZoneIndex = -1;
+
+    /**
+     * The table of distinct TZIDs.
+     */
+    private byte[][] mTimeZoneIds = new byte[8][];
+    private String[] mTimeZoneIdStrings = new String[8];
+    private TimeZone[] mTimeZones = new TimeZone[8];
+    private int mTimeZoneCount;
+
+
+    /**
+     * Creates a scanner that passes all values to the given {@link ValueListener}.
+     *
+     * @param listener
+     *         The {@link ValueListener} to notify.
+     */
+    public IcsValueScanner(ValueListener listener)
+    {
+        mListener = listener;
+    }
+
+
+    /**
+     * Scans the entire content of the given {@link InputStream} and calls {@link #finish()}. The stream is not closed.
+     *
+     * @param in
+     *         The {@link InputStream} to read.
+     *
+     * @throws IOException
+     *         if the stream can not be read.
+     */
+    public void scan(InputStream in) throws IOException
+    {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int count;
+        while ((count = in.read(buffer)) >= 0)
+        {
+            process(buffer, 0, count);
+        }
+        finish();
+    }
+
+
+    /**
+     * Scans the entire content of the given {@link ReadableByteChannel} and calls {@link #finish()}. The channel is not closed.
+     *
+     * @param channel
+     *         The {@link ReadableByteChannel} to read.
+     *
+     * @throws IOException
+     *         if the channel can not be read.
+     */
+    public void scan(ReadableByteChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        while (channel.read(buffer) >= 0)
+        {
+            buffer.flip();
+            process(buffer);
+            buffer.clear();
+        }
+        finish();
+    }
+
+
+    /**
+     * Processes the remaining bytes of the given {@link ByteBuffer}. After this call the buffer has no remaining bytes.
+     *
+     * @param buffer
+     *         The next chunk of the content.
+     */
+    public void process(ByteBuffer buffer)
+    {
+        if (buffer.hasArray())
+        {
+            process(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        // copy direct buffers (like mapped files) in bulk, so the array based code path can be used
+        if (mTransferBuffer == null)
+        {
+            mTransferBuffer = new byte[TRANSFER_BUFFER_SIZE];
+        }
+        byte[] transferBuffer = mTransferBuffer;
+        while (buffer.hasRemaining())
+        {
+            int count = Math.min(buffer.remaining(), TRANSFER_BUFFER_SIZE);
+            buffer.get(transferBuffer, 0, count);
+            process(transferBuffer, 0, count);
+        }
+    }
+
+
+    /**
+     * Processes a chunk of content.
+     *
+     * @param bytes
+     *         An array containing the next chunk of the content.
+     * @param offset
+     *         The position of the first byte of the chunk.
+     * @param length
+     *         The length of the chunk.
+     */
+    public void process(byte[] bytes, int offset, int length)
+    {
+        // the position of bytes[0] in the content
+        long base = mPosition - offset;
+        mPosition += length;
+        for (int i = offset, end = offset + length; i < end; ++i)
+        {
+            if (mState == STATE_SKIP && !mLineFeed)
+            {
+                // fast forward to the end of the line
+                while (i < end && bytes[i] != '\n')
+                {
+                    ++i;
+                }
+                if (i == end)
+                {
+                    return;
+                }
+            }
+            process(bytes[i], base + i);
+        }
+    }
+
+
+    /**
+     * Finishes the content. This must be called after the last chunk has been processed, otherwise the last line may not be reported. The scanner can be
+     * used to scan more content afterwards, the positions passed to {@link ValueListener#onError(int, long)} start at <code>0</code> again.
+     */
+    public void finish()
+    {
+        mLineFeed = false;
+        endOfLine();
+        mPosition = 0;
+        mLineStart = 0;
+    }
+
+
+    /**
+     * Returns the TZID of the time zone with the given index.
+     *
+     * @param timeZoneIndex
+     *         A time zone index as passed to {@link ValueListener#onDateTime(int, long, int, int)}.
+     *
+     * @return The TZID.
+     */
+    public String timeZoneId(int timeZoneIndex)
+    {
+        if (timeZoneIndex < 0 || timeZoneIndex >= mTimeZoneCount)
+        {
+            throw new IndexOutOfBoundsException("unknown time zone index " + timeZoneIndex);
+        }
+        String id = mTimeZoneIdStrings[timeZoneIndex];
+        if (id == null)
+        {
+            id = new String(mTimeZoneIds[timeZoneIndex], StandardCharsets.UTF_8);
+            mTimeZoneIdStrings[timeZoneIndex] = id;
+        }
+        return id;
+    }
+
+
+    /**
+     * Returns the {@link TimeZone} with the given index. The zone is resolved by {@link TimeZoneCache#DEFAULT}, so it's shared and must not be modified.
+     * Note that unknown TZIDs result in the GMT zone.
+     *
+     * @param timeZoneIndex
+     *         A time zone index as passed to {@link ValueListener#onDateTime(int, long, int, int)}.
+     *
+     * @return The {@link TimeZone}.
+     */
+    public TimeZone timeZone(int timeZoneIndex)
+    {
+        TimeZone timeZone = mTimeZones[timeZoneIndex];
+        if (timeZone == null)
+        {
+            timeZone = TimeZoneCache.DEFAULT.timeZone(timeZoneId(timeZoneIndex));
+            mTimeZones[timeZoneIndex] = timeZone;
+        }
+        return timeZone;
+    }
+
+
+    /**
+     * Returns the number of distinct TZIDs found so far. The valid time zone indices range from <code>0</code> to <code>timeZoneCount() - 1</code>.
+     *
+     * @return The number of TZIDs.
+     */
+    public int timeZoneCount()
+    {
+        return mTimeZoneCount;
+    }
+
+
+    private void process(byte b, long position)
+    {
+        if (mLineFeed)
+        {
+            mLineFeed = false;
+            if (b == ' ' || b == '\t')
+            {
+                // folded line, continue with the current line
+                return;
+            }
+            endOfLine();
+            mLineStart = position;
+        }
+
+        if (b == '\n')
+        {
+            mLineFeed = true;
+            return;
+        }
+
+        if (b == '\r')
+        {
+            return;
+        }
+
+        switch (mState)
+        {
+            case STATE_NAME:
+            {
+                if (b == ';' || b == ':')
+                {
+                    mProperty = property();
+                    if (mProperty < 0)
+                    {
+                        mState = STATE_SKIP;
+                    }
+                    else if (b == ';')
+                    {
+                        mState = STATE_PARAMETER_NAME;
+                    }
+                    else
+                    {
+                        mState = STATE_VALUE;
+                    }
+                    mNameLength = 0;
+                }
+                else
+                {
+                    appendName(b);
+                }
+                break;
+            }
+            case STATE_PARAMETER_NAME:
+            {
+                if (b == '=')
+                {
+                    mParameter = equalsName(PARAMETER_TZID) ? PARAMETER_TZ : equalsName(PARAMETER_VALUE) ? PARAMETER_VALUE_TYPE : PARAMETER_OTHER;
+                    if (mParameter == PARAMETER_TZ)
+                    {
+                        mTzIdLength = 0;
+                    }
+                    mQuoted = false;
+                    mNameLength = 0;
+                    mState = STATE_PARAMETER_VALUE;
+                }
+                else if (b == ':')
+                {
+                    mState = STATE_VALUE;
+                }
+                else if (b == ';')
+                {
+                    mNameLength = 0;
+                }
+                else
+                {
+                    appendName(b);
+                }
+                break;
+            }
+            case STATE_PARAMETER_VALUE:
+            {
+                if (b == '"')
+                {
+                    mQuoted = !mQuoted;
+                }
+                else if (!mQuoted && (b == ';' || b == ':'))
+                {
+                    if (mParameter == PARAMETER_TZ)
+                    {
+                        mTimeZoneIndex = timeZoneIndex();
+                    }
+                    mState = b == ';' ? STATE_PARAMETER_NAME : STATE_VALUE;
+                }
+                else if (mParameter == PARAMETER_TZ)
+                {
+                    if (mTzIdLength == MAX_TZID_LENGTH)
+                    {
+                        // TZID too long
+                        error();
+                        break;
+                    }
+                    mTzId[mTzIdLength++] = b;
+                }
+                // the VALUE parameter is not needed, because the type of a value can be derived from the value itself
+                break;
+            }
+            case STATE_VALUE:
+            {
+                if (b == ',')
+                {
+                    value();
+                    mValueLength = 0;
+                }
+                else
+                {
+                    if (mValueLength < MAX_VALUE_LENGTH)
+                    {
+                        mValue[mValueLength] = b;
+                    }
+                    ++mValueLength;
+                }
+                break;
+            }
+            default:
+            {
+                // skip
+            }
+        }
+    }
+
+
+    private void endOfLine()
+    {
+        if (mState == STATE_VALUE)
+        {
+            value();
+        }
+        mState = STATE_NAME;
+        mNameLength = 0;
+        mValueLength = 0;
+        mTimeZoneIndex = -1;
+    }
+
+
+    private void appendName(byte b)
+    {
+        if (mNameLength < MAX_NAME_LENGTH)
+        {
+            // property and parameter names are case-insensitive
+            mName[mNameLength] = b >= 'a' && b <= 'z' ? (byte) (b - ('a' - 'A')) : b;
+        }
+        ++mNameLength;
+    }
+
+
+    private boolean equalsName(byte[] name)
+    {
+        if (mNameLength != name.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < name.length; ++i)
+        {
+            if (mName[i] != name[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Returns the id of the property in {@link #mName} or <code>-1</code> if the property is not supported.
+     */
+    private int property()
+    {
+        for (int i = 0; i < PROPERTY_NAMES.length; ++i)
+        {
+            if (equalsName(PROPERTY_NAMES[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Returns the index of the TZID in {@link #mTzId}, adding it to the table if necessary.
+     */
+    private int timeZoneIndex()
+    {
+        for (int i = 0; i < mTimeZoneCount; ++i)
+        {
+            byte[] id = mTimeZoneIds[i];
+            if (id.length == mTzIdLength && equalsTzId(id))
+            {
+                return i;
+            }
+        }
+
+        if (mTimeZoneCount == mTimeZoneIds.length)
+        {
+            int newLength = mTimeZoneCount * 2;
+            mTimeZoneIds = Arrays.copyOf(mTimeZoneIds, newLength);
+            mTimeZoneIdStrings = Arrays.copyOf(mTimeZoneIdStrings, newLength);
+            mTimeZones = Arrays.copyOf(mTimeZones, newLength);
+        }
+        mTimeZoneIds[mTimeZoneCount] = Arrays.copyOf(mTzId, mTzIdLength);
+        return mTimeZoneCount++;
+    }
+
+
+    private boolean equalsTzId(byte[] id)
+    {
+        for (int i = 0; i < id.length; ++i)
+        {
+            if (id[i] != mTzId[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Reports the value in {@link #mValue}. The values of a period are only reported if both parts are valid.
+     */
+    private void value()
+    {
+        int length = mValueLength;
+        if (length > MAX_VALUE_LENGTH || length == 0)
+        {
+            error();
+            return;
+        }
+
+        if (mProperty == PROPERTY_DURATION)
+        {
+            long duration = Durations.parse(mValue, 0, length);
+            if (Durations.isError(duration))
+            {
+                error();
+                return;
+            }
+            duration(duration);
+            return;
+        }
+
+        int slash = 0;
+        while (slash < length && mValue[slash] != '/')
+        {
+            ++slash;
+        }
+
+        long start = AsciiDateTimeParser.tryParseInstance(mValue, 0, slash);
+        if (DateTime.isParseError(start))
+        {
+            error();
+            return;
+        }
+
+        if (slash == length)
+        {
+            dateTime(start, length, 0);
+            return;
+        }
+
+        // a period of time
+        int endLength = length - slash - 1;
+        byte first = mValue[endLength > 0 ? slash + 1 : slash];
+        if (first == 'P' || first == 'p' || first == '+' || first == '-')
+        {
+            long duration = Durations.parse(mValue, slash + 1, length);
+            if (Durations.isError(duration))
+            {
+                error();
+                return;
+            }
+            dateTime(start, slash, FLAG_PERIOD_START);
+            duration(duration);
+        }
+        else
+        {
+            long end = AsciiDateTimeParser.tryParseInstance(mValue, slash + 1, endLength);
+            if (DateTime.isParseError(end))
+            {
+                error();
+                return;
+            }
+            dateTime(start, slash, FLAG_PERIOD_START);
+            dateTime(end, endLength, FLAG_PERIOD_END);
+        }
+    }
+
+
+    private void dateTime(long instance, int length, int flags)
+    {
+        int timeZoneIndex = -1;
+        if (length == 8)
+        {
+            flags |= FLAG_ALLDAY;
+        }
+        else if (length == 16)
+        {
+            flags |= FLAG_UTC;
+        }
+        else if (mTimeZoneIndex < 0)
+        {
+            flags |= FLAG_FLOATING;
+        }
+        else
+        {
+            timeZoneIndex = mTimeZoneIndex;
+        }
+        mListener.onDateTime(mProperty, instance, flags, timeZoneIndex);
+    }
+
+
+    /**
+     * Reports a duration, parsed by {@link Durations#parse(byte[], int, int)}. This follows the rules of {@link org.dmfs.rfc5545.Duration#parse(String)}.
+     */
+    private void duration(long duration)
+    {
+        mListener.onDuration(mProperty, Durations.sign(duration), Durations.days(duration), Durations.secondsOfDay(duration));
+    }
+
+
+    /**
+     * Reports a malformed value of the current property and skips the rest of the content line.
+     */
+    private void error()
+    {
+        mListener.onError(mProperty, mLineStart);
+        mState = STATE_SKIP;
+    }
+
+
+    private static byte[] ascii(String string)
+    {
+        return string.getBytes(StandardCharsets.US_ASCII);
+    }
+}
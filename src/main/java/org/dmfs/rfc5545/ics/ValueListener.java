@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+/**
+ * Receives the values found by an {@link IcsValueScanner}. All values are passed as primitives, so no objects are created per value.
+ *
+ * @author Marten Gajda
+ */
+public interface ValueListener
+{
+    /**
+     * Called for each DATE or DATE-TIME value.
+     *
+     * @param property
+     *         The property the value belongs to, one of the <code>PROPERTY_*</code> constants of {@link IcsValueScanner}.
+     * @param instance
+     *         The packed instance of the value, see {@link org.dmfs.rfc5545.Instance}.
+     * @param flags
+     *         A combination of the <code>FLAG_*</code> constants of {@link IcsValueScanner}.
+     * @param timeZoneIndex
+     *         The index of the time zone of the value, or <code>-1</code> if the value is all-day, floating or UTC. Use {@link
+     *         IcsValueScanner#timeZoneId(int)} to get the TZID.
+     */
+    void onDateTime(int property, long instance, int flags, int timeZoneIndex);
+
+    /**
+     * Called for each DURATION value and for each period of time that's given by start and duration (in which case the duration immediately follows the start
+     * value).
+     *
+     * @param property
+     *         The property the value belongs to, one of the <code>PROPERTY_*</code> constants of {@link IcsValueScanner}.
+     * @param sign
+     *         The sign of the duration, either <code>1</code> or <code>-1</code>.
+     * @param days
+     *         The number of days of the duration (weeks have been converted to days).
+     * @param seconds
+     *         The number of seconds of the duration.
+     */
+    void onDuration(int property, int sign, int days, int seconds);
+
+    /**
+     * Called for each malformed value of a supported property. The scanner skips the rest of the content line and continues with the next one. If a value
+     * list contains a malformed value, the values in front of it have been reported already.
+     *
+     * @param property
+     *         The property the value belongs to, one of the <code>PROPERTY_*</code> constants of {@link IcsValueScanner}.
+     * @param position
+     *         The position of the first byte of the content line, counted from the start of the content.
+     */
+    void onError(int property, long position);
+}
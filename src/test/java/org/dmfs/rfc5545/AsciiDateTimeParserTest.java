@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AsciiDateTimeParserTest
+{
+    private final static String[] TESTDATES = {
+            "19000101", "20151231", "99991231", "19000101T000000", "19700101T020000", "20140330T070000", "20140414T132231", "20161231T235959",
+            "19700101T020000Z", "20140414T132231Z", "99991231T235959Z" };
+
+
+    @Test
+    public void testParse()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        for (String testdate : TESTDATES)
+        {
+            DateTime expected = DateTime.parse(berlin, testdate);
+            byte[] bytes = testdate.getBytes(StandardCharsets.US_ASCII);
+
+            assertEquals(expected.getInstance(), AsciiDateTimeParser.parseInstance(bytes, 0, bytes.length));
+
+            DateTime result = AsciiDateTimeParser.parse(berlin, bytes, 0, bytes.length);
+            assertEquals(expected, result);
+            assertEquals(expected.isAllDay(), result.isAllDay());
+            assertEquals(expected.isFloating(), result.isFloating());
+            assertEquals(expected.getTimeZone(), result.getTimeZone());
+            assertEquals(expected.getTimestamp(), result.getTimestamp());
+        }
+    }
+
+
+    @Test
+    public void testParseRange()
+    {
+        String line = "DTSTART;TZID=Europe/Berlin:20140414T132231\r\n";
+        byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+
+        assertEquals(DateTime.parse(berlin, "20140414T132231"), AsciiDateTimeParser.parse(berlin, bytes, 27, 15));
+        assertEquals(DateTime.parse("20140414").getInstance(), AsciiDateTimeParser.parseInstance(bytes, 27, 8));
+    }
+
+
+    @Test
+    public void testParseByteBuffer()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN })
+        {
+            for (String testdate : TESTDATES)
+            {
+                ByteBuffer buffer = ByteBuffer.wrap(("xyz:" + testdate + "\r\n").getBytes(StandardCharsets.US_ASCII)).order(order);
+
+                DateTime expected = DateTime.parse(berlin, testdate);
+                assertEquals(expected, AsciiDateTimeParser.parse(DateTime.GREGORIAN_CALENDAR_SCALE, berlin, buffer, 4, testdate.length()));
+                assertEquals(expected.getInstance(), AsciiDateTimeParser.parseInstance(buffer, 4, testdate.length()));
+                assertEquals(0, buffer.position());
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(buffer.capacity()).order(order);
+                direct.put(buffer.array());
+                assertEquals(expected.getInstance(), AsciiDateTimeParser.parseInstance(direct, 4, testdate.length()));
+            }
+        }
+    }
+
+
+    @Test
+    public void testIllegalCharacters()
+    {
+        // replace each digit by characters just below and above the digit range
+        for (String testdate : new String[] { "20150101", "20150101T101010", "20150101T101010Z" })
+        {
+            for (int i = 0; i < testdate.length(); ++i)
+            {
+                char c = testdate.charAt(i);
+                if (c < '0' || c > '9')
+                {
+                    continue;
+                }
+                for (char illegal : new char[] { '/', ':', 'A', ' ', '¹' })
+                {
+                    byte[] bytes = testdate.getBytes(StandardCharsets.ISO_8859_1);
+                    bytes[i] = (byte) illegal;
+                    assertIllegal(bytes);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testIllegalForm()
+    {
+        for (String illegal : new String[] { "", "2015010", "201501011", "20150101X000000", "20150101T000000X", "20150101T0000000Z", "20150101T000000ZZ" })
+        {
+            assertIllegal(illegal.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+
+    @Test
+    public void testIllegalMonth()
+    {
+        for (String illegal : new String[] { "20150001", "20150001T000000", "20150001T000000Z" })
+        {
+            byte[] bytes = illegal.getBytes(StandardCharsets.US_ASCII);
+            assertIllegal(bytes);
+
+            long error = AsciiDateTimeParser.tryParseInstance(bytes, 0, bytes.length);
+            assertTrue(illegal, DateTime.isParseError(error));
+            assertEquals(illegal, DateTime.PARSE_ERROR_RANGE, DateTime.parseErrorType(error));
+            assertEquals(illegal, 4, DateTime.parseErrorPosition(error));
+            assertEquals(error, AsciiDateTimeParser.tryParseInstance(ByteBuffer.wrap(bytes), 0, bytes.length));
+        }
+
+        // month 00 fails just like in DateTime.parse
+        byte[] bytes = "20150001".getBytes(StandardCharsets.US_ASCII);
+        try
+        {
+            AsciiDateTimeParser.parseInstance(bytes, 0, bytes.length);
+            fail("parseInstance is expected to throw when parsing month 00");
+        }
+        catch (IllegalArgumentException e)
+        {
+            try
+            {
+                DateTime.parse("20150001");
+                fail("parse is expected to throw when parsing month 00");
+            }
+            catch (IllegalArgumentException expected)
+            {
+                assertEquals(expected.getMessage(), e.getMessage());
+            }
+        }
+
+        // like DateTime.parse, months above 12 are left to the calendar scale
+        for (String valid : new String[] { "20150101", "20151231T235959Z", "20151301", "20151301T120000", "20159901T120000Z" })
+        {
+            byte[] validBytes = valid.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(DateTime.parse(valid).getInstance(), AsciiDateTimeParser.parseInstance(validBytes, 0, validBytes.length));
+        }
+    }
+
+
+    @Test
+    public void testTryParseInstanceErrors()
+    {
+        // the error positions are the same as the ones of DateTime.tryParse
+        for (String illegal : new String[] { "", "2015010", "2015A101", "201501011", "20150101X000000", "20150101T00A000", "20150101T000000X",
+                "20150101T0000000Z", "20150101T000000ZZ" })
+        {
+            byte[] bytes = Arrays.copyOf(illegal.getBytes(StandardCharsets.US_ASCII), illegal.length() + 16);
+            long expected = DateTime.tryParse(illegal);
+            assertTrue(illegal, DateTime.isParseError(expected));
+            assertEquals(illegal, expected, AsciiDateTimeParser.tryParseInstance(bytes, 0, illegal.length()));
+            assertEquals(illegal, expected, AsciiDateTimeParser.tryParseInstance(ByteBuffer.wrap(bytes), 0, illegal.length()));
+        }
+    }
+
+
+    private void assertIllegal(byte[] bytes)
+    {
+        // pad the array, so an illegal length doesn't result in an IndexOutOfBoundsException
+        byte[] padded = new byte[bytes.length + 16];
+        System.arraycopy(bytes, 0, padded, 0, bytes.length);
+        try
+        {
+            AsciiDateTimeParser.parseInstance(padded, 0, bytes.length);
+            fail("parseInstance is expected to throw when parsing: " + new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        try
+        {
+            AsciiDateTimeParser.parseInstance(ByteBuffer.wrap(padded), 0, bytes.length);
+            fail("parseInstance is expected to throw when parsing: " + new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class CalendarHistogramTest
+{
+
+    private static long[] randomTimestamps(int count)
+    {
+        Random random = new Random(1234);
+        long start = DateTime.parse("20141201T000000Z").getTimestamp();
+        long[] result = new long[count];
+        for (int i = 0; i < count; ++i)
+        {
+            // a couple of timestamps before and after the histogram
+            result[i] = start + (long) (random.nextDouble() * 500L * 24 * 3600 * 1000);
+        }
+        return result;
+    }
+
+
+    @Test
+    public void testCounts()
+    {
+        long[] timestamps = randomTimestamps(50000);
+        long[] sorted = timestamps.clone();
+        Arrays.sort(sorted);
+        for (CalendarMetrics metrics : new CalendarMetrics[] { new GregorianCalendarMetrics(Weekday.MO, 4), new GregorianCalendarMetrics(Weekday.SU, 1),
+                new JulianCalendarMetrics(Weekday.MO, 4) })
+        {
+            for (TimeZone zone : new TimeZone[] { null, TimeZone.getTimeZone("Europe/Berlin"), TimeZone.getTimeZone("Pacific/Auckland") })
+            {
+                for (CalendarHistogram.Bucket bucket : CalendarHistogram.Bucket.values())
+                {
+                    CalendarHistogram histogram = new CalendarHistogram(metrics, zone, bucket, DateTime.parse("20150101T120000Z").getTimestamp(), 60);
+
+                    // calculate the expected counts the slow way
+                    long[] expected = new long[histogram.bucketCount()];
+                    for (long timestamp : timestamps)
+                    {
+                        long instance = new DateTime(metrics, zone, timestamp).getInstance();
+                        long key = Instance.make(Instance.year(instance), Instance.month(instance),
+                                bucket == CalendarHistogram.Bucket.MONTH ? 1 : Instance.dayOfMonth(instance), 0, 0, 0);
+                        if (bucket == CalendarHistogram.Bucket.WEEK)
+                        {
+                            key = metrics.startOfWeek(key);
+                        }
+                        for (int i = 0; i < expected.length; ++i)
+                        {
+                            if (Instance.maskWeekday(histogram.bucketInstance(i)) == Instance.maskWeekday(key))
+                            {
+                                ++expected[i];
+                            }
+                        }
+                    }
+
+                    String message = metrics + " " + zone + " " + bucket;
+                    histogram.add(timestamps);
+                    assertArrayEquals(message, expected, histogram.counts());
+
+                    CalendarHistogram sortedHistogram = new CalendarHistogram(metrics, zone, bucket, DateTime.parse("20150101T120000Z").getTimestamp(), 60);
+                    sortedHistogram.add(sorted);
+                    assertArrayEquals(message, expected, sortedHistogram.counts());
+
+                    CalendarHistogram parallelHistogram = new CalendarHistogram(metrics, zone, bucket, DateTime.parse("20150101T120000Z").getTimestamp(),
+                            60);
+                    parallelHistogram.parallelAdd(timestamps);
+                    assertArrayEquals(message, expected, parallelHistogram.counts());
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testBusyMinutes()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        CalendarHistogram histogram = new CalendarHistogram(DateTime.GREGORIAN_CALENDAR_SCALE, berlin, CalendarHistogram.Bucket.DAY,
+                DateTime.parse("20150327T000000Z").getTimestamp(), 3);
+
+        assertEquals(DateTime.parse(berlin, "20150327T000000").getTimestamp(), histogram.bucketStart(0));
+        assertEquals(DateTime.parse(berlin, "20150329T000000").getTimestamp(), histogram.bucketStart(2));
+
+        long[] starts = {
+                // 2 hours across midnight
+                DateTime.parse(berlin, "20150327T230000").getTimestamp(),
+                // the entire 23 hour day of the DST change
+                DateTime.parse(berlin, "20150329T000000").getTimestamp(),
+                // starts before the histogram
+                DateTime.parse(berlin, "20150326T230000").getTimestamp(),
+                // after the histogram
+                DateTime.parse(berlin, "20150330T000000").getTimestamp() };
+        long[] ends = {
+                DateTime.parse(berlin, "20150328T010000").getTimestamp(),
+                DateTime.parse(berlin, "20150330T000000").getTimestamp(),
+                DateTime.parse(berlin, "20150327T003000").getTimestamp(),
+                DateTime.parse(berlin, "20150330T010000").getTimestamp() };
+
+        histogram.add(starts, ends);
+        assertArrayEquals(new long[] { 1, 0, 1 }, histogram.counts());
+        assertArrayEquals(new long[] { 60 + 30, 60, 23 * 60 }, histogram.busyMinutes());
+
+        CalendarHistogram parallelHistogram = new CalendarHistogram(DateTime.GREGORIAN_CALENDAR_SCALE, berlin, CalendarHistogram.Bucket.DAY,
+                DateTime.parse("20150327T000000Z").getTimestamp(), 3);
+        parallelHistogram.parallelAdd(starts, ends);
+        assertArrayEquals(histogram.counts(), parallelHistogram.counts());
+        assertArrayEquals(histogram.busyMinutes(), parallelHistogram.busyMinutes());
+    }
+
+
+    @Test
+    public void testBucketOf()
+    {
+        CalendarHistogram histogram = new CalendarHistogram(DateTime.GREGORIAN_CALENDAR_SCALE, null, CalendarHistogram.Bucket.MONTH,
+                DateTime.parse("20150215T000000Z").getTimestamp(), 12);
+        assertEquals(-1, histogram.bucketOf(DateTime.parse("20150131T235959Z").getTimestamp()));
+        assertEquals(0, histogram.bucketOf(DateTime.parse("20150201T000000Z").getTimestamp()));
+        assertEquals(11, histogram.bucketOf(DateTime.parse("20160131T235959Z").getTimestamp()));
+        assertEquals(-1, histogram.bucketOf(DateTime.parse("20160201T000000Z").getTimestamp()));
+        assertEquals(Instance.make(2015, 6, 1, 0, 0, 0), Instance.maskWeekday(histogram.bucketInstance(5)));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class CoarseClockTest
+{
+
+    @Test
+    public void testTime() throws InterruptedException
+    {
+        CoarseClock clock = new CoarseClock(10);
+        try
+        {
+            long before = System.currentTimeMillis();
+            long now = clock.currentTimeMillis();
+            assertTrue(now <= System.currentTimeMillis());
+            assertTrue(before - now < 1000);
+
+            // wait for the clock to advance
+            long start = System.currentTimeMillis();
+            while (clock.currentTimeMillis() == now)
+            {
+                assertTrue("clock doesn't advance", System.currentTimeMillis() - start < 10000);
+                Thread.sleep(5);
+            }
+            assertTrue(clock.currentTimeMillis() > now);
+        }
+        finally
+        {
+            clock.close();
+        }
+    }
+
+
+    @Test
+    public void testInstance() throws InterruptedException
+    {
+        CoarseClock clock = new CoarseClock(5);
+        try
+        {
+            for (int i = 0; i < 20; ++i)
+            {
+                for (TimeZone timeZone : new TimeZone[] { null, DateTime.UTC, TimeZone.getTimeZone("Europe/Berlin"), TimeZone.getTimeZone("Asia/Kolkata"),
+                        TimeZone.getTimeZone("America/New_York") })
+                {
+                    DateTime now = clock.now(timeZone);
+                    long expected = DateTime.GREGORIAN_CALENDAR_SCALE.toInstance(now.getTimestamp(), timeZone);
+                    assertEquals(expected, now.getInstance());
+                    assertEquals(timeZone == null ? DateTime.UTC : timeZone, now.getTimeZone());
+                    assertEquals(new DateTime(timeZone == null ? DateTime.UTC : timeZone, now.getTimestamp()), now);
+
+                    // the instance might belong to the next tick already
+                    long instance = clock.instance(timeZone);
+                    assertTrue(instance >= expected);
+                }
+                Thread.sleep(3);
+            }
+        }
+        finally
+        {
+            clock.close();
+        }
+    }
+
+
+    @Test
+    public void testDtStamp()
+    {
+        CoarseClock clock = new CoarseClock(1000);
+        try
+        {
+            long timestamp;
+            String dtStamp;
+            byte[] bytes = new byte[CoarseClock.DTSTAMP_LENGTH + 3];
+            ByteBuffer buffer = ByteBuffer.allocate(CoarseClock.DTSTAMP_LENGTH);
+            do
+            {
+                // repeat until all values have been read within the same tick
+                timestamp = clock.currentTimeMillis();
+                dtStamp = clock.dtStamp();
+                assertEquals(CoarseClock.DTSTAMP_LENGTH + 2, clock.writeDtStamp(bytes, 2));
+                buffer.clear();
+                clock.writeDtStamp(buffer);
+            }
+            while (timestamp != clock.currentTimeMillis());
+
+            assertEquals(new DateTime(DateTime.UTC, timestamp).toString(), dtStamp);
+            assertEquals(CoarseClock.DTSTAMP_LENGTH, dtStamp.length());
+            assertEquals(dtStamp, new String(bytes, 2, CoarseClock.DTSTAMP_LENGTH, StandardCharsets.US_ASCII));
+            assertEquals(dtStamp, new String(buffer.array(), StandardCharsets.US_ASCII));
+
+            try
+            {
+                clock.writeDtStamp(ByteBuffer.allocate(CoarseClock.DTSTAMP_LENGTH - 1));
+                fail("buffer overflow not detected");
+            }
+            catch (BufferOverflowException e)
+            {
+                // pass
+            }
+        }
+        finally
+        {
+            clock.close();
+        }
+    }
+
+
+    @Test
+    public void testClose() throws InterruptedException
+    {
+        CoarseClock clock = new CoarseClock(1);
+        clock.close();
+        Thread.sleep(50);
+        long now = clock.currentTimeMillis();
+        Thread.sleep(50);
+        assertEquals(now, clock.currentTimeMillis());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalTick()
+    {
+        new CoarseClock(0);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Shares freshly created {@link DateTime}s and {@link JulianCalendarMetrics} among several threads to make sure the lazily calculated fields are populated
+ * correctly when they are accessed concurrently.
+ */
+public class DateTimeConcurrencyTest
+{
+    private final static int THREADS = 4;
+    private final static int ROUNDS = 50;
+    private final static int DATES_PER_ROUND = 500;
+
+    private final static TimeZone[] TIME_ZONES = { null, DateTime.UTC, TimeZone.getTimeZone("Europe/Berlin"), TimeZone.getTimeZone("America/New_York"),
+            TimeZone.getTimeZone("Asia/Kolkata"), TimeZone.getTimeZone("Australia/Lord_Howe") };
+
+    private final static CalendarMetrics JULIAN_CALENDAR_SCALE = new JulianCalendarMetrics(Weekday.MO, 4);
+
+
+    /**
+     * A task that's executed by each thread of a test.
+     */
+    private interface Task
+    {
+        void run(int thread) throws Exception;
+    }
+
+
+    @Test
+    public void testLazyFields() throws InterruptedException
+    {
+        Random random = new Random(49);
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            final String[] values = new String[DATES_PER_ROUND];
+            final DateTime[] dateTimes = new DateTime[DATES_PER_ROUND];
+            final long[][] expected = new long[DATES_PER_ROUND][];
+            for (int i = 0; i < DATES_PER_ROUND; ++i)
+            {
+                TimeZone timeZone = TIME_ZONES[random.nextInt(TIME_ZONES.length)];
+                long timestamp = -2000000000000L + (long) (random.nextDouble() * 6000000000000L);
+                DateTime reference;
+                switch (i % 3)
+                {
+                    case 0:
+                        // from a timestamp, the instance is calculated lazily
+                        reference = new DateTime(timeZone == null ? DateTime.UTC : timeZone, timestamp);
+                        dateTimes[i] = new DateTime(reference.getTimeZone(), timestamp);
+                        break;
+                    case 1:
+                        // parsed, the timestamp is calculated lazily
+                        reference = new DateTime(timeZone == null ? DateTime.UTC : timeZone, timestamp);
+                        values[i] = reference.toString();
+                        reference = DateTime.parse(timeZone, values[i]);
+                        dateTimes[i] = DateTime.parse(timeZone, values[i]);
+                        break;
+                    default:
+                        // Julian calendar scale, the timestamp is calculated by the shared metrics
+                        reference = new DateTime(JULIAN_CALENDAR_SCALE, timeZone, timestamp);
+                        long instance = reference.getInstance();
+                        dateTimes[i] = new DateTime(JULIAN_CALENDAR_SCALE, timeZone, Instance.year(instance), Instance.month(instance),
+                                Instance.dayOfMonth(instance), Instance.hour(instance), Instance.minute(instance), Instance.second(instance));
+                        reference = new DateTime(JULIAN_CALENDAR_SCALE, timeZone, Instance.year(instance), Instance.month(instance),
+                                Instance.dayOfMonth(instance), Instance.hour(instance), Instance.minute(instance), Instance.second(instance));
+                }
+                expected[i] = new long[] { reference.getTimestamp(), reference.getInstance(), reference.getWeekOfYear(), reference.getDayOfWeek() };
+            }
+
+            runConcurrently(THREADS, new Task()
+            {
+                @Override
+                public void run(int thread)
+                {
+                    for (int j = 0; j < DATES_PER_ROUND; ++j)
+                    {
+                        // every thread starts at another position and uses a different order of getters
+                        int i = (j + thread * DATES_PER_ROUND / THREADS) % DATES_PER_ROUND;
+                        DateTime dateTime = dateTimes[i];
+                        long[] actual = new long[4];
+                        for (int k = 0; k < 4; ++k)
+                        {
+                            int getter = (k + thread + i) % 4;
+                            actual[getter] = get(dateTime, getter);
+                        }
+                        for (int k = 0; k < 4; ++k)
+                        {
+                            assertEquals(dateTime.toString() + " getter " + k, expected[i][k], actual[k]);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+
+    @Test
+    public void testSharedJulianCalendarMetrics() throws InterruptedException
+    {
+        final CalendarMetrics reference = new JulianCalendarMetrics(Weekday.MO, 4);
+        final long[] instances = new long[DATES_PER_ROUND];
+        final long[] expected = new long[DATES_PER_ROUND];
+        Random random = new Random(94);
+        for (int i = 0; i < DATES_PER_ROUND; ++i)
+        {
+            instances[i] = reference.toInstance(-2000000000000L + (long) (random.nextDouble() * 6000000000000L), DateTime.UTC);
+            expected[i] = reference.toMillis(instances[i], TIME_ZONES[i % TIME_ZONES.length]);
+        }
+
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            // a fresh instance in every round
+            final CalendarMetrics calendarMetrics = new JulianCalendarMetrics(Weekday.MO, 4);
+            runConcurrently(THREADS, new Task()
+            {
+                @Override
+                public void run(int thread)
+                {
+                    for (int j = 0; j < DATES_PER_ROUND; ++j)
+                    {
+                        int i = (j + thread * DATES_PER_ROUND / THREADS) % DATES_PER_ROUND;
+                        assertEquals(Instance.toString(instances[i]), expected[i], calendarMetrics.toMillis(instances[i], TIME_ZONES[i % TIME_ZONES.length]));
+                    }
+                }
+            });
+        }
+    }
+
+
+    private static long get(DateTime dateTime, int getter)
+    {
+        switch (getter)
+        {
+            case 0:
+                return dateTime.getTimestamp();
+            case 1:
+                return dateTime.getInstance();
+            case 2:
+                return dateTime.getWeekOfYear();
+            default:
+                return dateTime.getDayOfWeek();
+        }
+    }
+
+
+    /**
+     * Runs the given task in the given number of threads, which are released at the same time, and fails with the first exception or error of any thread.
+     */
+    private static void runConcurrently(int threadCount, final Task task) throws InterruptedException
+    {
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            final int thread = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startSignal.await();
+                        task.run(thread);
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        startSignal.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        if (failure.get() != null)
+        {
+            throw new AssertionError("task failed in one of the threads", failure.get());
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+
+public class DateTimeParseCacheTest
+{
+
+    @Test
+    public void testParse()
+    {
+        DateTimeParseCache cache = new DateTimeParseCache(64);
+        TimeZone berlin = TimeZoneCache.DEFAULT.timeZone("Europe/Berlin");
+        for (String string : new String[] { "20150101", "20150101T120000", "20150101T120000Z", "20150329T023000" })
+        {
+            for (TimeZone zone : new TimeZone[] { null, berlin })
+            {
+                DateTime expected = DateTime.parse(DateTime.GREGORIAN_CALENDAR_SCALE, zone, string);
+                DateTime actual = cache.parse(zone, string);
+                assertEquals(expected, actual);
+                assertEquals(expected.getTimestamp(), actual.getTimestamp());
+                assertEquals(expected.getTimeZone(), actual.getTimeZone());
+                assertEquals(expected.isAllDay(), actual.isAllDay());
+
+                // the second call returns the very same instance
+                assertSame(actual, cache.parse(zone, new StringBuilder(string).toString()));
+            }
+        }
+        assertEquals(8, cache.misses());
+        assertEquals(8, cache.hits());
+        assertEquals(0.5, cache.hitRate(), 0);
+
+        cache.resetStatistics();
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+        assertEquals(0, cache.hitRate(), 0);
+    }
+
+
+    @Test
+    public void testKey()
+    {
+        DateTimeParseCache cache = new DateTimeParseCache(64);
+        DateTime gregorian = cache.parse(null, "20150101T120000");
+        // different calendar scales and time zones result in different entries
+        DateTime julian = cache.parse(new JulianCalendarMetrics(Weekday.MO, 4), null, "20150101T120000");
+        assertNotSame(gregorian, julian);
+        assertEquals(new JulianCalendarMetrics(Weekday.MO, 4), julian.getCalendarMetrics());
+        DateTime berlin = cache.parse(TimeZone.getTimeZone("Europe/Berlin"), "20150101T120000");
+        assertNotSame(gregorian, berlin);
+        assertEquals("Europe/Berlin", berlin.getTimeZone().getID());
+
+        // equal calendar metrics share the same entry
+        assertSame(gregorian, cache.parse(new GregorianCalendarMetrics(Weekday.MO, 4), null, "20150101T120000"));
+
+        cache.clear();
+        assertNotSame(gregorian, cache.parse(null, "20150101T120000"));
+    }
+
+
+    @Test
+    public void testInvalid()
+    {
+        DateTimeParseCache cache = new DateTimeParseCache(64);
+        for (String string : new String[] { "2015010", "20150101X120000", "2015010aT120000" })
+        {
+            try
+            {
+                cache.parse(null, string);
+                fail("parsing " + string + " should fail");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+
+
+    @Test
+    public void testEviction()
+    {
+        // a tiny cache keeps working, even though entries are replaced all the time
+        DateTimeParseCache cache = new DateTimeParseCache(4);
+        DateTime start = DateTime.parse("20150101T000000Z");
+        for (int round = 0; round < 2; ++round)
+        {
+            for (int i = 0; i < 1000; ++i)
+            {
+                DateTime expected = start.addDuration(new Duration(1, 0, i * 3600));
+                assertEquals(expected, cache.parse(DateTime.UTC, expected.toString()));
+            }
+        }
+        assertEquals(2000, cache.misses() + cache.hits());
+    }
+
+
+    @Test
+    public void testClock()
+    {
+        DateTimeParseCache cache = new DateTimeParseCache(4);
+        DateTime hot = cache.parse(null, "20150101T000000");
+        // the hot entry is used between all insertions, so it's never evicted
+        for (int i = 0; i < 100; ++i)
+        {
+            cache.parse(null, String.format("2016%02d%02dT000000", i / 28 + 1, i % 28 + 1));
+            assertSame(hot, cache.parse(null, "20150101T000000"));
+        }
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException
+    {
+        final DateTimeParseCache cache = new DateTimeParseCache(128);
+        final TimeZone zone = TimeZoneCache.DEFAULT.timeZone("America/New_York");
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            final int offset = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 20000; ++i)
+                        {
+                            int day = (i * 7 + offset) % 300;
+                            String string = String.format("2015%02d%02dT%02d0000", day / 28 % 12 + 1, day % 28 + 1, day % 24);
+                            DateTime result = cache.parse(zone, string);
+                            assertEquals(DateTime.parse(zone, string).getTimestamp(), result.getTimestamp());
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacity()
+    {
+        new DateTimeParseCache(2);
+    }
+}
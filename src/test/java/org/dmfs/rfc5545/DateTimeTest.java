@@ -20,6 +20,8 @@ package org.dmfs.rfc5545;
 import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
 import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
 import org.dmfs.rfc5545.calendarmetrics.IslamicCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.TransitionPolicy;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -32,6 +34,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class DateTimeTest
@@ -98,6 +101,56 @@ public class DateTimeTest
     }
 
 
+    @Test
+    public void testCompareTo()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        TimeZone newYork = TimeZone.getTimeZone("America/New_York");
+
+        assertTrue(DateTime.parse("19700101").compareTo(DateTime.parse("19700102")) < 0);
+        assertTrue(DateTime.parse("19700102").compareTo(DateTime.parse("19700101")) > 0);
+        assertEquals(0, DateTime.parse("19700101T000000Z").compareTo(new DateTime(0)));
+        assertEquals(0, DateTime.parse(berlin, "19700101T010000").compareTo(new DateTime(0)));
+        assertTrue(DateTime.parse(berlin, "19700101T000000").compareTo(DateTime.parse(newYork, "19691231T190000")) < 0);
+        // all-day comes first
+        assertTrue(DateTime.parse("19700101").compareTo(DateTime.parse("19700101T000000")) < 0);
+        assertTrue(DateTime.parse("19700101T000000").compareTo(DateTime.parse("19700101")) > 0);
+
+        // compareTo agrees with after and before
+        DateTime[] dates = {
+                DateTime.parse("20150101"), DateTime.parse(berlin, "20150101T000000"), DateTime.parse(newYork, "20141231T180000"),
+                DateTime.parse("20141231T230000Z"), new DateTime(berlin, 1420066800000L), DateTime.parse("20150101T000000"),
+                new DateTime(newYork, 1420066800001L), DateTime.parse(berlin, "20150101T000001"), DateTime.parse("20141231") };
+        for (DateTime first : dates)
+        {
+            for (DateTime second : dates)
+            {
+                if (first.isAllDay() == second.isAllDay())
+                {
+                    assertEquals(first.after(second), first.compareTo(second) > 0);
+                    assertEquals(first.before(second), first.compareTo(second) < 0);
+                }
+                else
+                {
+                    assertTrue(!first.after(second) || first.compareTo(second) > 0);
+                    assertTrue(!first.before(second) || first.compareTo(second) < 0);
+                }
+                assertEquals(Integer.signum(first.compareTo(second)), -Integer.signum(second.compareTo(first)));
+            }
+        }
+
+        DateTime[] sorted = dates.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; ++i)
+        {
+            assertTrue(sorted[i - 1].compareTo(sorted[i]) <= 0);
+        }
+        assertEquals(DateTime.parse("20141231"), sorted[0]);
+        // floating values are treated like UTC
+        assertEquals(DateTime.parse("20150101T000000"), sorted[sorted.length - 1]);
+    }
+
+
     @Test
     public void testDateTimeCalendarMetricsDateTime()
     {
@@ -250,6 +303,58 @@ public class DateTimeTest
     }
 
 
+    @Test
+    public void testShiftTimeZoneCalendarMetrics()
+    {
+        CalendarMetrics julian = new JulianCalendarMetrics(Weekday.MO, 4);
+        DateTime original = new DateTime(julian, TimeZone.getTimeZone("Europe/Berlin"), 2015, 0, 1, 12, 0, 0);
+        DateTime shifted = original.shiftTimeZone(TimeZone.getTimeZone("America/New_York"));
+
+        // the calendar scale must not change
+        assertEquals(julian, shifted.getCalendarMetrics());
+        assertEquals(original.getTimestamp(), shifted.getTimestamp());
+        assertEquals(6, shifted.getHours());
+        assertEquals(1, shifted.getDayOfMonth());
+    }
+
+
+    @Test
+    public void testGetTimestampTransitionPolicy()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+
+        // a local time in a gap
+        DateTime gap = new DateTime(berlin, 2015, 2, 29, 2, 30, 0);
+        assertEquals(DateTime.parse("20150329T003000Z").getTimestamp(), gap.getTimestamp(TransitionPolicy.EARLIER));
+        assertEquals(DateTime.parse("20150329T013000Z").getTimestamp(), gap.getTimestamp(TransitionPolicy.LATER));
+        assertEquals(DateTime.parse("20150329T013000Z").getTimestamp(), gap.getTimestamp());
+
+        // an ambiguous local time
+        DateTime overlap = new DateTime(berlin, 2015, 9, 25, 2, 30, 0);
+        assertEquals(DateTime.parse("20151025T003000Z").getTimestamp(), overlap.getTimestamp(TransitionPolicy.EARLIER));
+        assertEquals(DateTime.parse("20151025T013000Z").getTimestamp(), overlap.getTimestamp(TransitionPolicy.LATER));
+        assertEquals(DateTime.parse("20151025T013000Z").getTimestamp(), overlap.getTimestamp());
+
+        for (DateTime dateTime : new DateTime[] { new DateTime(berlin, 2015, 2, 29, 2, 30, 0), new DateTime(berlin, 2015, 9, 25, 2, 30, 0) })
+        {
+            try
+            {
+                dateTime.getTimestamp(TransitionPolicy.REJECT);
+                fail("local time " + dateTime + " not rejected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // pass
+            }
+        }
+
+        // a regular local time and a known timestamp
+        assertEquals(DateTime.parse("20150701T100000Z").getTimestamp(),
+                new DateTime(berlin, 2015, 6, 1, 12, 0, 0).getTimestamp(TransitionPolicy.REJECT));
+        assertEquals(12345L, new DateTime(berlin, 12345L).getTimestamp(TransitionPolicy.REJECT));
+    }
+
+
     @Test
     public void testAddDuration()
     {
@@ -300,6 +405,54 @@ public class DateTimeTest
     }
 
 
+    @Test
+    public void testTryParse()
+    {
+        for (String string : new String[] { "20150101", "20151231T235959", "20160229T120000Z", "00010101", "99991231T000000" })
+        {
+            long result = DateTime.tryParse(string);
+            assertFalse(string, DateTime.isParseError(result));
+            DateTime expected = DateTime.parse(string);
+            assertEquals(string, expected.getInstance(), result);
+        }
+
+        CalendarMetrics julian = new JulianCalendarMetrics(Weekday.MO, 4);
+        assertFalse(DateTime.isParseError(DateTime.tryParse(julian, "19000229")));
+        assertTrue(DateTime.isParseError(DateTime.tryParse("19000229")));
+    }
+
+
+    @Test
+    public void testTryParseErrors()
+    {
+        assertParseError("", DateTime.PARSE_ERROR_SYNTAX, 0);
+        assertParseError("2015", DateTime.PARSE_ERROR_SYNTAX, 4);
+        assertParseError("2015a101", DateTime.PARSE_ERROR_SYNTAX, 4);
+        assertParseError("20150101Z", DateTime.PARSE_ERROR_SYNTAX, 8);
+        assertParseError("20150101T", DateTime.PARSE_ERROR_SYNTAX, 9);
+        assertParseError("20150101T1200", DateTime.PARSE_ERROR_SYNTAX, 13);
+        assertParseError("20150101T12000x", DateTime.PARSE_ERROR_SYNTAX, 14);
+        assertParseError("20150101T120000X", DateTime.PARSE_ERROR_SYNTAX, 15);
+        assertParseError("20150101T120000Z0", DateTime.PARSE_ERROR_SYNTAX, 16);
+        assertParseError("20150001", DateTime.PARSE_ERROR_RANGE, 4);
+        assertParseError("20151301", DateTime.PARSE_ERROR_RANGE, 4);
+        assertParseError("20150100", DateTime.PARSE_ERROR_RANGE, 6);
+        assertParseError("20150229", DateTime.PARSE_ERROR_RANGE, 6);
+        assertParseError("20150101T240000", DateTime.PARSE_ERROR_RANGE, 9);
+        assertParseError("20150101T236000", DateTime.PARSE_ERROR_RANGE, 11);
+        assertParseError("20150101T235960Z", DateTime.PARSE_ERROR_RANGE, 13);
+    }
+
+
+    private static void assertParseError(String string, int type, int position)
+    {
+        long result = DateTime.tryParse(string);
+        assertTrue(string, DateTime.isParseError(result));
+        assertEquals(string, type, DateTime.parseErrorType(result));
+        assertEquals(string, position, DateTime.parseErrorPosition(result));
+    }
+
+
     @Test
     public void testDateTimeIntIntInt()
     {
@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class DurationsTest
+{
+    private final static String[] DURATIONS = { "P0D", "-P0D", "PT1S", "-PT1S", "PT59M", "PT1H", "-PT1H30M", "PT23H59M59S", "PT24H", "P1D", "-P1D", "P1DT1S",
+            "-P1DT12H", "P1W", "-P2W", "P6D", "P8D", "PT100H", "P365D", "P10000W", "-P99999DT1H2M3S" };
+
+
+    @Test
+    public void testMake()
+    {
+        for (String string : DURATIONS)
+        {
+            Duration duration = Duration.parse(string);
+            long packed = Durations.make(duration.getSign(), duration.getRawDays(), duration.getSecondsOfDay());
+            assertEquals(string, packed, Durations.of(duration));
+            assertEquals(string, duration.getSign(), Durations.sign(packed));
+            assertEquals(string, duration.getRawDays(), Durations.days(packed));
+            assertEquals(string, duration.getSecondsOfDay(), Durations.secondsOfDay(packed));
+            assertEquals(string, duration.isZero(), Durations.isZero(packed));
+            assertEquals(string, duration.toMillis(), Durations.toMillis(packed));
+            assertEquals(string, duration, Durations.toDuration(packed));
+        }
+
+        long max = Durations.make(-1, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertEquals(-1, Durations.sign(max));
+        assertEquals(Integer.MAX_VALUE, Durations.days(max));
+        assertEquals(Integer.MAX_VALUE, Durations.secondsOfDay(max));
+        assertTrue(Durations.isZero(Durations.ZERO));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMakeInvalidSign()
+    {
+        Durations.make(0, 1, 0);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMakeNegativeDays()
+    {
+        Durations.make(1, -1, 0);
+    }
+
+
+    @Test
+    public void testParse()
+    {
+        for (String string : DURATIONS)
+        {
+            long expected = Durations.of(Duration.parse(string));
+            assertEquals(string, expected, Durations.parse(string));
+            assertEquals(string, expected, Durations.parse("x" + string + "yz", 1, string.length() + 1));
+            byte[] bytes = ("xx" + string + "y").getBytes(StandardCharsets.US_ASCII);
+            assertEquals(string, expected, Durations.parse(bytes, 2, string.length() + 2));
+            assertEquals(string, expected, Durations.parse(string.toLowerCase()));
+        }
+
+        assertEquals(Durations.make(1, 0, 3601), Durations.parse("PT1H1S"));
+        assertEquals(Durations.make(1, 0, 90000), Durations.parse("+PT25H"));
+        assertEquals(Durations.make(1, Integer.MAX_VALUE, Integer.MAX_VALUE), Durations.parse("P2147483647DT2147483647S"));
+        assertEquals(Durations.make(1, 70, 0), Durations.parse("P10W"));
+    }
+
+
+    @Test
+    public void testParseErrors()
+    {
+        assertParseError("", 0);
+        assertParseError("P", 1);
+        assertParseError("-P", 2);
+        assertParseError("P1", 2);
+        assertParseError("P1DT", 4);
+        assertParseError("PT", 2);
+        assertParseError("PT1", 3);
+        assertParseError("1D", 0);
+        assertParseError("+-P1D", 1);
+        assertParseError("PD", 1);
+        assertParseError("PTH", 2);
+        assertParseError("P1H", 2);
+        assertParseError("PT1D", 3);
+        assertParseError("P1W1D", 3);
+        assertParseError("P1WT1H", 3);
+        assertParseError("P1DT1H2H", 7);
+        assertParseError("PT1M1H", 5);
+        assertParseError("PT1S1M", 4);
+        assertParseError("P1D ", 3);
+        assertParseError("P1\u00e4D", 2);
+        assertParseError("P2147483648D", 10);
+        assertParseError("P306783379W", 10);
+        assertParseError("PT596524H", 8);
+        assertParseError("PT596523H14M8S", 13);
+    }
+
+
+    private static void assertParseError(String string, int position)
+    {
+        long result = Durations.parse(string);
+        assertTrue(string, Durations.isError(result));
+        assertEquals(string, position, Durations.errorPosition(result));
+
+        result = Durations.parse("xx" + string + "y", 2, string.length() + 2);
+        assertTrue(string, Durations.isError(result));
+        assertEquals(string, position + 2, Durations.errorPosition(result));
+
+        result = Durations.parse(string.getBytes(StandardCharsets.ISO_8859_1), 0, string.length());
+        assertTrue(string, Durations.isError(result));
+        assertEquals(string, position, Durations.errorPosition(result));
+    }
+
+
+    @Test
+    public void testAdd()
+    {
+        for (String first : DURATIONS)
+        {
+            for (String second : DURATIONS)
+            {
+                if (Duration.parse(first).getRawDays() > 20000 || Duration.parse(second).getRawDays() > 20000)
+                {
+                    // Duration.addDuration overflows when it converts these into seconds
+                    continue;
+                }
+                Duration expected = Duration.parse(first).addDuration(Duration.parse(second));
+                long actual = Durations.add(Durations.of(Duration.parse(first)), Durations.of(Duration.parse(second)));
+                String message = first + " + " + second;
+                assertEquals(message, expected.getSign(), Durations.sign(actual));
+                assertEquals(message, expected.getRawDays(), Durations.days(actual));
+                assertEquals(message, expected.getSecondsOfDay(), Durations.secondsOfDay(actual));
+            }
+        }
+
+        // large values are added without overflow
+        long large = Durations.add(Durations.of(Duration.parse("P10000W")), Durations.of(Duration.parse("-PT1H")));
+        assertEquals(1, Durations.sign(large));
+        assertEquals(69999, Durations.days(large));
+        assertEquals(23 * 3600, Durations.secondsOfDay(large));
+    }
+
+
+    @Test(expected = ArithmeticException.class)
+    public void testAddOverflow()
+    {
+        Durations.add(Durations.make(1, Integer.MAX_VALUE, 0), Durations.make(1, 1, 0));
+    }
+
+
+    @Test
+    public void testNegate()
+    {
+        for (String string : DURATIONS)
+        {
+            long packed = Durations.of(Duration.parse(string));
+            long negated = Durations.negate(packed);
+            assertEquals(string, -Durations.sign(packed), Durations.sign(negated));
+            assertEquals(string, Durations.days(packed), Durations.days(negated));
+            assertEquals(string, Durations.secondsOfDay(packed), Durations.secondsOfDay(negated));
+            assertEquals(string, packed, Durations.negate(negated));
+            assertTrue(string, Durations.isZero(Durations.add(packed, negated)));
+        }
+    }
+
+
+    @Test
+    public void testCompare()
+    {
+        for (String first : DURATIONS)
+        {
+            for (String second : DURATIONS)
+            {
+                long a = Durations.of(Duration.parse(first));
+                long b = Durations.of(Duration.parse(second));
+                int result = Durations.compare(a, b);
+                assertEquals(first + " " + second, -Integer.signum(result), Integer.signum(Durations.compare(b, a)));
+                if (Durations.toMillis(a) != Durations.toMillis(b))
+                {
+                    assertEquals(first + " " + second, Long.signum(Durations.toMillis(a) - Durations.toMillis(b)), Integer.signum(result));
+                }
+            }
+        }
+        assertEquals(0, Durations.compare(Durations.of(Duration.parse("P0D")), Durations.of(Duration.parse("-P0D"))));
+        assertTrue(Durations.compare(Durations.of(Duration.parse("PT24H")), Durations.of(Duration.parse("P1D"))) < 0);
+        assertTrue(Durations.compare(Durations.of(Duration.parse("-P1D")), Durations.of(Duration.parse("-PT24H"))) < 0);
+        assertEquals(0, Durations.compare(Durations.of(Duration.parse("P1D")), Durations.of(Duration.parse("P1D"))));
+    }
+
+
+    @Test
+    public void testAddTo()
+    {
+        long[] timestamps = { DateTime.parse("20150328T023000Z").getTimestamp(), DateTime.parse("20150328T230000Z").getTimestamp() + 123,
+                DateTime.parse("20151024T003000Z").getTimestamp(), DateTime.parse("20151025T003000Z").getTimestamp() + 999,
+                DateTime.parse("20160101T000000Z").getTimestamp() };
+        for (TimeZone zone : new TimeZone[] { null, TimeZone.getTimeZone("UTC"), TimeZone.getTimeZone("Asia/Kolkata"), TimeZone.getTimeZone("Europe/Berlin"),
+                TimeZone.getTimeZone("America/New_York") })
+        {
+            for (long timestamp : timestamps)
+            {
+                for (String string : DURATIONS)
+                {
+                    Duration duration = Duration.parse(string);
+                    assertEquals(zone + " " + timestamp + " " + string, duration.addTo(zone, timestamp),
+                            Durations.addTo(zone, timestamp, Durations.of(duration)));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testWriteTo() throws IOException
+    {
+        for (String string : DURATIONS)
+        {
+            Duration duration = Duration.parse(string);
+            long packed = Durations.of(duration);
+            assertEquals(string, duration.toString(), Durations.toString(packed));
+
+            StringWriter writer = new StringWriter();
+            Durations.writeTo(writer, packed);
+            assertEquals(string, duration.toString(), writer.toString());
+        }
+    }
+
+
+    /**
+     * A straightforward formatter to compare the results with.
+     */
+    private static String format(int sign, int days, int time)
+    {
+        StringBuilder result = new StringBuilder();
+        if (sign < 0 && (days > 0 || time > 0))
+        {
+            result.append('-');
+        }
+        result.append('P');
+        if (days > 0 && days % 7 == 0 && time == 0)
+        {
+            return result.append(days / 7).append('W').toString();
+        }
+        if (days > 0)
+        {
+            result.append(days).append('D');
+        }
+        if (time > 0)
+        {
+            result.append('T');
+            if (time >= 3600)
+            {
+                result.append(time / 3600).append('H');
+            }
+            if (time / 60 % 60 > 0)
+            {
+                result.append(time / 60 % 60).append('M');
+            }
+            if (time % 60 > 0)
+            {
+                result.append(time % 60).append('S');
+            }
+        }
+        else if (days == 0)
+        {
+            result.append("0D");
+        }
+        return result.toString();
+    }
+
+
+    @Test
+    public void testWriteToBuffers() throws IOException
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; ++i)
+        {
+            int sign = random.nextBoolean() ? 1 : -1;
+            int days;
+            int time;
+            switch (i % 4)
+            {
+                case 0:
+                    // cached durations
+                    days = 0;
+                    time = random.nextInt(24 * 12 + 1) * 300;
+                    break;
+                case 1:
+                    days = random.nextInt(40);
+                    time = 0;
+                    break;
+                case 2:
+                    days = random.nextInt(1000);
+                    time = random.nextInt(100000);
+                    break;
+                default:
+                    days = random.nextInt(Integer.MAX_VALUE);
+                    time = random.nextInt(Integer.MAX_VALUE);
+            }
+            long duration = Durations.make(sign, days, time);
+            String expected = format(sign, days, time);
+
+            assertEquals(expected, Durations.toString(duration));
+            assertEquals(expected, Durations.length(duration), expected.length());
+            assertTrue(expected, expected.length() <= Durations.MAX_LENGTH);
+
+            byte[] bytes = new byte[Durations.MAX_LENGTH + 5];
+            assertEquals(expected, 3 + expected.length(), Durations.writeTo(bytes, 3, duration));
+            assertEquals(expected, new String(bytes, 3, expected.length(), StandardCharsets.US_ASCII));
+
+            for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(40), ByteBuffer.allocateDirect(40),
+                    ByteBuffer.wrap(new byte[50], 5, 40).slice() })
+            {
+                buffer.put((byte) 'x');
+                Durations.writeTo(buffer, duration);
+                assertEquals(expected, expected.length() + 1, buffer.position());
+                buffer.flip();
+                buffer.get();
+                byte[] written = new byte[buffer.remaining()];
+                buffer.get(written);
+                assertEquals(expected, new String(written, StandardCharsets.US_ASCII));
+            }
+
+            CharBuffer chars = CharBuffer.allocate(40);
+            Durations.writeTo(chars, duration);
+            chars.flip();
+            assertEquals(expected, chars.toString());
+
+            StringBuilder builder = new StringBuilder();
+            Durations.writeTo(builder, duration);
+            assertEquals(expected, builder.toString());
+
+            StringWriter writer = new StringWriter();
+            Durations.writeTo(writer, duration);
+            assertEquals(expected, writer.toString());
+
+            if (days < 100000 && time < 100000)
+            {
+                assertEquals(expected, Durations.toDuration(duration).toString());
+            }
+        }
+    }
+
+
+    @Test
+    public void testWriteToBufferOverflow()
+    {
+        long duration = Durations.make(-1, 12, 3723);
+        ByteBuffer bytes = ByteBuffer.allocate(Durations.length(duration) - 1);
+        try
+        {
+            Durations.writeTo(bytes, duration);
+            fail("buffer overflow not detected");
+        }
+        catch (BufferOverflowException e)
+        {
+            // pass
+        }
+        assertEquals(0, bytes.position());
+
+        CharBuffer chars = CharBuffer.allocate(Durations.length(duration) - 1);
+        try
+        {
+            Durations.writeTo(chars, duration);
+            fail("buffer overflow not detected");
+        }
+        catch (BufferOverflowException e)
+        {
+            // pass
+        }
+        assertEquals(0, chars.position());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+
+
+public class FreeBusyTest
+{
+
+    /**
+     * Calculates the busy periods of the given occurrences in minute resolution the naive way.
+     */
+    private static long[] expected(long[] starts, long[] ends, int minutes)
+    {
+        boolean[] busy = new boolean[minutes];
+        for (int i = 0; i < starts.length; ++i)
+        {
+            for (long minute = starts[i]; minute < ends[i]; ++minute)
+            {
+                busy[(int) minute] = true;
+            }
+        }
+
+        long[] result = new long[minutes * 2];
+        int count = 0;
+        for (int minute = 0; minute < minutes; ++minute)
+        {
+            if (busy[minute] && (minute == 0 || !busy[minute - 1]))
+            {
+                result[count++] = minute;
+            }
+            if (busy[minute] && (minute == minutes - 1 || !busy[minute + 1]))
+            {
+                result[count++] = minute + 1;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+
+    private static long[][] random(Random random, int count, int minutes, int maxLength)
+    {
+        long[] starts = new long[count];
+        long[] ends = new long[count];
+        for (int i = 0; i < count; ++i)
+        {
+            starts[i] = random.nextInt(minutes - maxLength);
+            ends[i] = starts[i] + random.nextInt(maxLength + 1);
+        }
+        return new long[][] { starts, ends };
+    }
+
+
+    @Test
+    public void testCoalesce()
+    {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; ++run)
+        {
+            long[][] occurrences = random(random, random.nextInt(100), 2000, random.nextInt(50) + 1);
+            long[] starts = occurrences[0].clone();
+            long[] ends = occurrences[1].clone();
+            long[] expected = expected(starts, ends, 2000);
+            assertArrayEquals(expected, FreeBusy.coalesce(starts, ends));
+            assertArrayEquals(expected, FreeBusy.parallelCoalesce(starts, ends));
+            // the input is not modified
+            assertArrayEquals(occurrences[0], starts);
+            assertArrayEquals(occurrences[1], ends);
+        }
+    }
+
+
+    @Test
+    public void testParallelCoalesce()
+    {
+        long[][] occurrences = random(new Random(1), 100000, 1000000, 20);
+        long[] expected = expected(occurrences[0], occurrences[1], 1000000);
+        assertArrayEquals(expected, FreeBusy.parallelCoalesce(occurrences[0], occurrences[1]));
+        assertArrayEquals(expected, FreeBusy.coalesce(occurrences[0], occurrences[1]));
+    }
+
+
+    @Test
+    public void testMerge()
+    {
+        Random random = new Random(4711);
+        for (int run = 0; run < 200; ++run)
+        {
+            int calendars = random.nextInt(10);
+            long[][] busy = new long[calendars][];
+            long[] allStarts = new long[0];
+            long[] allEnds = new long[0];
+            for (int i = 0; i < calendars; ++i)
+            {
+                long[][] occurrences = random(random, random.nextInt(30), 2000, random.nextInt(100) + 1);
+                busy[i] = FreeBusy.coalesce(occurrences[0], occurrences[1]);
+                allStarts = concat(allStarts, occurrences[0]);
+                allEnds = concat(allEnds, occurrences[1]);
+            }
+            assertArrayEquals(expected(allStarts, allEnds, 2000), FreeBusy.merge(busy));
+        }
+
+        // overlapping periods of the same input
+        assertArrayEquals(new long[] { 1, 10, 12, 13 }, FreeBusy.merge(new long[] { 1, 5, 2, 8, 12, 13 }, new long[] { 3, 10 }, new long[0]));
+    }
+
+
+    @Test
+    public void testDurations()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        long[] starts = { DateTime.parse(berlin, "20150328T120000").getTimestamp(), DateTime.parse(berlin, "20150329T110000").getTimestamp() };
+
+        // one day on the day of the DST change is only 23 hours
+        assertArrayEquals(new long[] { starts[0], DateTime.parse(berlin, "20150329T120000").getTimestamp() },
+                FreeBusy.coalesce(berlin, new long[] { starts[0] }, Duration.parse("P1D")));
+        // both days overlap
+        assertArrayEquals(new long[] { starts[0], DateTime.parse(berlin, "20150330T110000").getTimestamp() },
+                FreeBusy.coalesce(berlin, starts, Duration.parse("P1D")));
+        assertArrayEquals(new long[] { starts[0], starts[0] + 3600000, starts[1], DateTime.parse(berlin, "20150330T110000").getTimestamp() },
+                FreeBusy.coalesce(berlin, starts, new Duration[] { Duration.parse("PT1H"), Duration.parse("P1D") }));
+    }
+
+
+    private static long[] concat(long[] first, long[] second)
+    {
+        long[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
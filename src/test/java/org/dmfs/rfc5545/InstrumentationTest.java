@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+public class InstrumentationTest
+{
+
+    @Test
+    public void testRecord()
+    {
+        // use a custom zone, so other tests don't interfere
+        TimeZone zone = new SimpleTimeZone(3600000, "InstrumentationTest/Record");
+        String key = "TO_MILLIS/GREGORIAN/InstrumentationTest/Record";
+        Instrumentation.MXBean bean = new Instrumentation.MXBean();
+
+        long start = System.nanoTime();
+        Instrumentation.record(Instrumentation.Operation.TO_MILLIS, new GregorianCalendarMetrics(Weekday.MO, 4), zone, start);
+        Instrumentation.record(Instrumentation.Operation.TO_MILLIS, new GregorianCalendarMetrics(Weekday.MO, 4), zone, start - 1000000);
+
+        assertEquals(Long.valueOf(2), bean.getCounts().get(key));
+        long[] histogram = bean.getHistograms().get(key);
+        long sum = 0;
+        for (long count : histogram)
+        {
+            sum += count;
+        }
+        assertEquals(2, sum);
+        // the second invocation took at least 1ms, i.e. it's in a bucket >= 2^19ns
+        long slow = 0;
+        for (int i = 19; i < histogram.length; ++i)
+        {
+            slow += histogram[i];
+        }
+        assertEquals(1, slow);
+
+        bean.reset();
+        assertEquals(Long.valueOf(0), bean.getCounts().get(key));
+        assertEquals(Long.valueOf(0), bean.getTotalNanos().get(key));
+    }
+
+
+    @Test
+    public void testProbes()
+    {
+        TimeZone zone = new SimpleTimeZone(3600000, "InstrumentationTest/Probes");
+        Instrumentation.MXBean bean = new Instrumentation.MXBean();
+        DateTime dateTime = DateTime.parse(new JulianCalendarMetrics(Weekday.MO, 4), zone, "20150101T120000");
+        dateTime.getTimestamp();
+        new DateTime(new JulianCalendarMetrics(Weekday.MO, 4), zone, dateTime.getTimestamp()).getInstance();
+
+        if (Instrumentation.ENABLED)
+        {
+            assertEquals(Long.valueOf(1), bean.getCounts().get("PARSE_DATE_TIME/JULIAN/InstrumentationTest/Probes"));
+            assertEquals(Long.valueOf(1), bean.getCounts().get("TIMESTAMP/JULIAN/InstrumentationTest/Probes"));
+            assertEquals(Long.valueOf(1), bean.getCounts().get("INSTANCE/JULIAN/InstrumentationTest/Probes"));
+            assertEquals(Long.valueOf(1), bean.getCounts().get("TO_MILLIS/JULIAN/InstrumentationTest/Probes"));
+            assertEquals(Long.valueOf(1), bean.getCounts().get("TO_INSTANCE/JULIAN/InstrumentationTest/Probes"));
+            // the delegation to the Gregorian calendar is not recorded
+            assertNull(bean.getCounts().get("TO_MILLIS/GREGORIAN/InstrumentationTest/Probes"));
+        }
+        else
+        {
+            assertNull(bean.getCounts().get("PARSE_DATE_TIME/JULIAN/InstrumentationTest/Probes"));
+            assertNull(bean.getCounts().get("TO_MILLIS/JULIAN/InstrumentationTest/Probes"));
+        }
+    }
+
+
+    @Test
+    public void testRegisterMXBean() throws Exception
+    {
+        Instrumentation.registerMXBean();
+        // registering again does no harm
+        Instrumentation.registerMXBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Instrumentation.MXBEAN_NAME);
+        assertEquals(Instrumentation.ENABLED, server.getAttribute(name, "Enabled"));
+        assertNotNull((TabularData) server.getAttribute(name, "Counts"));
+        assertNotNull((TabularData) server.getAttribute(name, "Histograms"));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class LazyDateTimeTest
+{
+    private final static String[] TESTDATES = {
+            "19000101", "20151231", "19000101T000000", "19700101T020000", "20140330T070000", "20140414T132231", "19700101T020000Z", "20140414T132231Z" };
+
+
+    @Test
+    public void testFields()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        for (String testdate : TESTDATES)
+        {
+            DateTime expected = DateTime.parse(berlin, testdate);
+            LazyDateTime lazy = new LazyDateTime(berlin, testdate);
+
+            assertEquals(expected.isAllDay(), lazy.isAllDay());
+            assertEquals(expected.isFloating(), lazy.isFloating());
+            assertEquals(expected.getTimeZone(), lazy.getTimeZone());
+            assertEquals(expected.getYear(), lazy.getYear());
+            assertEquals(expected.getMonth(), lazy.getMonth());
+            assertEquals(expected.getDayOfMonth(), lazy.getDayOfMonth());
+            assertEquals(expected.getHours(), lazy.getHours());
+            assertEquals(expected.getMinutes(), lazy.getMinutes());
+            assertEquals(expected.getSeconds(), lazy.getSeconds());
+            assertEquals(expected.getInstance(), lazy.getInstance());
+            // fields must not change after the instance has been materialized
+            assertEquals(expected.getYear(), lazy.getYear());
+            assertEquals(expected.getSeconds(), lazy.getSeconds());
+            assertEquals(expected.getTimestamp(), lazy.getTimestamp());
+            assertEquals(expected, lazy.toDateTime());
+            assertEquals(testdate, lazy.toString());
+        }
+    }
+
+
+    @Test
+    public void testRange()
+    {
+        String line = "DTSTART;TZID=Europe/Berlin:20140414T132231";
+        LazyDateTime lazy = new LazyDateTime(DateTime.GREGORIAN_CALENDAR_SCALE, TimeZone.getTimeZone("Europe/Berlin"), line, 27, line.length());
+        assertFalse(lazy.isAllDay());
+        assertEquals(2014, lazy.getYear());
+        assertEquals(13, lazy.getHours());
+        assertEquals(DateTime.parse("Europe/Berlin", "20140414T132231"), lazy.toDateTime());
+        assertEquals("20140414T132231", lazy.toString());
+    }
+
+
+    @Test
+    public void testLazyDecoding()
+    {
+        // the year is valid, so it can be decoded even though the month is not
+        LazyDateTime lazy = new LazyDateTime("2015XX01");
+        assertTrue(lazy.isAllDay());
+        assertNull(lazy.getTimeZone());
+        assertEquals(2015, lazy.getYear());
+        assertEquals(1, lazy.getDayOfMonth());
+
+        try
+        {
+            lazy.getMonth();
+            fail("getMonth is expected to throw");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            lazy.getInstance();
+            fail("getInstance is expected to throw");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void testIllegalMonth()
+    {
+        for (String illegal : new String[] { "20150001", "20150001T120000", "20150001T120000Z" })
+        {
+            LazyDateTime lazy = new LazyDateTime(illegal);
+            assertEquals(2015, lazy.getYear());
+            assertEquals(1, lazy.getDayOfMonth());
+
+            try
+            {
+                lazy.getMonth();
+                fail("getMonth is expected to throw when parsing month 00: " + illegal);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+
+            try
+            {
+                lazy.getInstance();
+                fail("getInstance is expected to throw when parsing month 00: " + illegal);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+
+
+    @Test
+    public void testIllegalForm()
+    {
+        for (String illegal : new String[] { "", "2015010", "201501011", "20150101X000000", "20150101T000000X", "20150101T0000000Z" })
+        {
+            try
+            {
+                new LazyDateTime(illegal);
+                fail("constructor is expected to throw when parsing: " + illegal);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+}
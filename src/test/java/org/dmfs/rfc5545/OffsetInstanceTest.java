@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class OffsetInstanceTest
+{
+
+    @Test
+    public void testMake()
+    {
+        for (int offset : new int[] { 0, 15 * 60000, -15 * 60000, 5 * 3600000 + 45 * 60000, -12 * 3600000, 14 * 3600000, -32 * 3600000,
+                31 * 3600000 + 45 * 60000 })
+        {
+            long i = OffsetInstance.make(2000, 12, 31, 23, 59, 60, 999, offset);
+            assertEquals(2000, OffsetInstance.year(i));
+            assertEquals(12, OffsetInstance.month(i));
+            assertEquals(31, OffsetInstance.dayOfMonth(i));
+            assertEquals(23, OffsetInstance.hour(i));
+            assertEquals(59, OffsetInstance.minute(i));
+            assertEquals(60, OffsetInstance.second(i));
+            assertEquals(999, OffsetInstance.millis(i));
+            assertEquals(offset, OffsetInstance.offset(i));
+        }
+
+        long i = OffsetInstance.of(Instance.make(262143, 0, 1, 0, 0, 0, 3), 0, 0);
+        assertEquals(262143, OffsetInstance.year(i));
+        assertEquals(0, OffsetInstance.month(i));
+        assertEquals(1, OffsetInstance.dayOfMonth(i));
+        assertEquals(0, OffsetInstance.hour(i));
+        assertEquals(0, OffsetInstance.millis(i));
+        assertEquals(0, OffsetInstance.offset(i));
+        assertEquals(Instance.make(262143, 0, 1, 0, 0, 0), OffsetInstance.toInstance(i));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMakeIllegalOffset()
+    {
+        OffsetInstance.make(2000, 0, 1, 0, 0, 0, 0, 2 * 3600000 + 35 * 60000 + 16000);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMakeOffsetOutOfRange()
+    {
+        OffsetInstance.make(2000, 0, 1, 0, 0, 0, 0, 32 * 3600000);
+    }
+
+
+    @Test
+    public void testOrder()
+    {
+        assertTrue(OffsetInstance.make(2000, 0, 1, 0, 0, 0, 1, 3600000) > OffsetInstance.make(2000, 0, 1, 0, 0, 0, 0, 3600000));
+        assertTrue(OffsetInstance.make(2000, 0, 1, 0, 0, 1, 0, 3600000) > OffsetInstance.make(2000, 0, 1, 0, 0, 0, 999, 3600000));
+        assertTrue(OffsetInstance.make(2001, 0, 1, 0, 0, 0, 0, -3600000) > OffsetInstance.make(2000, 11, 31, 23, 59, 59, 999, 3600000));
+    }
+
+
+    @Test
+    public void testConversion()
+    {
+        Random random = new Random(13);
+        for (String zone : new String[] { "UTC", "Europe/Berlin", "America/New_York", "Asia/Kolkata", "Asia/Kathmandu", "Pacific/Chatham",
+                "Australia/Lord_Howe" })
+        {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            for (CalendarMetrics calendarMetrics : new CalendarMetrics[] { DateTime.GREGORIAN_CALENDAR_SCALE, new JulianCalendarMetrics(Weekday.MO, 4) })
+            {
+                for (int n = 0; n < 10000; ++n)
+                {
+                    // 1950 to 2100
+                    long timestamp = -631152000000L + (long) (random.nextDouble() * 4733510400000L);
+                    long offsetInstance = OffsetInstance.of(calendarMetrics, timestamp, timeZone);
+                    String message = zone + " " + timestamp;
+
+                    assertEquals(message, timeZone.getOffset(timestamp), OffsetInstance.offset(offsetInstance));
+                    assertEquals(message, calendarMetrics.toInstance(timestamp, timeZone), Instance.maskWeekday(OffsetInstance.toInstance(offsetInstance)));
+                    assertEquals(message, Math.floorMod(timestamp, 1000L), OffsetInstance.millis(offsetInstance));
+                    assertEquals(message, timestamp, OffsetInstance.toMillis(calendarMetrics, offsetInstance));
+
+                    long utc = OffsetInstance.withOffset(calendarMetrics, offsetInstance, 0);
+                    assertEquals(message, 0, OffsetInstance.offset(utc));
+                    assertEquals(message, timestamp, OffsetInstance.toMillis(calendarMetrics, utc));
+                    assertEquals(message, OffsetInstance.of(calendarMetrics, timestamp, null), utc);
+                    assertEquals(message, offsetInstance, OffsetInstance.withOffset(calendarMetrics, utc, OffsetInstance.offset(offsetInstance)));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testWriteTo() throws IOException
+    {
+        long i = OffsetInstance.make(2015, 2, 4, 20, 30, 5, 123, -(4 * 3600000 + 30 * 60000));
+        assertEquals("20150304T203005", OffsetInstance.toString(i));
+
+        StringBuilder builder = new StringBuilder();
+        OffsetInstance.writeTo(builder, i, true);
+        OffsetInstance.writeOffsetTo(builder, i);
+        assertEquals("20150304-0430", builder.toString());
+
+        StringWriter writer = new StringWriter();
+        OffsetInstance.writeTo(writer, i, false);
+        assertEquals("20150304T203005", writer.toString());
+
+        builder = new StringBuilder();
+        OffsetInstance.writeOffsetTo(builder, OffsetInstance.make(2015, 2, 4, 20, 30, 5, 123, 13 * 3600000 + 45 * 60000));
+        OffsetInstance.writeOffsetTo(builder, OffsetInstance.make(2015, 2, 4, 20, 30, 5, 123, 0));
+        assertEquals("+1345+0000", builder.toString());
+    }
+}
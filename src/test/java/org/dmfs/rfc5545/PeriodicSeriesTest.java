@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class PeriodicSeriesTest
+{
+    private final static String[] DURATIONS = { "PT0S", "PT1H", "PT25H", "P1D", "P1DT2H", "P2W", "P40D" };
+
+    private final static DateTime[] STARTS = { DateTime.parse("Europe/Berlin", "20150131T023000"), DateTime.parse("America/New_York", "20140310T013000"),
+            DateTime.parse("20150115T120000"), DateTime.parse("20150101T120000Z"), DateTime.parse("20150331"),
+            DateTime.parse(new JulianCalendarMetrics(Weekday.MO, 4), TimeZone.getTimeZone("Europe/Berlin"), "20150129T090000") };
+
+
+    /**
+     * Returns the occurrences of the given series in the given window in a naive way, i.e. by iterating all occurrences from the start.
+     */
+    private static List<long[]> expected(DateTime start, PeriodicSeries.Step step, int interval, Duration duration, long windowStart, long windowEnd)
+    {
+        List<long[]> result = new ArrayList<long[]>();
+        CalendarMetrics metrics = start.getCalendarMetrics();
+        for (int i = 0; ; ++i)
+        {
+            DateTime occurrence;
+            if (i == 0)
+            {
+                occurrence = start;
+            }
+            else if (step == PeriodicSeries.Step.MONTH)
+            {
+                int months = start.getMonth() + i * interval;
+                int year = start.getYear() + months / 12;
+                int month = months % 12;
+                if (start.getDayOfMonth() > metrics.getDaysPerPackedMonth(year, month))
+                {
+                    continue;
+                }
+                occurrence = start.isAllDay() ? new DateTime(metrics, year, month, start.getDayOfMonth()) : new DateTime(metrics, start.getTimeZone(), year,
+                        month, start.getDayOfMonth(), start.getHours(), start.getMinutes(), start.getSeconds());
+            }
+            else
+            {
+                int days = i * interval * (step == PeriodicSeries.Step.WEEK ? 7 : 1);
+                occurrence = start.isFloating() ? start.addDuration(new Duration(1, days, 0)) : new DateTime(metrics, start.getTimeZone(),
+                        metrics.nextDay(start.getInstance(), days), false, Long.MAX_VALUE);
+            }
+
+            long occurrenceStart = occurrence.getTimestamp();
+            if (occurrenceStart >= windowEnd)
+            {
+                return result;
+            }
+            long occurrenceEnd = occurrence.addDuration(duration).getTimestamp();
+            if (occurrenceEnd > windowStart || occurrenceStart >= windowStart)
+            {
+                result.add(new long[] { occurrenceStart, occurrenceEnd });
+            }
+        }
+    }
+
+
+    private static List<long[]> actual(PeriodicSeries series, long windowStart, long windowEnd, int bufferSize)
+    {
+        List<long[]> result = new ArrayList<long[]>();
+        PeriodicSeries.Window window = series.window(windowStart, windowEnd);
+        long[] starts = new long[bufferSize];
+        long[] ends = new long[bufferSize];
+        int count;
+        while ((count = window.fill(starts, ends)) > 0)
+        {
+            for (int i = 0; i < count; ++i)
+            {
+                result.add(new long[] { starts[i], ends[i] });
+            }
+        }
+        return result;
+    }
+
+
+    @Test
+    public void testWindows()
+    {
+        for (DateTime start : STARTS)
+        {
+            for (String durationString : DURATIONS)
+            {
+                Duration duration = Duration.parse(durationString);
+                if (start.isAllDay() && duration.getSecondsOfDay() > 0)
+                {
+                    continue;
+                }
+                for (PeriodicSeries.Step step : PeriodicSeries.Step.values())
+                {
+                    for (int interval : new int[] { 1, 2, 5 })
+                    {
+                        PeriodicSeries series = new PeriodicSeries(start, step, interval, duration);
+                        for (String window : new String[] { "20140101T000000Z/20150301T000000Z", "20150329T000000Z/20150330T120000Z",
+                                "20151025T010000Z/20151025T013000Z", "20190101T000000Z/20190401T000000Z", "20250301T000000Z/20251101T000000Z" })
+                        {
+                            long windowStart = DateTime.parse(window.substring(0, 16)).getTimestamp();
+                            long windowEnd = DateTime.parse(window.substring(17)).getTimestamp();
+                            List<long[]> expected = expected(start, step, interval, duration, windowStart, windowEnd);
+                            String message = start + " " + step + " " + interval + " " + duration + " " + window;
+                            for (int bufferSize : new int[] { 1, 7, 1000 })
+                            {
+                                List<long[]> actual = actual(series, windowStart, windowEnd, bufferSize);
+                                assertEquals(message, expected.size(), actual.size());
+                                for (int i = 0; i < expected.size(); ++i)
+                                {
+                                    assertEquals(message + " " + i, expected.get(i)[0], actual.get(i)[0]);
+                                    assertEquals(message + " " + i, expected.get(i)[1], actual.get(i)[1]);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testFarWindow()
+    {
+        // a daily series, queried 80 years after its start
+        PeriodicSeries series = new PeriodicSeries(DateTime.parse("Europe/Berlin", "19500101T090000"), PeriodicSeries.Step.DAY, 1, Duration.parse("PT1H"));
+        long[] starts = new long[10];
+        long[] ends = new long[10];
+        int count = series.window(DateTime.parse("20300330T000000Z").getTimestamp(), DateTime.parse("20300401T000000Z").getTimestamp()).fill(starts, ends);
+        assertEquals(2, count);
+        assertEquals(DateTime.parse("20300330T080000Z").getTimestamp(), starts[0]);
+        // DST starts on 2030-03-31
+        assertEquals(DateTime.parse("20300331T070000Z").getTimestamp(), starts[1]);
+        assertEquals(DateTime.parse("20300331T080000Z").getTimestamp(), ends[1]);
+    }
+
+
+    @Test
+    public void testHugeInterval()
+    {
+        // the third occurrence is beyond the range of CalendarMetrics.nextDay, so the series ends after the second one
+        DateTime start = DateTime.parse("20150101T090000Z");
+        PeriodicSeries series = new PeriodicSeries(start, PeriodicSeries.Step.WEEK, Integer.MAX_VALUE / 7, Duration.parse("PT1H"));
+        long[] starts = new long[10];
+        long[] ends = new long[10];
+        PeriodicSeries.Window window = series.window(start.getTimestamp(), Long.MAX_VALUE);
+        assertEquals(2, window.fill(starts, ends));
+        assertEquals(start.getTimestamp(), starts[0]);
+        assertTrue(starts[1] > starts[0]);
+        assertEquals(0, window.fill(starts, ends));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidInterval()
+    {
+        new PeriodicSeries(DateTime.parse("20150101T090000"), PeriodicSeries.Step.DAY, 0, Duration.parse("PT1H"));
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDuration()
+    {
+        new PeriodicSeries(DateTime.parse("20150101T090000"), PeriodicSeries.Step.DAY, 1, Duration.parse("-PT1H"));
+    }
+}
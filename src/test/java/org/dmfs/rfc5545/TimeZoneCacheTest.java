@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class TimeZoneCacheTest
+{
+
+    @Test
+    public void testTimeZone()
+    {
+        TimeZoneCache cache = new TimeZoneCache(16);
+        for (String id : TimeZone.getAvailableIDs())
+        {
+            TimeZone expected = TimeZone.getTimeZone(id);
+            TimeZoneCache.Entry entry = cache.entry(id);
+            assertEquals(id, entry.getId());
+            assertEquals(expected, entry.getTimeZone());
+            assertEquals(expected.useDaylightTime(), entry.useDaylightTime());
+            assertEquals(expected.getRawOffset(), entry.getRawOffset());
+
+            // the same instance is returned for any CharSequence with the same content
+            assertSame(entry.getTimeZone(), cache.timeZone(new StringBuilder(id)));
+            assertSame(entry.getTimeZone(), cache.timeZone(CharBuffer.wrap(id)));
+        }
+    }
+
+
+    @Test
+    public void testUnknown()
+    {
+        TimeZoneCache.Entry entry = TimeZoneCache.DEFAULT.entry("Unknown/Zone");
+        assertEquals("Unknown/Zone", entry.getId());
+        assertEquals("GMT", entry.getTimeZone().getID());
+    }
+
+
+    @Test
+    public void testEviction()
+    {
+        // a tiny cache keeps working, even though entries are replaced all the time
+        TimeZoneCache cache = new TimeZoneCache(2);
+        String[] ids = TimeZone.getAvailableIDs();
+        for (int i = 0; i < 3; ++i)
+        {
+            for (String id : ids)
+            {
+                assertEquals(TimeZone.getTimeZone(id), cache.timeZone(id));
+            }
+        }
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException
+    {
+        final TimeZoneCache cache = new TimeZoneCache(64);
+        final String[] ids = TimeZone.getAvailableIDs();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t)
+        {
+            final int offset = t;
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < 20000; ++i)
+                        {
+                            String id = ids[(i * 7 + offset) % ids.length];
+                            assertEquals(id, cache.entry(id).getId());
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+
+    @Test
+    public void testParse()
+    {
+        assertSame(DateTime.parse("Europe/Berlin", "20150101T000000").getTimeZone(), DateTime.parse("Europe/Berlin", "20160101T000000").getTimeZone());
+        assertEquals(TimeZone.getTimeZone("Europe/Berlin"), DateTime.parse("Europe/Berlin", "20150101T000000").getTimeZone());
+    }
+}
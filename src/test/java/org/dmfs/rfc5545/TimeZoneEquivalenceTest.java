@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.junit.Test;
+
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class TimeZoneEquivalenceTest
+{
+
+    @Test
+    public void testUtcClass()
+    {
+        assertEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(null));
+        assertEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(DateTime.UTC));
+        assertEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(TimeZone.getTimeZone("GMT")));
+        assertEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(TimeZone.getTimeZone("Etc/UTC")));
+        assertEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(new SimpleTimeZone(0, "Custom/UTC")));
+        assertNotEquals(TimeZoneEquivalence.UTC_CLASS, TimeZoneEquivalence.classOf(TimeZone.getTimeZone("Europe/Berlin")));
+    }
+
+
+    @Test
+    public void testClassOf()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        TimeZone berlinClone = (TimeZone) berlin.clone();
+        assertEquals(TimeZoneEquivalence.classOf(berlin), TimeZoneEquivalence.classOf(berlinClone));
+        assertNotEquals(TimeZoneEquivalence.classOf(berlin), TimeZoneEquivalence.classOf(TimeZone.getTimeZone("America/New_York")));
+
+        // modifying a zone after it has been classified results in a new class
+        int berlinClass = TimeZoneEquivalence.classOf(berlin);
+        berlinClone.setRawOffset(2 * 3600 * 1000);
+        assertNotEquals(berlinClass, TimeZoneEquivalence.classOf(berlinClone));
+        assertEquals(berlinClass, TimeZoneEquivalence.classOf(berlin));
+    }
+
+
+    @Test
+    public void testSameRules()
+    {
+        String[] ids = TimeZone.getAvailableIDs();
+        // compare a sample of all zones to each other
+        for (int i = 0; i < ids.length; i += 7)
+        {
+            TimeZone first = TimeZone.getTimeZone(ids[i]);
+            for (int j = 0; j < ids.length; j += 11)
+            {
+                TimeZone second = TimeZone.getTimeZone(ids[j]);
+                assertEquals(ids[i] + " " + ids[j], first.hasSameRules(second), TimeZoneEquivalence.sameRules(first, second));
+            }
+            assertEquals(first.hasSameRules(DateTime.UTC), TimeZoneEquivalence.sameRules(first, null));
+            assertEquals(first.hasSameRules(DateTime.UTC), TimeZoneEquivalence.sameRules(null, first));
+        }
+        assertTrue(TimeZoneEquivalence.sameRules(null, null));
+        assertFalse(TimeZoneEquivalence.sameRules(null, TimeZone.getTimeZone("Europe/Berlin")));
+    }
+}
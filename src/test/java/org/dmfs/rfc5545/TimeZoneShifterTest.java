@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545;
+
+import org.dmfs.rfc5545.calendarmetrics.CalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.GregorianCalendarMetrics;
+import org.dmfs.rfc5545.calendarmetrics.JulianCalendarMetrics;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class TimeZoneShifterTest
+{
+    private final static CalendarMetrics[] CALENDAR_METRICS = { new GregorianCalendarMetrics(Weekday.MO, 4), new JulianCalendarMetrics(Weekday.MO, 4) };
+
+    private final static TimeZone[] TIME_ZONES = { null, DateTime.UTC, TimeZone.getTimeZone("Europe/Berlin"), TimeZone.getTimeZone("America/New_York"),
+            TimeZone.getTimeZone("Australia/Lord_Howe"), TimeZone.getTimeZone("Pacific/Apia"), TimeZone.getTimeZone("Asia/Kolkata"),
+            new SimpleTimeZone(2 * 3600000, "Custom/DST", Calendar.MARCH, -1, Calendar.SUNDAY, 3600000, Calendar.OCTOBER, -1, Calendar.SUNDAY, 3600000,
+                    3600000) };
+
+
+    /**
+     * Returns sorted timestamps at 17 minute steps for a couple of years (hitting all DST transitions of the test zones) and a few random ones.
+     */
+    private static long[] timestamps()
+    {
+        long start = DateTime.parse("20101231T000000Z").getTimestamp();
+        long end = DateTime.parse("20130102T000000Z").getTimestamp();
+        long[] result = new long[(int) ((end - start) / (17 * 60000)) + 100];
+        int i = 0;
+        for (long timestamp = start; timestamp < end; timestamp += 17 * 60000)
+        {
+            result[i++] = timestamp;
+        }
+        Random random = new Random(42);
+        while (i < result.length)
+        {
+            // random timestamps between 1970 and 2100 (whole seconds)
+            result[i++] = (long) (random.nextDouble() * 4102444800L) * 1000L;
+        }
+        return result;
+    }
+
+
+    @Test
+    public void testToInstancesAndTimestamps()
+    {
+        long[] timestamps = timestamps();
+        for (CalendarMetrics metrics : CALENDAR_METRICS)
+        {
+            for (TimeZone zone : TIME_ZONES)
+            {
+                long[] instances = new long[timestamps.length];
+                TimeZoneShifter.toInstances(metrics, zone, timestamps, instances);
+                long[] expectedTimestamps = new long[timestamps.length];
+                for (int i = 0; i < timestamps.length; ++i)
+                {
+                    DateTime dateTime = new DateTime(metrics, zone, timestamps[i]);
+                    assertEquals(String.valueOf(zone) + " " + timestamps[i], dateTime.getInstance(), instances[i]);
+                    expectedTimestamps[i] = new DateTime(metrics, zone, dateTime.getInstance(), false, Long.MAX_VALUE).getTimestamp();
+                }
+
+                long[] result = new long[timestamps.length];
+                TimeZoneShifter.toTimestamps(metrics, zone, instances, result);
+                assertArrayEquals(String.valueOf(zone), expectedTimestamps, result);
+
+                // parallel and in place
+                long[] parallel = instances.clone();
+                TimeZoneShifter.parallelToTimestamps(metrics, zone, parallel, parallel);
+                assertArrayEquals(String.valueOf(zone), expectedTimestamps, parallel);
+                parallel = timestamps.clone();
+                TimeZoneShifter.parallelToInstances(metrics, zone, parallel, parallel);
+                assertArrayEquals(String.valueOf(zone), instances, parallel);
+            }
+        }
+    }
+
+
+    @Test
+    public void testShift()
+    {
+        long[] timestamps = timestamps();
+        for (CalendarMetrics metrics : CALENDAR_METRICS)
+        {
+            for (TimeZone from : TIME_ZONES)
+            {
+                long[] instances = new long[timestamps.length];
+                TimeZoneShifter.toInstances(metrics, from, timestamps, instances);
+                for (TimeZone to : TIME_ZONES)
+                {
+                    long[] expected = new long[instances.length];
+                    for (int i = 0; i < instances.length; ++i)
+                    {
+                        DateTime dateTime = new DateTime(metrics, from, instances[i], false, Long.MAX_VALUE);
+                        expected[i] = TimeZoneEquivalence.sameRules(from, to) ? instances[i] : new DateTime(metrics, to,
+                                dateTime.getTimestamp()).getInstance();
+                    }
+
+                    long[] result = new long[instances.length];
+                    TimeZoneShifter.shift(metrics, from, to, instances, result);
+                    assertArrayEquals(from + " " + to, expected, result);
+
+                    TimeZoneShifter.parallelShift(metrics, from, to, instances, result);
+                    assertArrayEquals(from + " " + to, expected, result);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testSwap()
+    {
+        long[] timestamps = timestamps();
+        for (TimeZone from : TIME_ZONES)
+        {
+            for (TimeZone to : TIME_ZONES)
+            {
+                long[] expected = new long[timestamps.length];
+                for (int i = 0; i < timestamps.length; ++i)
+                {
+                    expected[i] = new DateTime(from, timestamps[i]).swapTimeZone(to).getTimestamp();
+                }
+
+                long[] result = new long[timestamps.length];
+                TimeZoneShifter.swap(from, to, timestamps, result);
+                assertArrayEquals(from + " " + to, expected, result);
+
+                result = timestamps.clone();
+                TimeZoneShifter.parallelSwap(from, to, result, result);
+                assertArrayEquals(from + " " + to, expected, result);
+            }
+        }
+    }
+
+
+    @Test
+    public void testSwapKeepsMillis()
+    {
+        long[] timestamps = { 1234, 1000000123L };
+        long[] result = new long[2];
+        TimeZoneShifter.swap(DateTime.UTC, TimeZone.getTimeZone("Europe/Berlin"), timestamps, result);
+        assertEquals(1234 - 3600000, result[0]);
+        assertEquals(1000000123L - 3600000, result[1]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortResult()
+    {
+        TimeZoneShifter.swap(null, DateTime.UTC, new long[10], new long[9]);
+    }
+
+
+    @Test
+    public void testEmpty()
+    {
+        long[] result = new long[0];
+        TimeZoneShifter.parallelSwap(null, DateTime.UTC, new long[0], result);
+        TimeZoneShifter.toInstances(DateTime.GREGORIAN_CALENDAR_SCALE, null, new long[0], result);
+        assertArrayEquals(new long[0], result);
+    }
+}
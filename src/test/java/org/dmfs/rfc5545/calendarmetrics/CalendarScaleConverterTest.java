@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.DateTime;
+import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Weekday;
+import org.dmfs.rfc5545.calendarmetrics.IslamicCalendarMetrics.LeapYearPattern;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class CalendarScaleConverterTest
+{
+    private final static CalendarMetrics[] CALENDAR_METRICS = { new GregorianCalendarMetrics(Weekday.MO, 4), new JulianCalendarMetrics(Weekday.MO, 4),
+            new IslamicCalendarMetrics(IslamicCalendarMetrics.CALENDAR_SCALE_CIVIL, Weekday.MO, 4, LeapYearPattern.II, true),
+            new IslamicCalendarMetrics(IslamicCalendarMetrics.CALENDAR_SCALE_TLBA, Weekday.MO, 4, LeapYearPattern.II, false),
+            new IslamicCalendarMetrics("ISLAMIC-IV", Weekday.SU, 1, LeapYearPattern.IV, true) };
+
+    // 1800-01-01 to 2200-12-31
+    private final static long FIRST_EPOCH_DAY = -62091;
+    private final static long LAST_EPOCH_DAY = 84005;
+
+
+    @Test
+    public void testEpochDay()
+    {
+        for (CalendarMetrics calendarMetrics : CALENDAR_METRICS)
+        {
+            for (long epochDay = FIRST_EPOCH_DAY; epochDay <= LAST_EPOCH_DAY; ++epochDay)
+            {
+                long instance = calendarMetrics.fromEpochDay(epochDay);
+                String message = calendarMetrics + " " + epochDay;
+                assertEquals(message, calendarMetrics.toInstance(epochDay * 24L * 3600L * 1000L, null), instance);
+                assertEquals(message, epochDay, calendarMetrics.toEpochDay(instance));
+                assertEquals(message, epochDay, calendarMetrics.toEpochDay(Instance.setHour(instance, 23)));
+                assertEquals(message, epochDay * 24L * 3600L * 1000L, calendarMetrics.toMillis(instance, null));
+            }
+        }
+    }
+
+
+    @Test
+    public void testConvert()
+    {
+        Random random = new Random(5);
+        for (CalendarMetrics from : CALENDAR_METRICS)
+        {
+            for (CalendarMetrics to : CALENDAR_METRICS)
+            {
+                CalendarScaleConverter converter = new CalendarScaleConverter(from, to);
+                for (int i = 0; i < 2000; ++i)
+                {
+                    long epochDay = FIRST_EPOCH_DAY + random.nextInt((int) (LAST_EPOCH_DAY - FIRST_EPOCH_DAY));
+                    long date = from.fromEpochDay(epochDay);
+                    long instance = Instance.make(Instance.year(date), Instance.month(date), Instance.dayOfMonth(date), random.nextInt(24),
+                            random.nextInt(60), random.nextInt(60));
+
+                    DateTime expected = new DateTime(to, new DateTime(from, null, Instance.year(instance), Instance.month(instance),
+                            Instance.dayOfMonth(instance), Instance.hour(instance), Instance.minute(instance), Instance.second(instance)));
+                    assertEquals(from + " " + to + " " + Instance.toString(instance), Instance.maskWeekday(expected.getInstance()),
+                            converter.convert(instance));
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testConvertBulk()
+    {
+        Random random = new Random(7);
+        for (CalendarMetrics from : CALENDAR_METRICS)
+        {
+            for (CalendarMetrics to : CALENDAR_METRICS)
+            {
+                CalendarScaleConverter converter = new CalendarScaleConverter(from, to);
+                for (int view = 0; view < 100; ++view)
+                {
+                    // a month view with a few extra days in between
+                    long[] instances = new long[50];
+                    long epochDay = FIRST_EPOCH_DAY + random.nextInt((int) (LAST_EPOCH_DAY - FIRST_EPOCH_DAY - 100));
+                    for (int i = 0; i < instances.length; ++i)
+                    {
+                        instances[i] = Instance.setHour(from.fromEpochDay(epochDay), random.nextInt(24));
+                        epochDay += random.nextInt(10) == 0 ? random.nextInt(3) : 1;
+                    }
+
+                    long[] result = new long[instances.length + 2];
+                    converter.convert(instances, 0, result, 2, instances.length);
+                    for (int i = 0; i < instances.length; ++i)
+                    {
+                        assertEquals(from + " " + to + " " + Instance.toString(instances[i]), converter.convert(instances[i]), result[i + 2]);
+                    }
+
+                    long[] inPlace = instances.clone();
+                    converter.convert(inPlace, inPlace);
+                    for (int i = 0; i < instances.length; ++i)
+                    {
+                        assertEquals(from + " " + to + " " + Instance.toString(instances[i]), result[i + 2], inPlace[i]);
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConvertShortResult()
+    {
+        new CalendarScaleConverter(CALENDAR_METRICS[0], CALENDAR_METRICS[1]).convert(new long[3], new long[2]);
+    }
+
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testConvertIllegalRange()
+    {
+        new CalendarScaleConverter(CALENDAR_METRICS[0], CALENDAR_METRICS[1]).convert(new long[3], 1, new long[3], 0, 3);
+    }
+}
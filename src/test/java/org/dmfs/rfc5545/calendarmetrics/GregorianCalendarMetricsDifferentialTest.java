@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Weekday;
+import org.junit.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalField;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Compares {@link GregorianCalendarMetrics} to <code>java.time</code> using randomly generated, but reproducible, timestamps, zones and dates. Divergences are
+ * collected and reported together.
+ * <p>
+ * Note that {@link CalendarMetrics#nextMonth(long, int)} doesn't clamp the day of the month like {@link LocalDate#plusMonths(long)} does, so only year and
+ * month are compared in that case.
+ *
+ * @author Marten Gajda
+ */
+public class GregorianCalendarMetricsDifferentialTest
+{
+    private final static long SEED = 5545;
+    private final static int ITERATIONS = 100000;
+
+    // 1900-01-01 to 2100-12-31
+    private final static long MIN_TIMESTAMP = -2208988800000L;
+    private final static long MAX_TIMESTAMP = 4133980799999L;
+    private final static long MIN_EPOCH_DAY = -25567;
+    private final static long MAX_EPOCH_DAY = 47846;
+
+    /*
+     * 1901-01-01 to 2036-12-31, the range of zone based tests. java.util.TimeZone only knows the transitions until 2037 and uses a simple DST rule afterwards,
+     * which can't express zones like Africa/Casablanca, Africa/Windhoek or Asia/Gaza correctly. That's a limitation of the JDK, not of this library.
+     */
+    private final static long MIN_ZONED_TIMESTAMP = -2177452800000L;
+    private final static long MAX_ZONED_TIMESTAMP = 2114294400000L;
+
+    private final static int MAX_REPORTED_DIVERGENCES = 20;
+
+    /**
+     * All zones known to {@link TimeZone} as well as {@link ZoneId}, sorted to keep the test reproducible.
+     */
+    private final static String[] ZONES;
+
+    static
+    {
+        TreeSet<String> zones = new TreeSet<String>(ZoneId.getAvailableZoneIds());
+        zones.retainAll(Arrays.asList(TimeZone.getAvailableIDs()));
+        ZONES = zones.toArray(new String[zones.size()]);
+    }
+
+
+    /**
+     * Collects divergences between both implementations.
+     */
+    private final static class Divergences
+    {
+        private final String mOperation;
+        private final List<String> mSamples = new ArrayList<String>();
+        private int mCount;
+
+
+        Divergences(String operation)
+        {
+            mOperation = operation;
+        }
+
+
+        void check(String input, Object expected, Object actual)
+        {
+            if (!expected.equals(actual))
+            {
+                if (mCount++ < MAX_REPORTED_DIVERGENCES)
+                {
+                    mSamples.add(input + ": expected " + expected + " but was " + actual);
+                }
+            }
+        }
+
+
+        void assertNone()
+        {
+            StringBuilder message = new StringBuilder(mOperation).append(" divergences");
+            for (String sample : mSamples)
+            {
+                message.append("\n  ").append(sample);
+            }
+            assertEquals(message.toString(), 0, mCount);
+        }
+    }
+
+
+    @Test
+    public void testToInstance()
+    {
+        CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        Divergences divergences = new Divergences("toInstance");
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            String zone = i % 10 == 0 ? null : ZONES[random.nextInt(ZONES.length)];
+            long timestamp = zone == null ? randomTimestamp(random) : randomZonedTimestamp(random);
+
+            ZonedDateTime expected = Instant.ofEpochMilli(timestamp).atZone(zone == null ? ZoneOffset.UTC : ZoneId.of(zone));
+            long instance = calendarMetrics.toInstance(timestamp, zone == null ? null : TimeZone.getTimeZone(zone));
+            divergences.check(timestamp + " " + zone, expected.toLocalDateTime().withNano(0).toString(), toLocalDateTime(instance).toString());
+        }
+        divergences.assertNone();
+    }
+
+
+    @Test
+    public void testToMillis()
+    {
+        CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        Divergences divergences = new Divergences("toMillis");
+        Random random = new Random(SEED + 1);
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            String zone = i % 10 == 0 ? null : ZONES[random.nextInt(ZONES.length)];
+            long timestamp = zone == null ? randomTimestamp(random) : randomZonedTimestamp(random);
+            LocalDateTime local = LocalDateTime.ofEpochSecond(Math.floorDiv(timestamp, 1000), 0, ZoneOffset.UTC).withNano(random.nextInt(1000) * 1000000);
+
+            // ZonedDateTime moves local times in a gap forward by the length of the gap, like TransitionPolicy.LATER
+            long expected = zone == null ? local.toInstant(ZoneOffset.UTC).toEpochMilli() : ZonedDateTime.ofLocal(local, ZoneId.of(zone), null)
+                    .withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+            long actual = calendarMetrics.toMillis(zone == null ? null : TimeZone.getTimeZone(zone), local.getYear(), local.getMonthValue() - 1,
+                    local.getDayOfMonth(), local.getHour(), local.getMinute(), local.getSecond(), local.getNano() / 1000000);
+            divergences.check(local + " " + zone, expected, actual);
+        }
+        divergences.assertNone();
+    }
+
+
+    @Test
+    public void testNextDay()
+    {
+        CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        Divergences divergences = new Divergences("nextDay");
+        Random random = new Random(SEED + 2);
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            LocalDate date = randomDate(random);
+            // mostly short distances, sometimes several years
+            int n = i % 10 == 0 ? random.nextInt(5000) : random.nextInt(40);
+
+            long instance = toInstance(date);
+            divergences.check(date + " + " + n, date.plusDays(n).toString(), toLocalDate(calendarMetrics.nextDay(instance, n)).toString());
+            divergences.check(date + " + 1", date.plusDays(1).toString(), toLocalDate(calendarMetrics.nextDay(instance)).toString());
+        }
+        divergences.assertNone();
+    }
+
+
+    @Test
+    public void testNextMonth()
+    {
+        CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        Divergences divergences = new Divergences("nextMonth");
+        Random random = new Random(SEED + 3);
+        for (int i = 0; i < ITERATIONS; ++i)
+        {
+            LocalDate date = randomDate(random);
+            int n = i % 10 == 0 ? random.nextInt(1200) : random.nextInt(24);
+
+            long instance = toInstance(date);
+            long result = calendarMetrics.nextMonth(instance, n);
+            LocalDate expected = date.plusMonths(n);
+            divergences.check(date + " + " + n + " months", expected.getYear() + "-" + expected.getMonthValue(),
+                    Instance.year(result) + "-" + (Instance.month(result) + 1));
+            // the day of the month is never changed
+            divergences.check(date + " + " + n + " months", date.getDayOfMonth(), Instance.dayOfMonth(result));
+        }
+        divergences.assertNone();
+    }
+
+
+    @Test
+    public void testWeekOfYear()
+    {
+        Random random = new Random(SEED + 4);
+        for (Weekday weekStart : Weekday.values())
+        {
+            for (int minDaysInFirstWeek = 1; minDaysInFirstWeek <= 7; ++minDaysInFirstWeek)
+            {
+                CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(weekStart, minDaysInFirstWeek);
+                TemporalField weekOfYear = weekStart == Weekday.MO && minDaysInFirstWeek == 4 ? IsoFields.WEEK_OF_WEEK_BASED_YEAR : WeekFields.of(
+                        toDayOfWeek(weekStart), minDaysInFirstWeek).weekOfWeekBasedYear();
+                Divergences divergences = new Divergences("getWeekOfYear " + weekStart + "/" + minDaysInFirstWeek);
+                for (int i = 0; i < ITERATIONS / 10; ++i)
+                {
+                    LocalDate date = randomDate(random);
+                    divergences.check(date.toString(), date.get(weekOfYear),
+                            calendarMetrics.getWeekOfYear(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth()));
+                }
+                divergences.assertNone();
+            }
+        }
+    }
+
+
+    private static long randomTimestamp(Random random)
+    {
+        return MIN_TIMESTAMP + (long) (random.nextDouble() * (MAX_TIMESTAMP - MIN_TIMESTAMP));
+    }
+
+
+    private static long randomZonedTimestamp(Random random)
+    {
+        return MIN_ZONED_TIMESTAMP + (long) (random.nextDouble() * (MAX_ZONED_TIMESTAMP - MIN_ZONED_TIMESTAMP));
+    }
+
+
+    private static LocalDate randomDate(Random random)
+    {
+        return LocalDate.ofEpochDay(MIN_EPOCH_DAY + (long) (random.nextDouble() * (MAX_EPOCH_DAY - MIN_EPOCH_DAY)));
+    }
+
+
+    private static long toInstance(LocalDate date)
+    {
+        return Instance.make(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth(), 0, 0, 0);
+    }
+
+
+    private static LocalDate toLocalDate(long instance)
+    {
+        return LocalDate.of(Instance.year(instance), Instance.month(instance) + 1, Instance.dayOfMonth(instance));
+    }
+
+
+    private static LocalDateTime toLocalDateTime(long instance)
+    {
+        return LocalDateTime.of(Instance.year(instance), Instance.month(instance) + 1, Instance.dayOfMonth(instance), Instance.hour(instance),
+                Instance.minute(instance), Instance.second(instance));
+    }
+
+
+    private static DayOfWeek toDayOfWeek(Weekday weekday)
+    {
+        // Weekday starts with Sunday, DayOfWeek with Monday
+        return DayOfWeek.SUNDAY.plus(weekday.ordinal());
+    }
+}
@@ -22,6 +22,7 @@ import org.dmfs.rfc5545.Weekday;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Locale;
@@ -195,6 +196,57 @@ public class GregorianCalendarMetricsTest
     }
 
 
+    /**
+     * Test getWeekOfYear(long[], int[]) for all days between 1850 and 2250, covering both, the years inside and outside the precomputed range.
+     */
+    @Test
+    public void testGetWeekOfYearBatch()
+    {
+        java.util.Calendar testCal = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.US);
+        for (int minDaysInFirstWeek = 1; minDaysInFirstWeek < 8; ++minDaysInFirstWeek)
+        {
+            testCal.setMinimalDaysInFirstWeek(minDaysInFirstWeek);
+            for (int weekStart = 0; weekStart < 7; ++weekStart)
+            {
+                CalendarMetrics tools = new GregorianCalendarMetrics(Weekday.values()[weekStart], minDaysInFirstWeek);
+                testCal.setFirstDayOfWeek(weekStart + 1);
+
+                long[] instances = new long[400 * 366];
+                int[] expected = new int[instances.length];
+                int count = 0;
+                for (int year = 1850; year < 2250; ++year)
+                {
+                    testCal.set(year, 0, 1);
+                    for (int yearday = 1; yearday <= tools.getDaysPerYear(year); ++yearday)
+                    {
+                        testCal.set(java.util.Calendar.DAY_OF_YEAR, yearday);
+                        int monthAndDay = tools.getMonthAndDayOfYearDay(year, yearday);
+                        instances[count] = Instance.make(year, CalendarMetrics.packedMonth(monthAndDay), CalendarMetrics.dayOfMonth(monthAndDay), 0, 0, 0);
+                        expected[count] = testCal.get(java.util.Calendar.WEEK_OF_YEAR);
+                        ++count;
+                    }
+                }
+
+                long[] input = Arrays.copyOf(instances, count);
+                int[] result = new int[count];
+                tools.getWeekOfYear(input, result);
+                for (int i = 0; i < count; ++i)
+                {
+                    assertEquals("failed for " + Instance.year(input[i]) + " weekstart " + weekStart + " minDays " + minDaysInFirstWeek, expected[i], result[i]);
+                    assertEquals(expected[i], tools.getWeekOfYear(Instance.year(input[i]), Instance.month(input[i]), Instance.dayOfMonth(input[i])));
+                }
+            }
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetWeekOfYearBatchShortResult()
+    {
+        new GregorianCalendarMetrics(Weekday.MO, 4).getWeekOfYear(new long[3], new int[2]);
+    }
+
+
     /**
      * Test getWeekOfYear for all days between 1700 and 3000.
      */
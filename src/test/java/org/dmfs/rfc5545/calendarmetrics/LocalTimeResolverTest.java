@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Test {@link LocalTimeResolver}.
+ *
+ * @author Marten Gajda
+ */
+public class LocalTimeResolverTest
+{
+    private final static String[] ZONES = { "Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "Pacific/Apia", "America/Sao_Paulo", "Asia/Kolkata",
+            "Europe/Dublin", "UTC" };
+
+
+    /**
+     * Returns the timestamp of the given local date time in UTC.
+     */
+    private static long local(String localDateTime)
+    {
+        return LocalDateTime.parse(localDateTime).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+
+    private static long utc(String utcDateTime)
+    {
+        return local(utcDateTime);
+    }
+
+
+    @Test
+    public void testGap()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        // 02:30 doesn't exist on 2015-03-29 in Berlin
+        assertEquals(utc("2015-03-29T00:30:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-03-29T02:30:00"), TransitionPolicy.EARLIER));
+        assertEquals(utc("2015-03-29T01:30:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-03-29T02:30:00"), TransitionPolicy.LATER));
+        try
+        {
+            LocalTimeResolver.toTimestamp(berlin, local("2015-03-29T02:30:00"), TransitionPolicy.REJECT);
+            fail("local time in gap not rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+
+        // the boundaries of the gap
+        assertEquals(utc("2015-03-29T00:59:59"), LocalTimeResolver.toTimestamp(berlin, local("2015-03-29T01:59:59"), TransitionPolicy.REJECT));
+        assertEquals(utc("2015-03-29T01:00:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-03-29T03:00:00"), TransitionPolicy.REJECT));
+    }
+
+
+    @Test
+    public void testOverlap()
+    {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        // 02:30 exists twice on 2015-10-25 in Berlin
+        assertEquals(utc("2015-10-25T00:30:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-10-25T02:30:00"), TransitionPolicy.EARLIER));
+        assertEquals(utc("2015-10-25T01:30:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-10-25T02:30:00"), TransitionPolicy.LATER));
+        try
+        {
+            LocalTimeResolver.toTimestamp(berlin, local("2015-10-25T02:30:00"), TransitionPolicy.REJECT);
+            fail("ambiguous local time not rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+
+        // the boundaries of the overlap
+        assertEquals(utc("2015-10-24T23:59:59"), LocalTimeResolver.toTimestamp(berlin, local("2015-10-25T01:59:59"), TransitionPolicy.REJECT));
+        assertEquals(utc("2015-10-25T02:00:00"), LocalTimeResolver.toTimestamp(berlin, local("2015-10-25T03:00:00"), TransitionPolicy.REJECT));
+    }
+
+
+    @Test
+    public void testFloating()
+    {
+        assertEquals(12345L, LocalTimeResolver.toTimestamp(null, 12345L, TransitionPolicy.REJECT));
+    }
+
+
+    /**
+     * Compare the results to java.time, which resolves gaps like {@link TransitionPolicy#LATER} and overlaps like {@link TransitionPolicy#EARLIER}.
+     */
+    @Test
+    public void testJavaTime()
+    {
+        for (String id : ZONES)
+        {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            ZoneId zoneId = ZoneId.of(id);
+            // every 15 minutes from 1970 to 2120, so the fallback beyond the transition table is covered too
+            for (LocalDateTime local = LocalDateTime.of(1970, 1, 1, 0, 0); local.getYear() < 2120; local = local.plusMinutes(15))
+            {
+                long localTime = local.toInstant(ZoneOffset.UTC).toEpochMilli();
+                ZonedDateTime zoned = ZonedDateTime.ofLocal(local, zoneId, null);
+                boolean inGap = !zoneId.getRules().isValidOffset(local, zoned.getOffset());
+                boolean inOverlap = zoneId.getRules().getValidOffsets(local).size() > 1;
+
+                long expectedEarlier = zoned.withEarlierOffsetAtOverlap().toInstant().toEpochMilli();
+                long expectedLater = zoned.withLaterOffsetAtOverlap().toInstant().toEpochMilli();
+                if (inGap)
+                {
+                    // java.time moves the local time forward, which is the later candidate, the earlier one is the gap length before
+                    expectedEarlier = expectedLater - zoneId.getRules().getTransition(local).getDuration().toMillis();
+                }
+
+                assertEquals(id + " " + local, expectedEarlier, LocalTimeResolver.toTimestamp(zone, localTime, TransitionPolicy.EARLIER));
+                assertEquals(id + " " + local, expectedLater, LocalTimeResolver.toTimestamp(zone, localTime, TransitionPolicy.LATER));
+                if (!inGap && !inOverlap)
+                {
+                    assertEquals(id + " " + local, expectedLater, LocalTimeResolver.toTimestamp(zone, localTime, TransitionPolicy.REJECT));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * {@link TimeZone} doesn't know the transitions before 1900, make sure the results are consistent with {@link GregorianCalendar} around that time.
+     */
+    @Test
+    public void testAround1900()
+    {
+        for (String id : new String[] { "Africa/Addis_Ababa", "Europe/Berlin", "America/New_York", "Asia/Kolkata" })
+        {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            GregorianCalendar calendar = new GregorianCalendar(zone);
+            for (LocalDateTime local = LocalDateTime.of(1899, 12, 30, 0, 0); local.getYear() < 1900 || local.getDayOfYear() < 5; local = local.plusMinutes(5))
+            {
+                calendar.clear();
+                calendar.set(local.getYear(), local.getMonthValue() - 1, local.getDayOfMonth(), local.getHour(), local.getMinute());
+                assertEquals(id + " " + local, calendar.getTimeInMillis(),
+                        LocalTimeResolver.toTimestamp(zone, local.toInstant(ZoneOffset.UTC).toEpochMilli(), TransitionPolicy.LATER));
+            }
+        }
+    }
+
+
+    @Test
+    public void testOffsetPeriods()
+    {
+        long[] period = new long[2];
+        for (String id : ZONES)
+        {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            for (long timestamp = utc("1890-01-01T00:00:00"); timestamp < utc("2110-01-01T00:00:00"); timestamp += 7 * 24 * 3600 * 1000L + 3599999)
+            {
+                int offset = LocalTimeResolver.offset(zone, timestamp, period);
+                assertEquals(id + " " + timestamp, zone.getOffset(timestamp), offset);
+                assertTrue(period[0] <= timestamp && timestamp < period[1]);
+                assertEquals(id + " " + period[0], offset, zone.getOffset(period[0]));
+                assertEquals(id + " " + period[1], offset, zone.getOffset(period[1] - 1));
+            }
+        }
+
+        // the period is the entire summer time
+        assertEquals(7200000, LocalTimeResolver.offset(TimeZone.getTimeZone("Europe/Berlin"), utc("2015-07-01T00:00:00"), period));
+        assertEquals(utc("2015-03-29T01:00:00"), period[0]);
+        assertEquals(utc("2015-10-25T01:00:00"), period[1]);
+
+        // zones with custom rules have no table
+        TimeZone custom = new SimpleTimeZone(3600000, "Custom/Zone");
+        assertEquals(3600000, LocalTimeResolver.offset(custom, 1000, period));
+        assertEquals(1000, period[0]);
+        assertEquals(1001, period[1]);
+    }
+
+
+    /**
+     * Zones with custom rules don't use the transition table.
+     */
+    @Test
+    public void testCustomZone()
+    {
+        TimeZone zone = new SimpleTimeZone(3600000, "Custom/Zone", Calendar.MARCH, -1, Calendar.SUNDAY, 7200000, SimpleTimeZone.WALL_TIME, Calendar.OCTOBER,
+                -1, Calendar.SUNDAY, 10800000, SimpleTimeZone.WALL_TIME, 3600000);
+        assertEquals(utc("2015-03-29T00:30:00"), LocalTimeResolver.toTimestamp(zone, local("2015-03-29T02:30:00"), TransitionPolicy.EARLIER));
+        assertEquals(utc("2015-03-29T01:30:00"), LocalTimeResolver.toTimestamp(zone, local("2015-03-29T02:30:00"), TransitionPolicy.LATER));
+        assertEquals(utc("2015-10-25T00:30:00"), LocalTimeResolver.toTimestamp(zone, local("2015-10-25T02:30:00"), TransitionPolicy.EARLIER));
+        assertEquals(utc("2015-10-25T01:30:00"), LocalTimeResolver.toTimestamp(zone, local("2015-10-25T02:30:00"), TransitionPolicy.LATER));
+        assertEquals(utc("2015-07-01T10:00:00"), LocalTimeResolver.toTimestamp(zone, local("2015-07-01T12:00:00"), TransitionPolicy.REJECT));
+
+        // a modified copy of a system zone
+        TimeZone modified = (TimeZone) TimeZone.getTimeZone("Europe/Berlin").clone();
+        modified.setRawOffset(2 * 3600000);
+        assertEquals(utc("2015-01-01T10:00:00"), LocalTimeResolver.toTimestamp(modified, local("2015-01-01T12:00:00"), TransitionPolicy.REJECT));
+    }
+}
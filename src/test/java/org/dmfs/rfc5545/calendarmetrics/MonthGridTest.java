@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.calendarmetrics;
+
+import org.dmfs.rfc5545.Instance;
+import org.dmfs.rfc5545.Weekday;
+import org.dmfs.rfc5545.calendarmetrics.IslamicCalendarMetrics.LeapYearPattern;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class MonthGridTest
+{
+
+    @Test
+    public void testFill()
+    {
+        for (CalendarMetrics calendarMetrics : new CalendarMetrics[] { new GregorianCalendarMetrics(Weekday.MO, 4),
+                new GregorianCalendarMetrics(Weekday.SU, 1), new GregorianCalendarMetrics(Weekday.SA, 1), new JulianCalendarMetrics(Weekday.MO, 4),
+                new IslamicCalendarMetrics(IslamicCalendarMetrics.CALENDAR_SCALE_CIVIL, Weekday.SA, 1, LeapYearPattern.II, true) })
+        {
+            MonthGrid grid = new MonthGrid(calendarMetrics);
+            long[] cells = new long[MonthGrid.CELLS];
+            int[] weekNumbers = new int[MonthGrid.ROWS];
+            int firstYear = calendarMetrics instanceof IslamicCalendarMetrics ? 1300 : 1900;
+            for (int year = firstYear; year < firstYear + 200; ++year)
+            {
+                for (int month = 0; month < calendarMetrics.getMonthsPerYear(year); ++month)
+                {
+                    int leadingDays = grid.fill(year, month, cells, weekNumbers);
+
+                    // walk the grid day by day
+                    long expected = Instance.make(year, month, 1, 0, 0, 0);
+                    for (int i = 0; i < leadingDays; ++i)
+                    {
+                        expected = calendarMetrics.prevDay(expected);
+                    }
+                    for (int i = 0; i < MonthGrid.CELLS; ++i)
+                    {
+                        String message = calendarMetrics + " " + calendarMetrics.weekStart + " " + Instance.toString(expected);
+                        assertEquals(message, expected, Instance.maskWeekday(cells[i]));
+                        assertEquals(message, calendarMetrics.getDayOfWeek(Instance.year(expected), Instance.month(expected), Instance.dayOfMonth(expected)),
+                                Instance.dayOfWeek(cells[i]));
+                        if (i % MonthGrid.COLUMNS == 0)
+                        {
+                            assertEquals(message, calendarMetrics.weekStartInt, Instance.dayOfWeek(cells[i]));
+                            assertEquals(message,
+                                    calendarMetrics.getWeekOfYear(Instance.year(expected), Instance.month(expected), Instance.dayOfMonth(expected)),
+                                    weekNumbers[i / MonthGrid.COLUMNS]);
+                        }
+                        expected = calendarMetrics.nextDay(expected);
+                    }
+                    assertEquals(Instance.make(year, month, 1, 0, 0, 0), Instance.maskWeekday(cells[leadingDays]));
+                    assertTrue(leadingDays < 7);
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testWeekNumbers()
+    {
+        CalendarMetrics calendarMetrics = new GregorianCalendarMetrics(Weekday.MO, 4);
+        MonthGrid grid = new MonthGrid(calendarMetrics);
+        long[] cells = new long[MonthGrid.CELLS + 3];
+        int[] weekNumbers = new int[MonthGrid.ROWS];
+
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.setFirstDayOfWeek(Calendar.MONDAY);
+        calendar.setMinimalDaysInFirstWeek(4);
+        for (int year = 1950; year < 2100; ++year)
+        {
+            for (int month = 0; month < 12; ++month)
+            {
+                grid.fill(year, month, cells, weekNumbers);
+                for (int row = 0; row < MonthGrid.ROWS; ++row)
+                {
+                    long first = cells[row * MonthGrid.COLUMNS];
+                    calendar.clear();
+                    calendar.set(Instance.year(first), Instance.month(first), Instance.dayOfMonth(first));
+                    assertEquals(Instance.toString(first), calendar.get(Calendar.WEEK_OF_YEAR), weekNumbers[row]);
+                }
+            }
+        }
+
+        // week numbers are optional
+        grid.fill(2016, 1, cells, null);
+        assertEquals(Instance.make(2016, 1, 1, 0, 0, 0, Weekday.MO.ordinal()), cells[0]);
+        assertEquals(Instance.make(2016, 2, 13, 0, 0, 0, Weekday.SU.ordinal()), cells[MonthGrid.CELLS - 1]);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortCells()
+    {
+        new MonthGrid(new GregorianCalendarMetrics(Weekday.MO, 4)).fill(2016, 1, new long[MonthGrid.CELLS - 1], null);
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortWeekNumbers()
+    {
+        new MonthGrid(new GregorianCalendarMetrics(Weekday.MO, 4)).fill(2016, 1, new long[MonthGrid.CELLS], new int[MonthGrid.ROWS - 1]);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+public class IcsDateTimeExtractorTest
+{
+    private final static String[] TZIDS = { "Europe/Berlin", "America/New_York", "Asia/Tokyo" };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+
+    @Test
+    public void testExtract() throws IOException
+    {
+        byte[] content = calendar(500).getBytes(StandardCharsets.UTF_8);
+        File file = mFolder.newFile("test.ics");
+        Files.write(file.toPath(), content);
+
+        DateTimeValues.Collector expected = new DateTimeValues.Collector();
+        IcsValueScanner scanner = new IcsValueScanner(expected);
+        scanner.scan(new ByteArrayInputStream(content));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            // use chunks of various sizes, including chunks that are smaller than a single event
+            for (long chunkSize : new long[] { 1, 100, 1000, 12345, content.length, content.length * 2L })
+            {
+                assertValues(expected, scanner, IcsDateTimeExtractor.extract(channel, pool, chunkSize));
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        assertValues(expected, scanner, IcsDateTimeExtractor.extract(file.toPath()));
+    }
+
+
+    @Test
+    public void testMalformedValues() throws IOException
+    {
+        // break the month of every 7th DTSTART
+        StringBuilder builder = new StringBuilder();
+        int errors = 0;
+        int position = 0;
+        for (String line : calendar(500).split("\r\n"))
+        {
+            if (line.startsWith("DTSTART") && position % 7 == 0)
+            {
+                line = line.substring(0, line.indexOf(':') + 5) + "00" + line.substring(line.indexOf(':') + 7);
+                ++errors;
+            }
+            if (line.startsWith("DTSTART"))
+            {
+                ++position;
+            }
+            builder.append(line).append("\r\n");
+        }
+        byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+        File file = mFolder.newFile("malformed.ics");
+        Files.write(file.toPath(), content);
+
+        DateTimeValues.Collector expected = new DateTimeValues.Collector();
+        IcsValueScanner scanner = new IcsValueScanner(expected);
+        scanner.scan(new ByteArrayInputStream(content));
+        assertEquals(errors, expected.mErrorCount);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            for (long chunkSize : new long[] { 1, 1000, content.length })
+            {
+                DateTimeValues values = IcsDateTimeExtractor.extract(channel, pool, chunkSize);
+                assertValues(expected, scanner, values);
+                assertEquals(errors, values.errorCount());
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        File file = mFolder.newFile("empty.ics");
+        assertEquals(0, IcsDateTimeExtractor.extract(file.toPath()).size());
+    }
+
+
+    private void assertValues(DateTimeValues.Collector expected, IcsValueScanner expectedScanner, DateTimeValues values)
+    {
+        assertEquals(expected.mCount, values.size());
+        for (int i = 0; i < expected.mCount; ++i)
+        {
+            assertEquals(expected.mProperties[i], values.properties()[i]);
+            assertEquals(expected.mInstances[i], values.instances()[i]);
+            assertEquals(expected.mFlags[i], values.flags()[i]);
+            int timeZoneIndex = expected.mTimeZoneIndices[i];
+            if (timeZoneIndex < 0)
+            {
+                assertEquals(timeZoneIndex, values.timeZoneIndices()[i]);
+            }
+            else
+            {
+                assertEquals(expectedScanner.timeZoneId(timeZoneIndex), values.timeZoneId(values.timeZoneIndices()[i]));
+            }
+        }
+        assertEquals(expectedScanner.timeZoneCount(), values.timeZoneCount());
+        assertArrayEquals(expected.toValues().instances(), values.instances());
+    }
+
+
+    private String calendar(int events)
+    {
+        StringBuilder result = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+        for (int i = 0; i < events; ++i)
+        {
+            result.append("BEGIN:VEVENT\r\n");
+            result.append("UID:").append(i).append("\r\n");
+            result.append("SUMMARY:Event ").append(i).append("\r\n");
+            // use a different zone for every third event, so the chunks have different time zone tables
+            result.append("DTSTART;TZID=").append(TZIDS[(i / 3) % TZIDS.length]).append(":2015").append(10 + i % 3).append(10 + i % 18).append("T1")
+                    .append(i % 10).append("0000\r\n");
+            if (i % 2 == 0)
+            {
+                result.append("DTEND;VALUE=DATE:201601").append(10 + i % 20).append("\r\n");
+            }
+            else
+            {
+                result.append("DURATION:PT1H\r\n");
+            }
+            result.append("EXDATE:20151224T100000Z,20151231T100000Z\r\n");
+            result.append("END:VEVENT\r\n");
+        }
+        result.append("END:VCALENDAR\r\n");
+        return result.toString();
+    }
+}
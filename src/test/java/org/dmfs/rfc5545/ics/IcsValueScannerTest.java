@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2015 Marten Gajda <marten@dmfs.org>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.dmfs.rfc5545.ics;
+
+import org.dmfs.rfc5545.Duration;
+import org.dmfs.rfc5545.Instance;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class IcsValueScannerTest
+{
+    private final static String CALENDAR = "BEGIN:VCALENDAR\r\n" +
+            "VERSION:2.0\r\n" +
+            "BEGIN:VEVENT\r\n" +
+            "UID:1234\r\n" +
+            "SUMMARY;LANGUAGE=en:DTSTART:19990101T000000Z is not a property\r\n" +
+            "DESCRIPTION:folded lines\r\n" +
+            " DTSTART:19990101T000000Z are skipped as well\r\n" +
+            "DTSTART;TZID=Europe/Berlin:20140414T132231\r\n" +
+            "DTEND;X-PARAM=\"a;b:c\";TZID=\"America/New_York\":20140414T\r\n" +
+            " 152231\r\n" +
+            "RDATE;VALUE=DATE:20140501,20140502\r\n" +
+            "rdate;value=period:20140601T100000Z/20140601T120000Z,20140602T100000Z/PT2H\r\n" +
+            "EXDATE;TZID=Europe/Berlin:20140421T132231,20140428T132231\r\n" +
+            "RECURRENCE-ID:20140505T080000\r\n" +
+            "DURATION:-P1W\r\n" +
+            "END:VEVENT\r\n" +
+            "BEGIN:VTODO\r\n" +
+            "DUE;VALUE=DATE:20150101\r\n" +
+            "DURATION:P1DT2H3M4S\r\n" +
+            "END:VTODO\r\n" +
+            "END:VCALENDAR";
+
+    private final static String EXPECTED = "0 20140414T132231 0 Europe/Berlin\n" +
+            "1 20140414T152231 0 America/New_York\n" +
+            "5 20140501 1\n" +
+            "5 20140502 1\n" +
+            "5 20140601T100000Z 10\n" +
+            "5 20140601T120000Z 18\n" +
+            "5 20140602T100000Z 10\n" +
+            "5 PT2H\n" +
+            "4 20140421T132231 0 Europe/Berlin\n" +
+            "4 20140428T132231 0 Europe/Berlin\n" +
+            "3 20140505T080000 4\n" +
+            "6 -P1W\n" +
+            "2 20150101 1\n" +
+            "6 P1DT2H3M4S\n";
+
+
+    @Test
+    public void testScanInputStream() throws IOException
+    {
+        Recorder recorder = new Recorder();
+        recorder.mScanner.scan(new ByteArrayInputStream(CALENDAR.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(EXPECTED, recorder.toString());
+        assertEquals(2, recorder.mScanner.timeZoneCount());
+    }
+
+
+    @Test
+    public void testScanChannel() throws IOException
+    {
+        Recorder recorder = new Recorder();
+        recorder.mScanner.scan(Channels.newChannel(new ByteArrayInputStream(CALENDAR.getBytes(StandardCharsets.UTF_8))));
+        assertEquals(EXPECTED, recorder.toString());
+    }
+
+
+    @Test
+    public void testChunks()
+    {
+        byte[] bytes = CALENDAR.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8);
+        // feed the content in chunks of all sizes, so all states are interrupted by chunk boundaries
+        for (int chunkSize = 1; chunkSize < 20; ++chunkSize)
+        {
+            Recorder recorder = new Recorder();
+            for (int i = 0; i < bytes.length; i += chunkSize)
+            {
+                if (chunkSize % 2 == 0)
+                {
+                    recorder.mScanner.process(bytes, i, Math.min(chunkSize, bytes.length - i));
+                }
+                else
+                {
+                    ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+                    buffer.put(bytes, i, Math.min(chunkSize, bytes.length - i));
+                    buffer.flip();
+                    recorder.mScanner.process(buffer);
+                    assertEquals(0, buffer.remaining());
+                }
+            }
+            recorder.mScanner.finish();
+            assertEquals(EXPECTED, recorder.toString());
+        }
+    }
+
+
+    @Test
+    public void testIllegalValues() throws IOException
+    {
+        for (String illegal : new String[] {
+                "DTSTART:2014041", "DTSTART:20140414T1322", "DTSTART:2014X414", "DTSTART:", "DTSTART:20150001", "DTSTART:20150001T000000Z",
+                "DURATION:P", "DURATION:PT1D", "DURATION:P1H", "RDATE:20140601T100000Z/", "RDATE:20140601T100000Z/PXT", "RDATE:20140601T100000Z/2014060",
+                "EXDATE:20140101,", "DTSTART;TZID=" + new String(new char[300]).replace('\0', 'x') + ":20140101T000000" })
+        {
+            // the error is reported and scanning continues with the next line
+            Recorder recorder = new Recorder();
+            recorder.mScanner.scan(new ByteArrayInputStream(("UID:1\r\n" + illegal + "\r\nDUE:20150101\r\n").getBytes(StandardCharsets.UTF_8)));
+            int property = illegal.startsWith("DTSTART") ? IcsValueScanner.PROPERTY_DTSTART : illegal.startsWith("DURATION")
+                    ? IcsValueScanner.PROPERTY_DURATION : illegal.startsWith("RDATE") ? IcsValueScanner.PROPERTY_RDATE : IcsValueScanner.PROPERTY_EXDATE;
+            assertEquals(illegal, (illegal.startsWith("EXDATE") ? "4 20140101 1\n" : "") + "error " + property + " 7\n2 20150101 1\n",
+                    recorder.toString());
+        }
+    }
+
+
+    @Test
+    public void testIllegalValueInList()
+    {
+        String content = "BEGIN:VEVENT\n" +
+                "RDATE:20140101,2014X102,20140103\n" +
+                "EXDATE:20140101T000000Z/20140101T010000Z,\n" +
+                " 20140102T000000Z/20140001T010000Z,20140103T000000Z/PT1H\n" +
+                "DTSTART:20140101\n";
+        String expected = "5 20140101 1\n" +
+                "error 5 13\n" +
+                "4 20140101T000000Z 10\n" +
+                "4 20140101T010000Z 18\n" +
+                "error 4 46\n" +
+                "0 20140101 1\n";
+
+        // the error positions must not depend on the chunk size
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        for (int chunkSize = 1; chunkSize <= bytes.length; ++chunkSize)
+        {
+            Recorder recorder = new Recorder();
+            for (int i = 0; i < bytes.length; i += chunkSize)
+            {
+                recorder.mScanner.process(bytes, i, Math.min(chunkSize, bytes.length - i));
+            }
+            recorder.mScanner.finish();
+            assertEquals(expected, recorder.toString());
+        }
+    }
+
+
+    private final static class Recorder implements ValueListener
+    {
+        private final IcsValueScanner mScanner = new IcsValueScanner(this);
+        private final List<String> mValues = new ArrayList<String>();
+
+
+        @Override
+        public void onDateTime(int property, long instance, int flags, int timeZoneIndex)
+        {
+            String value = Instance.toString(instance, (flags & IcsValueScanner.FLAG_ALLDAY) != 0) + ((flags & IcsValueScanner.FLAG_UTC) != 0 ? "Z" : "");
+            mValues.add(property + " " + value + " " + flags + (timeZoneIndex < 0 ? "" : " " + mScanner.timeZoneId(timeZoneIndex)));
+        }
+
+
+        @Override
+        public void onDuration(int property, int sign, int days, int seconds)
+        {
+            Duration duration = days % 7 == 0 && seconds == 0 && days != 0 ? new Duration(sign, days / 7) : new Duration(sign, days, seconds);
+            mValues.add(property + " " + duration.toString());
+        }
+
+
+        @Override
+        public void onError(int property, long position)
+        {
+            mValues.add("error " + property + " " + position);
+        }
+
+
+        @Override
+        public String toString()
+        {
+            StringBuilder result = new StringBuilder();
+            for (String value : mValues)
+            {
+                result.append(value).append('\n');
+            }
+            return result.toString();
+        }
+    }
+}